@@ -0,0 +1,47 @@
+package com.example.bookstore.cart;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// A copy of one cart: quantities by ISBN and the subtotal in cents, null while a price change has invalidated it
+public final class CartContents {
+    private final Long cartId;
+    private final Map<String, Integer> quantities;
+    private final Long subtotalCents;
+    private final Map<String, Long> unitPriceCents;
+
+    public CartContents(Long cartId, Map<String, Integer> quantities, Long subtotalCents) {
+        this(cartId, quantities, subtotalCents, Map.of());
+    }
+
+    // unitPriceCents holds the current price of the lines, as read with them
+    public CartContents(Long cartId, Map<String, Integer> quantities, Long subtotalCents, Map<String, Long> unitPriceCents) {
+        this.cartId = cartId;
+        this.quantities = Collections.unmodifiableMap(new LinkedHashMap<>(quantities));
+        this.subtotalCents = subtotalCents;
+        this.unitPriceCents = unitPriceCents;
+    }
+
+    // Null for a cart that has not been written to the database yet
+    public Long getCartId() {
+        return cartId;
+    }
+
+    public Map<String, Integer> getQuantities() {
+        return quantities;
+    }
+
+    public Long getSubtotalCents() {
+        return subtotalCents;
+    }
+
+    // Empty unless the cart was just loaded from the database
+    Map<String, Long> getUnitPriceCents() {
+        return unitPriceCents;
+    }
+
+    CartContents withSubtotalCents(long subtotalCents) {
+        return new CartContents(cartId, quantities, subtotalCents, unitPriceCents);
+    }
+}
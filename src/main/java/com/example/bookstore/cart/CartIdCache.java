@@ -0,0 +1,91 @@
+package com.example.bookstore.cart;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Bounded userId -> cartId map, so cart operations address shopping_carts and shopping_cart_items by
+ * primary key instead of looking the cart up by user_id first.
+ *
+ * Direct-mapped over two primitive arrays: a user maps to one slot and a later user mapping there replaces
+ * them, which bounds memory with no eviction bookkeeping and no boxing. User IDs are sequential, so
+ * userId mod capacity keeps any window of that many consecutive users collision-free. Reads are optimistic
+ * under a StampedLock and take no lock unless they race a write. A user's cart ID never changes once the
+ * cart exists, so an entry only goes stale if the cart row is deleted; callers invalidate it when they find
+ * the row gone.
+ */
+@Component
+public class CartIdCache {
+
+    public static final long NONE = -1;
+
+    // User IDs start at 1, so 0 marks an empty slot
+    private static final long EMPTY = 0;
+
+    @Value("${bookstore.cart.id-cache-size:65536}")
+    private int size;
+
+    private final StampedLock lock = new StampedLock();
+    private long[] userIds;
+    private long[] cartIds;
+    private int mask;
+
+    @PostConstruct
+    void init() {
+        int capacity = size <= 1 ? 1 : Integer.highestOneBit(size - 1) << 1;
+        userIds = new long[capacity];
+        cartIds = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    // The cached cart ID, or NONE
+    public long get(long userId) {
+        int slot = slot(userId);
+        long stamp = lock.tryOptimisticRead();
+        long cachedUserId = userIds[slot];
+        long cartId = cartIds[slot];
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                cachedUserId = userIds[slot];
+                cartId = cartIds[slot];
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return cachedUserId == userId ? cartId : NONE;
+    }
+
+    public void put(long userId, long cartId) {
+        if (userId == EMPTY) {
+            return;
+        }
+        int slot = slot(userId);
+        long stamp = lock.writeLock();
+        try {
+            userIds[slot] = userId;
+            cartIds[slot] = cartId;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void invalidate(long userId) {
+        int slot = slot(userId);
+        long stamp = lock.writeLock();
+        try {
+            if (userIds[slot] == userId) {
+                userIds[slot] = EMPTY;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private int slot(long userId) {
+        return (int) (userId & mask);
+    }
+}
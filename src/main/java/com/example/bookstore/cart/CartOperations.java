@@ -0,0 +1,25 @@
+package com.example.bookstore.cart;
+
+import com.example.bookstore.dto.CartItemOperationDTO;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+final class CartOperations {
+
+    private CartOperations() {
+    }
+
+    // Folds the operations over the current quantities, in order, into each touched book's final quantity
+    static Map<String, Integer> targetQuantities(Map<String, Integer> current, List<CartItemOperationDTO> operations) {
+        Map<String, Integer> target = new LinkedHashMap<>();
+        for (CartItemOperationDTO operation : operations) {
+            String isbn = operation.getIsbn().trim();
+            int before = target.getOrDefault(isbn, current.getOrDefault(isbn, 0));
+            int after = operation.getQuantity() != null ? operation.getQuantity() : before + operation.getDelta();
+            target.put(isbn, Math.max(after, 0));
+        }
+        return target;
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.bookstore.cart;
+
+import com.example.bookstore.dto.CartItemOperationDTO;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Where carts live. ShoppingCartService validates and prices requests; a store applies them.
+ *
+ * Selected with bookstore.cart.store: "write-behind" (the default, see WriteBehindCartStore) keeps active carts
+ * in memory and flushes them in batches, "write-through" (WriteThroughCartStore) writes every change to the
+ * database before returning. Mutations create the cart on first use and answer 404 for an unknown user.
+ */
+public interface CartStore {
+
+    // The user's cart with its subtotal resolved, or empty if they have none
+    Optional<CartContents> find(long userId);
+
+    // Adds one copy of the book at the given price
+    void add(long userId, String isbn, long priceCents);
+
+    // Takes the book out of the cart entirely; false if it was not in it
+    boolean remove(long userId, String isbn);
+
+    // Applies the operations in order; priceCents holds every ISBN they mention
+    CartContents update(long userId, List<CartItemOperationDTO> operations, Map<String, Long> priceCents);
+
+    // Runs checkout on the user's cart inside one transaction, with the cart locked, and empties the cart
+    // in that same transaction; an exception from checkout rolls everything back and leaves the cart as it was
+    <T> T checkout(long userId, Function<CartContents, T> checkout);
+
+    // These books were repriced, subtotals of carts holding them must be recomputed
+    void pricesChanged(Collection<String> isbns);
+}
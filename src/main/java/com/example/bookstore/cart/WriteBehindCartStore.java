@@ -0,0 +1,552 @@
+package com.example.bookstore.cart;
+
+import com.example.bookstore.dto.BookDTO;
+import com.example.bookstore.dto.CartItemOperationDTO;
+import com.example.bookstore.repository.BookRepository;
+import com.example.bookstore.repository.ShoppingCartJdbcRepository;
+import com.example.bookstore.repository.UserProfileRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Default cart store: active carts live in memory and reach the database behind the request.
+ *
+ * Carts are held in a concurrent map keyed by userId and loaded from the database on first touch, by cart ID
+ * when CartIdCache knows it, so a cart evicted and touched again skips the lookup by user_id. The load holds
+ * no lock of the map and is published with putIfAbsent, so a slow query never stalls other users' carts. Each
+ * mutation applies to the in-memory cart under that cart's monitor and marks it dirty; a scheduled flush
+ * writes every dirty cart's final quantities with one JDBC batch per statement type in a single transaction,
+ * so a burst of clicks on one cart costs one row write per book rather than one round trip per click.
+ * After each flush, carts idle for longer than the TTL are dropped, then the least recently used ones while
+ * the map is over capacity. Only clean carts are ever dropped, so nothing unwritten is lost. While flushes are
+ * failing, dirty carts cannot be dropped; once the map is full, carts not already in memory are refused with
+ * 503 until a flush succeeds again, so the map stays bounded through a database outage. The last flush runs on
+ * shutdown.
+ *
+ * The database copy can trail memory by up to one flush interval; whatever reads carts must go through
+ * this store.
+ */
+@Component
+@ConditionalOnProperty(name = "bookstore.cart.store", havingValue = "write-behind", matchIfMissing = true)
+public class WriteBehindCartStore implements CartStore {
+
+    private static final int LOAD_STRIPES = 256;
+
+    @Autowired
+    private ShoppingCartJdbcRepository cartJdbcRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserProfileRepository userProfileRepository;
+
+    @Autowired
+    private CartIdCache cartIdCache;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${bookstore.cart.max-active:100000}")
+    private int maxActiveCarts;
+
+    @Value("${bookstore.cart.idle-ttl-minutes:30}")
+    private long idleTtlMinutes;
+
+    private final Map<Long, CartState> carts = new ConcurrentHashMap<>();
+    // The in-memory carts holding each book, so a price change visits only those; changed under the cart's monitor
+    private final Map<String, Set<CartState>> cartsByIsbn = new ConcurrentHashMap<>();
+    // Carts load outside the map; a load is only published if no cart of its stripe was evicted meanwhile,
+    // checked and bumped under the stripe's lock
+    private final long[] evictionStamps = new long[LOAD_STRIPES];
+    private final Object[] stripeLocks = new Object[LOAD_STRIPES];
+    // Bumped by every pricesChanged, so a load that raced one drops the subtotal it read
+    private final AtomicLong repricings = new AtomicLong();
+    private final ReentrantReadWriteLock flushLock = new ReentrantReadWriteLock();
+    // Set by a failed flush, cleared by the next successful one
+    private volatile boolean flushFailing;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        for (int i = 0; i < LOAD_STRIPES; i++) {
+            stripeLocks[i] = new Object();
+        }
+    }
+
+    @Override
+    public Optional<CartContents> find(long userId) {
+        CartState state = acquire(userId, false);
+        if (state == null) {
+            return Optional.empty();
+        }
+        CartContents contents;
+        long version;
+        synchronized (state) {
+            contents = state.contents();
+            version = state.version;
+        }
+        if (contents.getSubtotalCents() != null) {
+            return Optional.of(contents);
+        }
+
+        // Priced outside the lock; kept only if nothing touched the cart meanwhile. Not marked dirty, since
+        // the database copy is invalidated too and rebuilds from the same prices.
+        Map<String, Long> unitPriceCents = priceOf(contents.getQuantities().keySet());
+        long subtotalCents = 0;
+        for (Map.Entry<String, Integer> line : contents.getQuantities().entrySet()) {
+            subtotalCents += unitPriceCents.getOrDefault(line.getKey(), 0L) * line.getValue();
+        }
+        synchronized (state) {
+            if (state.version == version) {
+                state.subtotalCents = subtotalCents;
+                state.unitPriceCents.putAll(unitPriceCents);
+            }
+        }
+        return Optional.of(contents.withSubtotalCents(subtotalCents));
+    }
+
+    @Override
+    public void add(long userId, String isbn, long priceCents) {
+        while (true) {
+            CartState state = acquire(userId, true);
+            synchronized (state) {
+                if (state.evicted) {
+                    continue;
+                }
+                if (state.quantities.merge(isbn, 1, Integer::sum) == 1) {
+                    indexLine(isbn, state);
+                }
+                state.unitPriceCents.put(isbn, priceCents);
+                if (state.subtotalCents != null) {
+                    state.subtotalCents += priceCents;
+                }
+                state.changed();
+                return;
+            }
+        }
+    }
+
+    @Override
+    public boolean remove(long userId, String isbn) {
+        while (true) {
+            CartState state = acquire(userId, false);
+            if (state == null) {
+                throw new RuntimeException("Shopping cart not found");
+            }
+            synchronized (state) {
+                if (state.evicted) {
+                    continue;
+                }
+                Integer quantity = state.quantities.remove(isbn);
+                if (quantity == null) {
+                    return false;
+                }
+                unindexLine(isbn, state);
+                // The price the line was added at; if it has gone stale since, pricesChanged has already
+                // invalidated the subtotal
+                Long unitPriceCents = state.unitPriceCents.remove(isbn);
+                if (state.subtotalCents != null) {
+                    state.subtotalCents = unitPriceCents == null ? null : state.subtotalCents - quantity * unitPriceCents;
+                }
+                state.changed();
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public CartContents update(long userId, List<CartItemOperationDTO> operations, Map<String, Long> priceCents) {
+        CartContents contents;
+        while (true) {
+            CartState state = acquire(userId, true);
+            synchronized (state) {
+                if (state.evicted) {
+                    continue;
+                }
+                long deltaCents = 0;
+                for (Map.Entry<String, Integer> entry : CartOperations.targetQuantities(state.quantities, operations).entrySet()) {
+                    String isbn = entry.getKey();
+                    int before = state.quantities.getOrDefault(isbn, 0);
+                    int after = entry.getValue();
+                    if (after == 0) {
+                        if (state.quantities.remove(isbn) != null) {
+                            unindexLine(isbn, state);
+                        }
+                        state.unitPriceCents.remove(isbn);
+                    } else {
+                        if (state.quantities.put(isbn, after) == null) {
+                            indexLine(isbn, state);
+                        }
+                        state.unitPriceCents.put(isbn, priceCents.get(isbn));
+                    }
+                    deltaCents += (after - before) * priceCents.get(isbn);
+                }
+                if (state.subtotalCents != null) {
+                    state.subtotalCents += deltaCents;
+                }
+                state.changed();
+                contents = state.contents();
+                break;
+            }
+        }
+        return contents.getSubtotalCents() != null ? contents : find(userId).orElseThrow();
+    }
+
+    @Override
+    public void pricesChanged(Collection<String> isbns) {
+        repricings.incrementAndGet();
+        for (String isbn : isbns) {
+            String repriced = isbn.trim();
+            for (CartState state : cartsByIsbn.getOrDefault(repriced, Set.of())) {
+                synchronized (state) {
+                    if (state.subtotalCents != null && state.quantities.containsKey(repriced)) {
+                        // Written as null too, in case a flush already in flight carries the old total
+                        state.subtotalCents = null;
+                        state.changed();
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public <T> T checkout(long userId, Function<CartContents, T> checkout) {
+        while (true) {
+            CartState state = acquire(userId, false);
+            if (state == null) {
+                throw new RuntimeException("Shopping cart not found");
+            }
+            // Shared side of the flush lock: checkouts run side by side, but never while a flush that may
+            // have snapshotted this cart is still writing it back
+            flushLock.readLock().lock();
+            try {
+                synchronized (state) {
+                    if (state.evicted) {
+                        continue;
+                    }
+                    CartContents cart = state.contents();
+                    T placed = transactionTemplate.execute(status -> {
+                        T order = checkout.apply(cart);
+                        if (cart.getCartId() != null) {
+                            cartJdbcRepository.clearCart(cart.getCartId());
+                        }
+                        return order;
+                    });
+                    // Memory and database now agree on an empty cart
+                    state.quantities.keySet().forEach(isbn -> unindexLine(isbn, state));
+                    state.quantities.clear();
+                    state.unitPriceCents.clear();
+                    state.subtotalCents = 0L;
+                    state.persisted = new HashMap<>();
+                    state.dirty = false;
+                    state.version++;
+                    return placed;
+                }
+            } finally {
+                flushLock.readLock().unlock();
+            }
+        }
+    }
+
+    // Writes every dirty cart, then trims idle and excess carts
+    @Scheduled(fixedDelayString = "${bookstore.cart.flush-interval-ms:500}")
+    public void flush() {
+        flushLock.writeLock().lock();
+        try {
+            flushDirty();
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+    }
+
+    private void flushDirty() {
+        List<Snapshot> snapshots = new ArrayList<>();
+        carts.forEach((userId, state) -> {
+            synchronized (state) {
+                if (state.dirty) {
+                    snapshots.add(new Snapshot(userId, state, new HashMap<>(state.quantities), state.subtotalCents));
+                    state.dirty = false;
+                }
+            }
+        });
+        if (snapshots.isEmpty()) {
+            flushFailing = false; // Nothing unwritten is left
+        } else {
+            write(snapshots);
+        }
+        evictIdle();
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        flush();
+    }
+
+    private void write(List<Snapshot> snapshots) {
+        try {
+            // New carts get their row first; the unique user_id makes this safe against a racing instance
+            for (Snapshot snapshot : snapshots) {
+                if (snapshot.state.cartId == null) {
+                    snapshot.state.cartId = cartJdbcRepository.createCart(snapshot.userId);
+                    cartIdCache.put(snapshot.userId, snapshot.state.cartId);
+                }
+            }
+
+            Map<Long, Map<String, Integer>> updates = new HashMap<>();
+            Map<Long, Map<String, Integer>> inserts = new HashMap<>();
+            Map<Long, List<String>> deletes = new HashMap<>();
+            Map<Long, Long> subtotals = new HashMap<>();
+            for (Snapshot snapshot : snapshots) {
+                long cartId = snapshot.state.cartId;
+                Map<String, Integer> persisted = snapshot.state.persisted;
+                snapshot.quantities.forEach((isbn, quantity) -> {
+                    Integer before = persisted.get(isbn);
+                    if (before == null) {
+                        inserts.computeIfAbsent(cartId, key -> new HashMap<>()).put(isbn, quantity);
+                    } else if (!before.equals(quantity)) {
+                        updates.computeIfAbsent(cartId, key -> new HashMap<>()).put(isbn, quantity);
+                    }
+                });
+                persisted.keySet().stream()
+                        .filter(isbn -> !snapshot.quantities.containsKey(isbn))
+                        .forEach(isbn -> deletes.computeIfAbsent(cartId, key -> new ArrayList<>()).add(isbn));
+                subtotals.put(cartId, snapshot.subtotalCents);
+            }
+
+            transactionTemplate.executeWithoutResult(status -> {
+                cartJdbcRepository.writeQuantities(updates, inserts, deletes);
+                cartJdbcRepository.writeSubtotals(subtotals);
+            });
+            // persisted is only touched under the flush lock: here on its exclusive side, by checkout on its shared
+            // side while holding the cart's monitor
+            snapshots.forEach(snapshot -> snapshot.state.persisted = snapshot.quantities);
+            flushFailing = false;
+        } catch (RuntimeException e) {
+            flushFailing = true;
+            System.out.println("Cart flush failed, retrying next interval: " + e.getMessage());
+            for (Snapshot snapshot : snapshots) {
+                synchronized (snapshot.state) {
+                    snapshot.state.dirty = true;
+                }
+            }
+        }
+    }
+
+    private void evictIdle() {
+        long idleSince = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(idleTtlMinutes);
+        carts.forEach((userId, state) -> {
+            if (state.lastAccess < idleSince) {
+                evict(userId, state);
+            }
+        });
+
+        int excess = carts.size() - maxActiveCarts;
+        if (excess > 0) {
+            List<Map.Entry<Long, CartState>> oldestFirst = new ArrayList<>(carts.entrySet());
+            oldestFirst.sort(Comparator.comparingLong(entry -> entry.getValue().lastAccess));
+            for (Map.Entry<Long, CartState> entry : oldestFirst) {
+                if (excess == 0) {
+                    break;
+                }
+                if (evict(entry.getKey(), entry.getValue())) {
+                    excess--;
+                }
+            }
+        }
+    }
+
+    // Drops a clean cart; a writer still holding it sees the flag and reloads
+    private boolean evict(long userId, CartState state) {
+        synchronized (state) {
+            if (state.dirty) {
+                return false;
+            }
+            state.evicted = true;
+            state.quantities.keySet().forEach(isbn -> unindexLine(isbn, state));
+            int stripe = stripe(userId);
+            synchronized (stripeLocks[stripe]) {
+                evictionStamps[stripe]++;
+                return carts.remove(userId, state);
+            }
+        }
+    }
+
+    private static int stripe(long userId) {
+        return Long.hashCode(userId) & (LOAD_STRIPES - 1);
+    }
+
+    private void indexLine(String isbn, CartState state) {
+        cartsByIsbn.compute(isbn, (key, holders) -> {
+            Set<CartState> updated = holders != null ? holders : ConcurrentHashMap.newKeySet();
+            updated.add(state);
+            return updated;
+        });
+    }
+
+    private void unindexLine(String isbn, CartState state) {
+        cartsByIsbn.computeIfPresent(isbn, (key, holders) -> {
+            holders.remove(state);
+            return holders.isEmpty() ? null : holders;
+        });
+    }
+
+    // The user's in-memory cart, loaded from the database on a miss; null if they have none and create is false
+    private CartState acquire(long userId, boolean create) {
+        CartState state = carts.get(userId);
+        if (state == null) {
+            if (flushFailing && carts.size() >= maxActiveCarts) {
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many unsaved carts, try again later");
+            }
+            state = loadAndPublish(userId, create);
+            if (state == null) {
+                return null;
+            }
+        }
+        state.lastAccess = System.currentTimeMillis();
+        return state;
+    }
+
+    // Reads the cart with no lock held, then publishes it unless another thread got there first. Carts are only
+    // evicted once flushed, so the database copy is current unless an eviction happened during the read: then
+    // the stripe's stamp has moved and the read is retried
+    private CartState loadAndPublish(long userId, boolean create) {
+        int stripe = stripe(userId);
+        while (true) {
+            long stamp;
+            synchronized (stripeLocks[stripe]) {
+                stamp = evictionStamps[stripe];
+            }
+            long repricingsBefore = repricings.get();
+            CartState loaded = load(userId, create);
+            if (loaded == null) {
+                return carts.get(userId);
+            }
+            CartState winner = null;
+            synchronized (stripeLocks[stripe]) {
+                if (evictionStamps[stripe] == stamp) {
+                    CartState existing = carts.putIfAbsent(userId, loaded);
+                    winner = existing != null ? existing : loaded;
+                }
+            }
+            synchronized (loaded) {
+                if (winner != loaded) {
+                    loaded.quantities.keySet().forEach(isbn -> unindexLine(isbn, loaded));
+                } else if (repricings.get() != repricingsBefore) {
+                    // A price may have changed between the read and indexing the lines
+                    loaded.subtotalCents = null;
+                }
+            }
+            if (winner != null) {
+                return winner;
+            }
+        }
+    }
+
+    private CartState load(long userId, boolean create) {
+        Optional<CartContents> stored = Optional.empty();
+        long cachedCartId = cartIdCache.get(userId);
+        if (cachedCartId != CartIdCache.NONE) {
+            stored = cartJdbcRepository.loadCartById(cachedCartId);
+        }
+        if (stored.isEmpty()) {
+            stored = cartJdbcRepository.loadCart(userId);
+        }
+        if (stored.isPresent()) {
+            cartIdCache.put(userId, stored.get().getCartId());
+            CartState state = new CartState(stored.get());
+            state.quantities.keySet().forEach(isbn -> indexLine(isbn, state));
+            return state;
+        }
+        cartIdCache.invalidate(userId);
+        if (!create) {
+            return null;
+        }
+        if (!userProfileRepository.existsById(userId)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "User with ID " + userId + " not found");
+        }
+        return new CartState(new CartContents(null, Map.of(), 0L));
+    }
+
+    // Current prices of the books in cents, one query
+    private Map<String, Long> priceOf(Collection<String> isbns) {
+        Map<String, Long> unitPriceCents = new HashMap<>();
+        if (!isbns.isEmpty()) {
+            for (BookDTO book : bookRepository.findBookDTOsByIsbns(isbns)) {
+                unitPriceCents.put(book.getISBN().trim(), Math.round(book.getPrice() * 100));
+            }
+        }
+        return unitPriceCents;
+    }
+
+    private static final class CartState {
+        private volatile Long cartId;
+        private final Map<String, Integer> quantities;
+        // Price of each line as last added or priced, what remove takes off the subtotal
+        private final Map<String, Long> unitPriceCents;
+        private Long subtotalCents;
+        private long version;
+        private boolean dirty;
+        private boolean evicted;
+        private volatile long lastAccess;
+        // Quantities as of the last successful flush, what the database holds
+        private Map<String, Integer> persisted;
+
+        private CartState(CartContents loaded) {
+            this.cartId = loaded.getCartId();
+            this.quantities = new LinkedHashMap<>(loaded.getQuantities());
+            this.unitPriceCents = new HashMap<>(loaded.getUnitPriceCents());
+            this.subtotalCents = loaded.getSubtotalCents();
+            this.persisted = new HashMap<>(loaded.getQuantities());
+        }
+
+        private void changed() {
+            version++;
+            dirty = true;
+        }
+
+        private CartContents contents() {
+            return new CartContents(cartId, quantities, subtotalCents);
+        }
+    }
+
+    private static final class Snapshot {
+        private final long userId;
+        private final CartState state;
+        private final Map<String, Integer> quantities;
+        private final Long subtotalCents;
+
+        private Snapshot(long userId, CartState state, Map<String, Integer> quantities, Long subtotalCents) {
+            this.userId = userId;
+            this.state = state;
+            this.quantities = quantities;
+            this.subtotalCents = subtotalCents;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.bookstore.cart;
+
+import com.example.bookstore.dto.CartItemOperationDTO;
+import com.example.bookstore.repository.ShoppingCartJdbcRepository;
+import com.example.bookstore.repository.ShoppingCartRepository;
+import com.example.bookstore.repository.UserProfileRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Cart store that writes every change to shopping_carts and shopping_cart_items before returning.
+ *
+ * Single adds and removes are one atomic statement pair each; batch updates lock the cart row first. The
+ * database is the only copy, so other writers (imports, discounts) are seen immediately. Carts are resolved
+ * through CartIdCache, so a warm user's operations only touch rows by cart ID.
+ */
+@Component
+@ConditionalOnProperty(name = "bookstore.cart.store", havingValue = "write-through")
+public class WriteThroughCartStore implements CartStore {
+
+    @Autowired
+    private ShoppingCartRepository cartRepository;
+
+    @Autowired
+    private ShoppingCartJdbcRepository cartJdbcRepository;
+
+    @Autowired
+    private UserProfileRepository userProfileRepository;
+
+    @Autowired
+    private CartIdCache cartIdCache;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public Optional<CartContents> find(long userId) {
+        Optional<CartContents> cart = Optional.empty();
+        long cachedCartId = cartIdCache.get(userId);
+        if (cachedCartId != CartIdCache.NONE) {
+            cart = cartJdbcRepository.loadCartById(cachedCartId);
+            if (cart.isEmpty()) {
+                cartIdCache.invalidate(userId);
+            }
+        }
+        if (cart.isEmpty()) {
+            cart = cartJdbcRepository.loadCart(userId);
+            cart.ifPresent(found -> cartIdCache.put(userId, found.getCartId()));
+        }
+        return cart.map(found -> found.getSubtotalCents() != null
+                ? found
+                : found.withSubtotalCents(recomputeSubtotal(found.getCartId())));
+    }
+
+    @Override
+    public void add(long userId, String isbn, long priceCents) {
+        while (true) {
+            long cartId = findOrCreateCartId(userId);
+
+            // Subtotal first: its UPDATE locks the cart row, so mutations of one cart apply one at a time
+            boolean applied = transactionTemplate.execute(status -> {
+                if (cartRepository.addToSubtotal(cartId, priceCents) == 0) {
+                    return false;
+                }
+                cartJdbcRepository.addQuantity(cartId, isbn, 1);
+                return true;
+            });
+            if (applied) {
+                return;
+            }
+            // The cached cart was deleted
+            cartIdCache.invalidate(userId);
+        }
+    }
+
+    @Override
+    public boolean remove(long userId, String isbn) {
+        long cartId = findCartId(userId)
+                .orElseThrow(() -> new RuntimeException("Shopping cart not found"));
+
+        return transactionTemplate.execute(status -> cartJdbcRepository.removeItem(cartId, isbn) > 0);
+    }
+
+    @Override
+    public CartContents update(long userId, List<CartItemOperationDTO> operations, Map<String, Long> priceCents) {
+        while (!applyUpdate(findOrCreateCartId(userId), operations, priceCents)) {
+            // The cached cart was deleted
+            cartIdCache.invalidate(userId);
+        }
+        return find(userId).orElseThrow();
+    }
+
+    private boolean applyUpdate(long cartId, List<CartItemOperationDTO> operations, Map<String, Long> priceCents) {
+        return transactionTemplate.execute(status -> {
+            if (!cartJdbcRepository.lockCart(cartId)) {
+                return false;
+            }
+            Map<String, Integer> current = cartJdbcRepository.findQuantities(cartId);
+
+            Map<String, Integer> updates = new HashMap<>();
+            Map<String, Integer> inserts = new HashMap<>();
+            List<String> deletes = new ArrayList<>();
+            long deltaCents = 0;
+            for (Map.Entry<String, Integer> entry : CartOperations.targetQuantities(current, operations).entrySet()) {
+                String isbn = entry.getKey();
+                int before = current.getOrDefault(isbn, 0);
+                int after = entry.getValue();
+                if (after == before) {
+                    continue;
+                }
+                if (after == 0) {
+                    deletes.add(isbn);
+                } else if (before == 0) {
+                    inserts.put(isbn, after);
+                } else {
+                    updates.put(isbn, after);
+                }
+                deltaCents += (after - before) * priceCents.get(isbn);
+            }
+
+            cartJdbcRepository.writeQuantities(Map.of(cartId, updates), Map.of(cartId, inserts), Map.of(cartId, deletes));
+            cartRepository.addToSubtotal(cartId, deltaCents);
+            return true;
+        });
+    }
+
+    @Override
+    public <T> T checkout(long userId, Function<CartContents, T> checkout) {
+        while (true) {
+            long cartId = findCartId(userId)
+                    .orElseThrow(() -> new RuntimeException("Shopping cart not found"));
+
+            Optional<T> result = transactionTemplate.execute(status -> {
+                if (!cartJdbcRepository.lockCart(cartId)) {
+                    return Optional.empty();
+                }
+                T placed = checkout.apply(new CartContents(cartId, cartJdbcRepository.findQuantities(cartId), null));
+                cartJdbcRepository.clearCart(cartId);
+                return Optional.of(placed);
+            });
+            if (result.isPresent()) {
+                return result.get();
+            }
+            // The cached cart was deleted
+            cartIdCache.invalidate(userId);
+        }
+    }
+
+    @Override
+    public void pricesChanged(Collection<String> isbns) {
+        // No subtotals are held here; callers clear the stored ones in the transaction that changes the prices
+    }
+
+    private Optional<Long> findCartId(long userId) {
+        long cachedCartId = cartIdCache.get(userId);
+        if (cachedCartId != CartIdCache.NONE) {
+            return Optional.of(cachedCartId);
+        }
+        Optional<Long> cartId = cartJdbcRepository.findCartId(userId);
+        cartId.ifPresent(id -> cartIdCache.put(userId, id));
+        return cartId;
+    }
+
+    private long findOrCreateCartId(long userId) {
+        return findCartId(userId).orElseGet(() -> {
+            if (!userProfileRepository.existsById(userId)) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "User with ID " + userId + " not found");
+            }
+            long cartId = cartJdbcRepository.createCart(userId);
+            cartIdCache.put(userId, cartId);
+            return cartId;
+        });
+    }
+
+    // Invalidated by a price change (or a cart from before running totals): rebuild it once
+    private long recomputeSubtotal(long cartId) {
+        cartRepository.recomputeSubtotal(cartId);
+        return cartRepository.findSubtotalCents(cartId);
+    }
+}
@@ -1,18 +1,29 @@
 package com.example.bookstore.controller;
 
+import com.example.bookstore.dto.BookBatchDTO;
+import com.example.bookstore.dto.BookBrowseDTO;
 import com.example.bookstore.dto.BookDTO;
-import com.example.bookstore.dto.BookDTO;
+import com.example.bookstore.dto.BookPageDTO;
 import com.example.bookstore.dto.BookRatingDTO;
+import com.example.bookstore.dto.RatingRequestDTO;
+import com.example.bookstore.dto.SuggestionDTO;
 import com.example.bookstore.model.Book;
+import com.example.bookstore.model.DiscountJob;
 import com.example.bookstore.model.Publisher;
+import com.example.bookstore.service.BookImportService;
 import com.example.bookstore.service.BookService;
+import com.example.bookstore.service.DiscountJobService;
 import com.example.bookstore.repository.BookRepository;
 import com.example.bookstore.service.RatingsService;
 import com.example.bookstore.repository.BookRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.hateoas.Link;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import java.util.List;
 import org.springframework.http.HttpStatus;
 import com.example.bookstore.model.Author;
@@ -23,6 +34,9 @@ import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
 import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
 
 import javax.persistence.Column;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 
 @RestController
 @RequestMapping("/api/books")
@@ -40,10 +54,65 @@ public class BookController {
     @Autowired
     private BookRepository bookRepository;
 
+    @Autowired
+    private BookImportService bookImportService;
+
+    @Autowired
+    private DiscountJobService discountJobService;
+
+
+    // Streams the whole catalog as a JSON array without holding it in memory. limit and isbn select the
+    // endpoints below; a request with both matches none of the three and is rejected with 400
+    @GetMapping(params = {"!limit", "!isbn"})
+    public ResponseEntity<StreamingResponseBody> getAllBooks() {
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+
+        StreamingResponseBody body = out -> {
+            // The body is written on an async thread, links still need the original request to resolve the host
+            RequestContextHolder.setRequestAttributes(requestAttributes);
+            try {
+                bookService.writeAllBooks(out);
+            } finally {
+                RequestContextHolder.resetRequestAttributes();
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
+    // Keyset-paginated catalog, e.g. /api/books?limit=50&after=9780123456789
+    @GetMapping(params = {"limit", "!isbn"})
+    public BookPageDTO getBooksPage(@RequestParam(value = "after", required = false) String after,
+                                    @RequestParam(value = "limit") Integer limit) {
+        return bookService.getBooksPage(after, limit);
+    }
+
+    // Multi-get, e.g. /api/books?isbn=9780123456789&isbn=9780987654321 (or comma separated)
+    @GetMapping(params = {"isbn", "!limit"})
+    public BookBatchDTO getBooksByIsbns(@RequestParam("isbn") List<String> isbns) {
+        return bookService.getBooksByIsbns(isbns);
+    }
+
+    // Same as above for ISBN lists too long for a query string; the body is a JSON array of ISBNs
+    @PostMapping("/batch")
+    public BookBatchDTO getBooksByIsbnsBatch(@RequestBody List<String> isbns) {
+        return bookService.getBooksByIsbns(isbns);
+    }
 
-    @GetMapping
-    public List<BookDTO> getAllBooks() {
-        return bookService.getAllBooks();
+    // Full-text search, e.g. /api/books/search?q=spring+boot&limit=10
+    @GetMapping("/search")
+    public List<BookDTO> searchBooks(@RequestParam("q") String query,
+                                     @RequestParam(value = "limit", defaultValue = "10") Integer limit) {
+        return bookService.searchBooks(query, limit);
+    }
+
+    // Autocomplete for the search box, e.g. /api/books/suggest?prefix=har
+    @GetMapping("/suggest")
+    public List<SuggestionDTO> suggest(@RequestParam("prefix") String prefix,
+                                       @RequestParam(value = "limit", defaultValue = "10") Integer limit) {
+        return bookService.suggest(prefix, limit);
     }
 
     @GetMapping("/genre/{genre}")
@@ -56,21 +125,65 @@ public class BookController {
         return ratingsService.getBooksByRating(rating);
     }
 
+    // Creates or updates the user's rating: 201 for a first rating, 200 when it replaced an earlier one
+    @PostMapping("/{isbn}/ratings")
+    public ResponseEntity<Void> rateBook(@PathVariable String isbn, @RequestBody RatingRequestDTO request) {
+        boolean created = ratingsService.submitRating(isbn, request);
+        return ResponseEntity.status(created ? HttpStatus.CREATED : HttpStatus.OK).build();
+    }
+
     @GetMapping("/publisher/{publisherId}")
     public List<Book> getBooksByPublisherId(@PathVariable Long publisherId) {
         return bookService.getBooksByPublisherId(publisherId);
     }
 
+    // Starts a background discount job and answers 202 with its status and where to poll it
     @PatchMapping("/discount")
-    public void discountBooksByPublisher(@RequestParam(value = "percentage", required = true) Double percentage,
-                                                     @RequestParam(value = "publisherId", required = true) Long publisherId) {
+    public ResponseEntity<DiscountJob> discountBooksByPublisher(@RequestParam(value = "percentage", required = true) Double percentage,
+                                                                @RequestParam(value = "publisherId", required = true) Long publisherId) {
+
+        DiscountJob job = bookService.discountBooksByPublisher(percentage, publisherId);
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .location(linkTo(methodOn(BookController.class).getDiscountJob(job.getJobId())).toUri())
+                .body(job);
+    }
 
-        bookService.discountBooksByPublisher(percentage, publisherId);
+    @GetMapping("/discount/jobs/{jobId}")
+    public DiscountJob getDiscountJob(@PathVariable Long jobId) {
+        return discountJobService.getJob(jobId);
     }
 
     @GetMapping("/top-sellers")
-    public List<BookDTO> getTopSellers() {
-        return bookService.getTopSellers();
+    public List<BookDTO> getTopSellers(@RequestParam(value = "limit", defaultValue = "10") Integer limit,
+                                       @RequestParam(value = "window", required = false) String window,
+                                       @RequestParam(value = "genre", required = false) String genre,
+                                       @RequestParam(value = "publisher", required = false) Long publisherId) {
+        if (window == null && genre == null && publisherId == null) {
+            return bookService.getTopSellers(limit);
+        }
+        return bookService.getTopSellers(limit, window, genre, publisherId);
+    }
+
+    @GetMapping("/browse")
+    public BookBrowseDTO browseBooks(@RequestParam(value = "genre", required = false) String genre,
+                                     @RequestParam(value = "price", required = false) String price,
+                                     @RequestParam(value = "year", required = false) Integer year,
+                                     @RequestParam(value = "publisher", required = false) Long publisherId,
+                                     @RequestParam(value = "minRating", required = false) Integer minRating,
+                                     @RequestParam(value = "page", defaultValue = "0") Integer page,
+                                     @RequestParam(value = "size", defaultValue = "20") Integer size) {
+        return bookService.browseBooks(genre, price, year, publisherId, minRating, page, size);
+    }
+
+    @GetMapping("/trending")
+    public List<BookDTO> getTrendingBooks(@RequestParam(value = "limit", defaultValue = "10") Integer limit) {
+        return bookService.getTrendingBooks(limit);
+    }
+
+    @GetMapping("/{isbn}/also-bought")
+    public List<BookDTO> getAlsoBought(@PathVariable String isbn,
+                                       @RequestParam(value = "limit", defaultValue = "10") Integer limit) {
+        return bookService.getAlsoBought(isbn, limit);
     }
 
     @GetMapping("/{isbn}")
@@ -96,6 +209,18 @@ public class BookController {
         }
     }
 
+    // Bulk upsert from an NDJSON or CSV body; progress and rejected rows are streamed back as NDJSON
+    @PostMapping(value = "/import", consumes = {"application/x-ndjson", "text/csv"})
+    public void importBooks(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        BookImportService.Format format = request.getContentType().startsWith("text/csv")
+                ? BookImportService.Format.CSV
+                : BookImportService.Format.NDJSON;
+
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType("application/x-ndjson");
+        bookImportService.importBooks(request.getInputStream(), format, response.getOutputStream());
+    }
+
     @PostMapping
     public ResponseEntity<Void> addBook(@RequestBody Book book) {
         bookService.addBook(book);
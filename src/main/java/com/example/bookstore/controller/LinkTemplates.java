@@ -0,0 +1,108 @@
+package com.example.bookstore.controller;
+
+import org.springframework.hateoas.Link;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.springframework.web.util.UriUtils;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
+
+/**
+ * Link paths resolved once from the controller mappings at startup.
+ *
+ * linkTo(methodOn(...)) builds a proxy and reflects over the mapping on every call, which adds up when it runs
+ * for every row of a list response. Here the mapping is resolved a single time with a placeholder argument and
+ * split around it, so building a link for a row is plain string concatenation.
+ */
+@Component
+public class LinkTemplates {
+
+    private static final String ISBN_PLACEHOLDER = "isbn-placeholder";
+    private static final Long USER_ID_PLACEHOLDER = Long.MAX_VALUE;
+
+    private final PathTemplate bookDetails;
+    private final PathTemplate cartBooks;
+    private final PathTemplate cartSubtotal;
+    private final String cartRoot;
+    private final String root;
+
+    public LinkTemplates() {
+        // No request is bound at startup, so linkTo resolves paths relative to "/"
+        this.bookDetails = PathTemplate.split(
+                linkTo(methodOn(BookController.class).getBookByIsbn(ISBN_PLACEHOLDER)).toUri().getPath(),
+                ISBN_PLACEHOLDER);
+        this.cartBooks = PathTemplate.split(
+                linkTo(methodOn(ShoppingCartController.class).getBooksInShoppingCart(USER_ID_PLACEHOLDER)).toUri().getPath(),
+                USER_ID_PLACEHOLDER.toString());
+        this.cartSubtotal = PathTemplate.split(
+                linkTo(methodOn(ShoppingCartController.class).getShoppingCartSubtotal(USER_ID_PLACEHOLDER)).toUri().getPath(),
+                USER_ID_PLACEHOLDER.toString());
+        this.cartRoot = linkTo(methodOn(ShoppingCartController.class).getShoppingCartRoot()).toUri().getPath();
+        this.root = linkTo(methodOn(HomeController.class).getRoot()).toUri().getPath();
+    }
+
+    // Binds the templates to the scheme, host and context path of the current request (resolved once per call)
+    public Bound forCurrentRequest() {
+        if (RequestContextHolder.getRequestAttributes() == null) {
+            return new Bound("");
+        }
+        return new Bound(ServletUriComponentsBuilder.fromCurrentServletMapping().build().toUriString());
+    }
+
+    public final class Bound {
+
+        private final String baseUri;
+
+        private Bound(String baseUri) {
+            this.baseUri = baseUri;
+        }
+
+        public Link bookDetails(String isbn) {
+            return Link.of(bookDetails.expand(baseUri, UriUtils.encodePathSegment(isbn, StandardCharsets.UTF_8)), "details");
+        }
+
+        public Link cartBooks(Long userId) {
+            return Link.of(cartBooks.expand(baseUri, String.valueOf(userId)), "shopping-cart-books");
+        }
+
+        public Link cartSubtotal(Long userId) {
+            return Link.of(cartSubtotal.expand(baseUri, String.valueOf(userId)), "shopping-cart-subtotal");
+        }
+
+        public Link cartRoot() {
+            return Link.of(baseUri + cartRoot, "shopping-cart-root");
+        }
+
+        public Link root() {
+            return Link.of(baseUri + root, "root");
+        }
+    }
+
+    // A mapped path split around its single path variable
+    private static final class PathTemplate {
+
+        private final String prefix;
+        private final String suffix;
+
+        private PathTemplate(String prefix, String suffix) {
+            this.prefix = prefix;
+            this.suffix = suffix;
+        }
+
+        static PathTemplate split(String path, String placeholder) {
+            int index = path.indexOf(placeholder);
+            if (index < 0) {
+                throw new IllegalStateException("Could not resolve link template from mapping: " + path);
+            }
+            return new PathTemplate(path.substring(0, index), path.substring(index + placeholder.length()));
+        }
+
+        String expand(String baseUri, String value) {
+            return baseUri + prefix + value + suffix;
+        }
+    }
+}
@@ -1,12 +1,17 @@
  package com.example.bookstore.controller;
 
+import com.example.bookstore.dto.CartItemOperationDTO;
+import com.example.bookstore.dto.OrderDTO;
+import com.example.bookstore.dto.ShoppingCartDTO;
 import com.example.bookstore.dto.ShoppingCartItemDTO;
 import com.example.bookstore.dto.ShoppingCartSubtotalResource;
+import com.example.bookstore.service.OrderService;
 import com.example.bookstore.service.ShoppingCartService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.hateoas.Link;
 import org.springframework.hateoas.RepresentationModel;
 import org.springframework.hateoas.server.mvc.WebMvcLinkBuilder;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import java.util.List;
@@ -21,6 +26,9 @@ public class ShoppingCartController {
     @Autowired
     private ShoppingCartService shoppingCartService;
 
+    @Autowired
+    private OrderService orderService;
+
     // Root
     @GetMapping
     public ResponseEntity<RepresentationModel> getShoppingCartRoot() {
@@ -80,6 +88,22 @@ public class ShoppingCartController {
     }
 
 
+    // PATCH: apply several item changes at once, e.g. [{"isbn": "...", "delta": 2}, {"isbn": "...", "quantity": 0}]
+    @PatchMapping("/{userId}/items")
+    public ResponseEntity<ShoppingCartDTO> updateItems(
+            @PathVariable Long userId,
+            @RequestBody List<CartItemOperationDTO> operations) {
+        return ResponseEntity.ok(shoppingCartService.updateItems(userId, operations));
+    }
+
+
+    // POST: turn the cart into an order, 201 with the order -----------------------------------------------------------
+    @PostMapping("/{userId}/checkout")
+    public ResponseEntity<OrderDTO> checkout(@PathVariable Long userId) {
+        return ResponseEntity.status(HttpStatus.CREATED).body(orderService.checkout(userId));
+    }
+
+
     // DELETE: remove book from user shopping cart ---------------------------------------------------------------------
     @DeleteMapping("/{userId}/remove-book")
     public ResponseEntity<Void> removeBookFromShoppingCart(
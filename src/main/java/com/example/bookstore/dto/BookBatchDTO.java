@@ -0,0 +1,32 @@
+package com.example.bookstore.dto;
+
+import com.example.bookstore.model.Book;
+
+import java.util.List;
+
+// Result of a multi-get: the books found, in request order, and the ISBNs that were not
+public class BookBatchDTO {
+    private List<Book> books;
+    private List<String> missing;
+
+    public BookBatchDTO(List<Book> books, List<String> missing) {
+        this.books = books;
+        this.missing = missing;
+    }
+
+    public List<Book> getBooks() {
+        return books;
+    }
+
+    public void setBooks(List<Book> books) {
+        this.books = books;
+    }
+
+    public List<String> getMissing() {
+        return missing;
+    }
+
+    public void setMissing(List<String> missing) {
+        this.missing = missing;
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.bookstore.dto;
+
+import org.springframework.hateoas.RepresentationModel;
+
+import java.util.List;
+import java.util.Map;
+
+// One page of a faceted browse: the books, how many match in total and the count of every facet value
+public class BookBrowseDTO extends RepresentationModel<BookBrowseDTO> {
+    private List<BookDTO> books;
+    private int total;
+    private Map<String, Map<String, Integer>> facets;
+
+    public BookBrowseDTO(List<BookDTO> books, int total, Map<String, Map<String, Integer>> facets) {
+        this.books = books;
+        this.total = total;
+        this.facets = facets;
+    }
+
+    public List<BookDTO> getBooks() {
+        return books;
+    }
+
+    public void setBooks(List<BookDTO> books) {
+        this.books = books;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public void setTotal(int total) {
+        this.total = total;
+    }
+
+    public Map<String, Map<String, Integer>> getFacets() {
+        return facets;
+    }
+
+    public void setFacets(Map<String, Map<String, Integer>> facets) {
+        this.facets = facets;
+    }
+}
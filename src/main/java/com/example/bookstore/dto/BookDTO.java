@@ -39,6 +39,15 @@ public class BookDTO extends RepresentationModel<BookDTO> {
         this.copiesSold = copiesSold;
     }
 
+    // Used by the JPQL constructor projections in BookRepository
+    public BookDTO(String ISBN, String title, String genre, double price, int copiesSold) {
+        this.ISBN = ISBN;
+        this.title = title;
+        this.genre = genre;
+        this.price = price;
+        this.copiesSold = copiesSold;
+    }
+
 
     public String getISBN() {
         return ISBN;
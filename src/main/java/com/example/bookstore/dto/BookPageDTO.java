@@ -0,0 +1,35 @@
+package com.example.bookstore.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import org.springframework.hateoas.RepresentationModel;
+
+import java.util.List;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BookPageDTO extends RepresentationModel<BookPageDTO> {
+    private List<BookDTO> books;
+
+    // ISBN to pass as "after" for the next page, null on the last page
+    private String nextCursor;
+
+    public BookPageDTO(List<BookDTO> books, String nextCursor) {
+        this.books = books;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<BookDTO> getBooks() {
+        return books;
+    }
+
+    public void setBooks(List<BookDTO> books) {
+        this.books = books;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.bookstore.dto;
+
+// One line of a batch cart update: either add delta copies (negative to take some away) or set the quantity
+public class CartItemOperationDTO {
+    private String isbn;
+    private Integer delta;
+    private Integer quantity;
+
+    public String getIsbn() {
+        return isbn;
+    }
+
+    public void setIsbn(String isbn) {
+        this.isbn = isbn;
+    }
+
+    public Integer getDelta() {
+        return delta;
+    }
+
+    public void setDelta(Integer delta) {
+        this.delta = delta;
+    }
+
+    public Integer getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(Integer quantity) {
+        this.quantity = quantity;
+    }
+}
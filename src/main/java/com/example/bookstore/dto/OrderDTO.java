@@ -0,0 +1,53 @@
+package com.example.bookstore.dto;
+
+import org.springframework.hateoas.RepresentationModel;
+
+import java.time.Instant;
+import java.util.List;
+
+// A placed order as returned by checkout
+public class OrderDTO extends RepresentationModel<OrderDTO> {
+    private Long orderId;
+    private List<OrderLineDTO> lines;
+    private Double total;
+    private Instant createdAt;
+
+    public OrderDTO(Long orderId, List<OrderLineDTO> lines, Double total, Instant createdAt) {
+        this.orderId = orderId;
+        this.lines = lines;
+        this.total = total;
+        this.createdAt = createdAt;
+    }
+
+    public Long getOrderId() {
+        return orderId;
+    }
+
+    public void setOrderId(Long orderId) {
+        this.orderId = orderId;
+    }
+
+    public List<OrderLineDTO> getLines() {
+        return lines;
+    }
+
+    public void setLines(List<OrderLineDTO> lines) {
+        this.lines = lines;
+    }
+
+    public Double getTotal() {
+        return total;
+    }
+
+    public void setTotal(Double total) {
+        this.total = total;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+}
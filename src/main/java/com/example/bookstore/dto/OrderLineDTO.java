@@ -0,0 +1,47 @@
+package com.example.bookstore.dto;
+
+public class OrderLineDTO {
+    private String isbn;
+    private String title;
+    private int quantity;
+    private double unitPrice;
+
+    public OrderLineDTO(String isbn, String title, int quantity, double unitPrice) {
+        this.isbn = isbn;
+        this.title = title;
+        this.quantity = quantity;
+        this.unitPrice = unitPrice;
+    }
+
+    public String getIsbn() {
+        return isbn;
+    }
+
+    public void setIsbn(String isbn) {
+        this.isbn = isbn;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+
+    public double getUnitPrice() {
+        return unitPrice;
+    }
+
+    public void setUnitPrice(double unitPrice) {
+        this.unitPrice = unitPrice;
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.bookstore.dto;
+
+public class RatingRequestDTO {
+    private Long userId;
+    private Integer rating;
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public Integer getRating() {
+        return rating;
+    }
+
+    public void setRating(Integer rating) {
+        this.rating = rating;
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.bookstore.dto;
+
+import org.springframework.hateoas.RepresentationModel;
+
+import java.util.List;
+
+// Whole cart state: its items and the subtotal
+public class ShoppingCartDTO extends RepresentationModel<ShoppingCartDTO> {
+    private List<ShoppingCartItemDTO> items;
+    private Double subtotal;
+
+    public ShoppingCartDTO(List<ShoppingCartItemDTO> items, Double subtotal) {
+        this.items = items;
+        this.subtotal = subtotal;
+    }
+
+    public List<ShoppingCartItemDTO> getItems() {
+        return items;
+    }
+
+    public void setItems(List<ShoppingCartItemDTO> items) {
+        this.items = items;
+    }
+
+    public Double getSubtotal() {
+        return subtotal;
+    }
+
+    public void setSubtotal(Double subtotal) {
+        this.subtotal = subtotal;
+    }
+}
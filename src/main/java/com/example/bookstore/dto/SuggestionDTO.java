@@ -0,0 +1,60 @@
+package com.example.bookstore.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SuggestionDTO {
+    private String text;
+    private String type; // "title" or "author"
+    private String isbn;
+    private Long authorId;
+    private long weight;
+
+    public SuggestionDTO(String text, String type, String isbn, Long authorId, long weight) {
+        this.text = text;
+        this.type = type;
+        this.isbn = isbn;
+        this.authorId = authorId;
+        this.weight = weight;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public void setText(String text) {
+        this.text = text;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public String getIsbn() {
+        return isbn;
+    }
+
+    public void setIsbn(String isbn) {
+        this.isbn = isbn;
+    }
+
+    public Long getAuthorId() {
+        return authorId;
+    }
+
+    public void setAuthorId(Long authorId) {
+        this.authorId = authorId;
+    }
+
+    public long getWeight() {
+        return weight;
+    }
+
+    public void setWeight(long weight) {
+        this.weight = weight;
+    }
+}
@@ -19,8 +19,6 @@ public class Book {
 
     @ManyToOne(cascade = CascadeType.PERSIST)
     @JoinColumn(name = "publisher_id")
-    @ManyToOne
-    @JoinColumn(name = "publisher_publisher_id")
     private Publisher publisher;
 
     @OneToMany(mappedBy = "book", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
@@ -0,0 +1,61 @@
+package com.example.bookstore.model;
+
+import javax.persistence.*;
+
+// Materialized rating aggregates per book, maintained by RatingAggregator's write-behind flush
+@Entity
+@Table(name = "book_rating_summaries")
+public class BookRatingSummary {
+
+    @Id
+    private String isbn;
+
+    private long ratingCount;
+
+    private long ratingSum;
+
+    // Histogram: number of ratings with each value 0-5
+    private long ratings0;
+    private long ratings1;
+    private long ratings2;
+    private long ratings3;
+    private long ratings4;
+    private long ratings5;
+
+    public String getIsbn() {
+        return isbn;
+    }
+
+    public void setIsbn(String isbn) {
+        this.isbn = isbn;
+    }
+
+    public long getRatingCount() {
+        return ratingCount;
+    }
+
+    public void setRatingCount(long ratingCount) {
+        this.ratingCount = ratingCount;
+    }
+
+    public long getRatingSum() {
+        return ratingSum;
+    }
+
+    public void setRatingSum(long ratingSum) {
+        this.ratingSum = ratingSum;
+    }
+
+    public long[] getHistogram() {
+        return new long[]{ratings0, ratings1, ratings2, ratings3, ratings4, ratings5};
+    }
+
+    public void setHistogram(long[] histogram) {
+        this.ratings0 = histogram[0];
+        this.ratings1 = histogram[1];
+        this.ratings2 = histogram[2];
+        this.ratings3 = histogram[3];
+        this.ratings4 = histogram[4];
+        this.ratings5 = histogram[5];
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.bookstore.model;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+// A publisher discount applied in chunks; lastIsbn is the checkpoint a restarted job resumes after
+@Entity
+@Table(name = "discount_jobs")
+public class DiscountJob {
+
+    public enum Status { PENDING, RUNNING, COMPLETED, FAILED }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long jobId;
+
+    @Column(nullable = false)
+    private Long publisherId;
+
+    @Column(nullable = false)
+    private double percentage;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Status status;
+
+    private int chunkSize;
+
+    private String lastIsbn;
+
+    private long booksUpdated;
+
+    private String error;
+
+    private Instant createdAt;
+
+    private Instant updatedAt;
+
+    public Long getJobId() {
+        return jobId;
+    }
+
+    public void setJobId(Long jobId) {
+        this.jobId = jobId;
+    }
+
+    public Long getPublisherId() {
+        return publisherId;
+    }
+
+    public void setPublisherId(Long publisherId) {
+        this.publisherId = publisherId;
+    }
+
+    public double getPercentage() {
+        return percentage;
+    }
+
+    public void setPercentage(double percentage) {
+        this.percentage = percentage;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    public String getLastIsbn() {
+        return lastIsbn;
+    }
+
+    public void setLastIsbn(String lastIsbn) {
+        this.lastIsbn = lastIsbn;
+    }
+
+    public long getBooksUpdated() {
+        return booksUpdated;
+    }
+
+    public void setBooksUpdated(long booksUpdated) {
+        this.booksUpdated = booksUpdated;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Instant updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
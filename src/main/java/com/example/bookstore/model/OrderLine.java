@@ -0,0 +1,66 @@
+package com.example.bookstore.model;
+
+import javax.persistence.*;
+
+@Entity
+@Table(name = "order_lines")
+public class OrderLine {
+
+    @EmbeddedId
+    private OrderLineId id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @MapsId("orderId")
+    @JoinColumn(name = "order_id")
+    private PurchaseOrder order;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @MapsId("ISBN")
+    @JoinColumn(name = "isbn")
+    private Book book;
+
+    private int quantity;
+
+    // Price per copy when the order was placed
+    private long unitPriceCents;
+
+    public OrderLineId getId() {
+        return id;
+    }
+
+    public void setId(OrderLineId id) {
+        this.id = id;
+    }
+
+    public PurchaseOrder getOrder() {
+        return order;
+    }
+
+    public void setOrder(PurchaseOrder order) {
+        this.order = order;
+    }
+
+    public Book getBook() {
+        return book;
+    }
+
+    public void setBook(Book book) {
+        this.book = book;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+
+    public long getUnitPriceCents() {
+        return unitPriceCents;
+    }
+
+    public void setUnitPriceCents(long unitPriceCents) {
+        this.unitPriceCents = unitPriceCents;
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.bookstore.model;
+
+import javax.persistence.Column;
+import javax.persistence.Embeddable;
+import java.io.Serializable;
+
+@Embeddable
+public class OrderLineId implements Serializable {
+    @Column(name = "order_id")
+    private Long orderId;
+    @Column(name = "isbn")
+    private String ISBN;
+
+    public OrderLineId() {}
+
+    public OrderLineId(Long orderId, String ISBN) {
+        this.orderId = orderId;
+        this.ISBN = ISBN;
+    }
+
+    public Long getOrderId() {
+        return orderId;
+    }
+
+    public void setOrderId(Long orderId) {
+        this.orderId = orderId;
+    }
+
+    public String getISBN() {
+        return ISBN;
+    }
+
+    public void setISBN(String isbn) {
+        this.ISBN = isbn;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof OrderLineId)) return false;
+        OrderLineId that = (OrderLineId) o;
+        return orderId.equals(that.orderId) && ISBN.equals(that.ISBN);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * orderId.hashCode() + ISBN.hashCode();
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.bookstore.model;
+
+import javax.persistence.*;
+import java.time.Instant;
+import java.util.Set;
+
+// A checked-out cart; its lines keep the prices the books had at checkout
+@Entity
+@Table(name = "orders")
+public class PurchaseOrder {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long orderId;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    private UserProfile user;
+
+    @OneToMany(mappedBy = "order", fetch = FetchType.LAZY)
+    private Set<OrderLine> lines;
+
+    private long totalCents;
+
+    private Instant createdAt;
+
+    public Long getOrderId() {
+        return orderId;
+    }
+
+    public void setOrderId(Long orderId) {
+        this.orderId = orderId;
+    }
+
+    public UserProfile getUser() {
+        return user;
+    }
+
+    public void setUser(UserProfile user) {
+        this.user = user;
+    }
+
+    public Set<OrderLine> getLines() {
+        return lines;
+    }
+
+    public void setLines(Set<OrderLine> lines) {
+        this.lines = lines;
+    }
+
+    public long getTotalCents() {
+        return totalCents;
+    }
+
+    public void setTotalCents(long totalCents) {
+        this.totalCents = totalCents;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+}
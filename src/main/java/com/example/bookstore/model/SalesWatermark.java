@@ -0,0 +1,31 @@
+package com.example.bookstore.model;
+
+import javax.persistence.*;
+
+// How far books.copies_sold has counted orders: every order up to flushedOrderId and none after it.
+// A single row, written by SalesCounter in the transaction that applies the counts
+@Entity
+@Table(name = "sales_watermark")
+public class SalesWatermark {
+
+    @Id
+    private Integer id;
+
+    private long flushedOrderId;
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public long getFlushedOrderId() {
+        return flushedOrderId;
+    }
+
+    public void setFlushedOrderId(long flushedOrderId) {
+        this.flushedOrderId = flushedOrderId;
+    }
+}
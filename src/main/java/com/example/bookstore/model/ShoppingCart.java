@@ -4,20 +4,23 @@ import javax.persistence.*;
 import java.util.Set;
 
 @Entity
-@Table(name = "shopping_carts")
+@Table(name = "shopping_carts", uniqueConstraints = @UniqueConstraint(columnNames = "user_id"))
 public class ShoppingCart {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long cartId;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     private UserProfile user;
 
     @OneToMany(mappedBy = "shoppingCart", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private Set<ShoppingCartItem> items;
 
+    // Running total of price * quantity in cents; null when it must be recomputed (e.g. after a price change)
+    private Long subtotalCents;
+
     public Long getCartId() {
         return cartId;
     }
@@ -41,5 +44,13 @@ public class ShoppingCart {
     public void setItems(Set<ShoppingCartItem> items) {
         this.items = items;
     }
+
+    public Long getSubtotalCents() {
+        return subtotalCents;
+    }
+
+    public void setSubtotalCents(Long subtotalCents) {
+        this.subtotalCents = subtotalCents;
+    }
 }
 
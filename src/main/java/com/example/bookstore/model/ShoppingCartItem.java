@@ -10,12 +10,12 @@ public class ShoppingCartItem implements Serializable {
     @EmbeddedId
     private ShoppingCartItemId id;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @MapsId("cartId") // This refers to the cartId field in ShoppingCartItemId
     @JoinColumn(name = "cart_id")
     private ShoppingCart shoppingCart;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @MapsId("ISBN") // This refers to the ISBN field in ShoppingCartItemId
     @JoinColumn(name = "ISBN")
     private Book book;
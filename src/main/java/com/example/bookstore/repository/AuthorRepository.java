@@ -6,11 +6,23 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface AuthorRepository extends JpaRepository<Author, Long> {
 
     // Custom query to find authors by book's ISBN
     @Query("SELECT a FROM Author a JOIN BookAuthors ba ON a.authorId = ba.author.authorId WHERE ba.id.ISBN = :isbn")
     List<Author> findAuthorsByBookIsbn(@Param("isbn") String isbn);
+
+    // (isbn, first name, last name) for every author of the given books
+    @Query("SELECT ba.id.ISBN, a.firstName, a.lastName FROM BookAuthors ba JOIN ba.author a WHERE ba.id.ISBN IN :isbns")
+    List<Object[]> findAuthorNamesByIsbns(@Param("isbns") Collection<String> isbns);
+
+    // Author names with the total copies sold across their books, for autocomplete ranking
+    @Query("SELECT a.authorId, a.firstName, a.lastName, COALESCE(SUM(b.copiesSold), 0) " +
+            "FROM Author a LEFT JOIN a.bookAuthors ba LEFT JOIN ba.book b " +
+            "GROUP BY a.authorId, a.firstName, a.lastName")
+    Stream<Object[]> streamNamesWithCopiesSold();
 }
@@ -0,0 +1,172 @@
+package com.example.bookstore.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Plain JDBC writes for bulk catalog changes, where going through the persistence context costs a SELECT per row
+@Repository
+public class BookBatchRepository {
+
+    // Absent fields are bound as NULL: a new row gets the entity defaults, an existing one keeps its value.
+    // copies_sold only seeds new rows, live sales are never overwritten by a feed. price and year_published
+    // are bound a second time for the update, EXCLUDED already holds their insert defaults
+    private static final String POSTGRES_UPSERT =
+            "INSERT INTO books (isbn, title, description, price, genre, year_published, copies_sold, publisher_id) " +
+            "VALUES (?, ?, ?, COALESCE(?, 0), ?, COALESCE(?, 0), COALESCE(?, 0), ?) " +
+            "ON CONFLICT (isbn) DO UPDATE SET title = EXCLUDED.title, " +
+            "description = COALESCE(EXCLUDED.description, books.description), " +
+            "price = COALESCE(?, books.price), genre = COALESCE(EXCLUDED.genre, books.genre), " +
+            "year_published = COALESCE(?, books.year_published), " +
+            "publisher_id = COALESCE(EXCLUDED.publisher_id, books.publisher_id)";
+
+    // H2 (tests) has no ON CONFLICT; MERGE ... USING updates matched rows column by column, unlike MERGE ... KEY
+    private static final String MERGE_UPSERT =
+            "MERGE INTO books b USING (VALUES (CAST(? AS VARCHAR), CAST(? AS VARCHAR), CAST(? AS VARCHAR), " +
+            "CAST(? AS DOUBLE PRECISION), CAST(? AS VARCHAR), CAST(? AS INTEGER), CAST(? AS INTEGER), CAST(? AS BIGINT))) " +
+            "s (isbn, title, description, price, genre, year_published, copies_sold, publisher_id) ON b.isbn = s.isbn " +
+            "WHEN MATCHED THEN UPDATE SET title = s.title, description = COALESCE(s.description, b.description), " +
+            "price = COALESCE(s.price, b.price), genre = COALESCE(s.genre, b.genre), " +
+            "year_published = COALESCE(s.year_published, b.year_published), " +
+            "publisher_id = COALESCE(s.publisher_id, b.publisher_id) " +
+            "WHEN NOT MATCHED THEN INSERT (isbn, title, description, price, genre, year_published, copies_sold, publisher_id) " +
+            "VALUES (s.isbn, s.title, s.description, COALESCE(s.price, 0), s.genre, COALESCE(s.year_published, 0), " +
+            "COALESCE(s.copies_sold, 0), s.publisher_id)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private volatile Boolean postgres;
+
+    // Inserts or updates every row with one prepared statement executed as a single JDBC batch
+    public void upsertAll(List<BookRow> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        boolean postgres = isPostgres();
+        jdbcTemplate.batchUpdate(postgres ? POSTGRES_UPSERT : MERGE_UPSERT, rows, rows.size(),
+                (statement, row) -> {
+                    statement.setString(1, row.getIsbn());
+                    statement.setString(2, row.getTitle());
+                    statement.setString(3, row.getDescription());
+                    statement.setObject(4, row.getPrice(), Types.DOUBLE);
+                    statement.setString(5, row.getGenre());
+                    statement.setObject(6, row.getYearPublished(), Types.INTEGER);
+                    statement.setObject(7, row.getCopiesSold(), Types.INTEGER);
+                    statement.setObject(8, row.getPublisherId(), Types.BIGINT);
+                    if (postgres) {
+                        statement.setObject(9, row.getPrice(), Types.DOUBLE);
+                        statement.setObject(10, row.getYearPublished(), Types.INTEGER);
+                    }
+                });
+    }
+
+    // Current prices of the books that exist, in cents by trimmed ISBN
+    public Map<String, Long> findPriceCents(Collection<String> isbns) {
+        Map<String, Long> prices = new HashMap<>();
+        if (isbns.isEmpty()) {
+            return prices;
+        }
+        String placeholders = String.join(", ", Collections.nCopies(isbns.size(), "?"));
+        jdbcTemplate.query("SELECT isbn, ROUND(price * 100) FROM books WHERE isbn IN (" + placeholders + ")",
+                (RowCallbackHandler) rs -> prices.put(rs.getString(1).trim(), rs.getLong(2)), isbns.toArray());
+        return prices;
+    }
+
+    // Adds sales to copies_sold with one prepared statement executed as a single JDBC batch, in the map's order
+    public void addCopiesSold(Map<String, Long> deltas) {
+        List<Map.Entry<String, Long>> rows = new ArrayList<>(deltas.entrySet());
+        jdbcTemplate.batchUpdate("UPDATE books SET copies_sold = copies_sold + ? WHERE isbn = ?",
+                rows, rows.size(), (statement, row) -> {
+                    statement.setLong(1, row.getValue());
+                    statement.setString(2, row.getKey());
+                });
+    }
+
+    // Order id copies_sold has counted through, null before the first flush
+    public Long findSalesWatermark() {
+        List<Long> rows = jdbcTemplate.queryForList("SELECT flushed_order_id FROM sales_watermark WHERE id = 1", Long.class);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    // Runs in the transaction that applies the counts up to flushedOrderId; one writer, SalesCounter's flush
+    public void saveSalesWatermark(long flushedOrderId) {
+        if (jdbcTemplate.update("UPDATE sales_watermark SET flushed_order_id = ? WHERE id = 1", flushedOrderId) == 0) {
+            jdbcTemplate.update("INSERT INTO sales_watermark (id, flushed_order_id) VALUES (1, ?)", flushedOrderId);
+        }
+    }
+
+    boolean isPostgres() {
+        if (postgres == null) {
+            postgres = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection ->
+                    connection.getMetaData().getDatabaseProductName().toLowerCase().contains("postgres"));
+        }
+        return postgres;
+    }
+
+    // One book as a feed supplied it; fields the feed left out are null
+    public static final class BookRow {
+        private final String isbn;
+        private final String title;
+        private final String description;
+        private final Double price;
+        private final String genre;
+        private final Integer yearPublished;
+        private final Integer copiesSold;
+        private final Long publisherId;
+
+        public BookRow(String isbn, String title, String description, Double price, String genre, Integer yearPublished,
+                       Integer copiesSold, Long publisherId) {
+            this.isbn = isbn;
+            this.title = title;
+            this.description = description;
+            this.price = price;
+            this.genre = genre;
+            this.yearPublished = yearPublished;
+            this.copiesSold = copiesSold;
+            this.publisherId = publisherId;
+        }
+
+        public String getIsbn() {
+            return isbn;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public Double getPrice() {
+            return price;
+        }
+
+        public String getGenre() {
+            return genre;
+        }
+
+        public Integer getYearPublished() {
+            return yearPublished;
+        }
+
+        public Integer getCopiesSold() {
+            return copiesSold;
+        }
+
+        public Long getPublisherId() {
+            return publisherId;
+        }
+    }
+}
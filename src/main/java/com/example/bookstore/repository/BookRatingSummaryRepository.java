@@ -0,0 +1,104 @@
+package com.example.bookstore.repository;
+
+import com.example.bookstore.model.BookRatingSummary;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Map;
+
+// Applies rating deltas to book_rating_summaries with plain JDBC, many books per batched statement
+@Repository
+public class BookRatingSummaryRepository {
+
+    private static final String POSTGRES_ADD =
+            "INSERT INTO book_rating_summaries (isbn, rating_count, rating_sum, " +
+            "ratings0, ratings1, ratings2, ratings3, ratings4, ratings5) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT (isbn) DO UPDATE SET " +
+            "rating_count = book_rating_summaries.rating_count + EXCLUDED.rating_count, " +
+            "rating_sum = book_rating_summaries.rating_sum + EXCLUDED.rating_sum, " +
+            "ratings0 = book_rating_summaries.ratings0 + EXCLUDED.ratings0, " +
+            "ratings1 = book_rating_summaries.ratings1 + EXCLUDED.ratings1, " +
+            "ratings2 = book_rating_summaries.ratings2 + EXCLUDED.ratings2, " +
+            "ratings3 = book_rating_summaries.ratings3 + EXCLUDED.ratings3, " +
+            "ratings4 = book_rating_summaries.ratings4 + EXCLUDED.ratings4, " +
+            "ratings5 = book_rating_summaries.ratings5 + EXCLUDED.ratings5";
+
+    // H2 (tests) has no ON CONFLICT, the standard MERGE does the same
+    private static final String MERGE_ADD =
+            "MERGE INTO book_rating_summaries s USING (VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)) " +
+            "AS d (isbn, rating_count, rating_sum, ratings0, ratings1, ratings2, ratings3, ratings4, ratings5) " +
+            "ON s.isbn = d.isbn " +
+            "WHEN MATCHED THEN UPDATE SET rating_count = s.rating_count + d.rating_count, " +
+            "rating_sum = s.rating_sum + d.rating_sum, ratings0 = s.ratings0 + d.ratings0, " +
+            "ratings1 = s.ratings1 + d.ratings1, ratings2 = s.ratings2 + d.ratings2, " +
+            "ratings3 = s.ratings3 + d.ratings3, ratings4 = s.ratings4 + d.ratings4, " +
+            "ratings5 = s.ratings5 + d.ratings5 " +
+            "WHEN NOT MATCHED THEN INSERT (isbn, rating_count, rating_sum, " +
+            "ratings0, ratings1, ratings2, ratings3, ratings4, ratings5) VALUES (d.isbn, d.rating_count, " +
+            "d.rating_sum, d.ratings0, d.ratings1, d.ratings2, d.ratings3, d.ratings4, d.ratings5)";
+
+    private static final String SELECT_ALL =
+            "SELECT s.isbn, b.title, s.ratings0, s.ratings1, s.ratings2, s.ratings3, s.ratings4, s.ratings5 " +
+            "FROM book_rating_summaries s JOIN books b ON b.isbn = s.isbn";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private volatile Boolean postgres;
+
+    // Adds each histogram delta (indexed by rating value) to the book's stored aggregates
+    public void addAll(Map<String, long[]> histogramDeltas) {
+        if (histogramDeltas.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<String, long[]>> rows = List.copyOf(histogramDeltas.entrySet());
+        jdbcTemplate.batchUpdate(isPostgres() ? POSTGRES_ADD : MERGE_ADD, rows, rows.size(),
+                (statement, row) -> {
+                    long[] histogram = row.getValue();
+                    long count = 0;
+                    long sum = 0;
+                    for (int rating = 0; rating < histogram.length; rating++) {
+                        count += histogram[rating];
+                        sum += rating * histogram[rating];
+                    }
+                    statement.setString(1, row.getKey());
+                    statement.setLong(2, count);
+                    statement.setLong(3, sum);
+                    for (int rating = 0; rating < histogram.length; rating++) {
+                        statement.setLong(4 + rating, histogram[rating]);
+                    }
+                });
+    }
+
+    public boolean isEmpty() {
+        Integer any = jdbcTemplate.query("SELECT 1 FROM book_rating_summaries FETCH FIRST 1 ROWS ONLY",
+                resultSet -> resultSet.next() ? 1 : null);
+        return any == null;
+    }
+
+    // (isbn, title, histogram) for every summarised book
+    public void forEach(SummaryConsumer consumer) {
+        jdbcTemplate.query(SELECT_ALL, resultSet -> {
+            long[] histogram = new long[6];
+            for (int rating = 0; rating < histogram.length; rating++) {
+                histogram[rating] = resultSet.getLong(3 + rating);
+            }
+            consumer.accept(resultSet.getString(1), resultSet.getString(2), histogram);
+        });
+    }
+
+    boolean isPostgres() {
+        if (postgres == null) {
+            postgres = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection ->
+                    connection.getMetaData().getDatabaseProductName().toLowerCase().contains("postgres"));
+        }
+        return postgres;
+    }
+
+    public interface SummaryConsumer {
+        void accept(String isbn, String title, long[] histogram);
+    }
+}
@@ -1,31 +1,92 @@
 package com.example.bookstore.repository;
 
 import java.util.List;
+import com.example.bookstore.dto.BookDTO;
 import com.example.bookstore.model.Book;
 import com.example.bookstore.model.Publisher;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
+
+import javax.persistence.QueryHint;
+import java.util.Collection;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 
 public interface BookRepository extends JpaRepository<Book, String> {
 
+    // Constructor projection for list endpoints: only the columns BookDTO renders, no managed entities
+    String BOOK_DTO = "new com.example.bookstore.dto.BookDTO(b.isbn, b.title, b.genre, b.price, b.copiesSold)";
+
     @Query("SELECT b FROM Book b WHERE b.isbn = :isbn")
     Optional<Book> findByIsbn(@Param("isbn") String isbn);
 
     @Query("SELECT b FROM Book b JOIN BookAuthors ba ON b.isbn = ba.id.ISBN WHERE ba.id.authorId = :authorId")
     List<Book> findBooksByAuthorId(@Param("authorId") Long authorId);
 
-    List<Book> findByGenreIgnoreCase(String genre);
+    @Query("SELECT " + BOOK_DTO + " FROM Book b WHERE LOWER(b.genre) = LOWER(:genre)")
+    List<BookDTO> findBookDTOsByGenre(@Param("genre") String genre);
+
+    @Query("SELECT " + BOOK_DTO + " FROM Book b WHERE b.isbn IN :isbns")
+    List<BookDTO> findBookDTOsByIsbns(@Param("isbns") Collection<String> isbns);
+
+    @Query("SELECT " + BOOK_DTO + " FROM Book b")
+    List<BookDTO> findAllBookDTOs();
+
+    // Multi-get; fetches the publisher in the same query instead of one extra select per publisher
+    @Query("SELECT b FROM Book b LEFT JOIN FETCH b.publisher WHERE b.isbn IN :isbns")
+    List<Book> findWithPublisherByIsbns(@Param("isbns") Collection<String> isbns);
+
+    // Feeds the in-memory genre index at startup
+    @Query("SELECT b.isbn, b.genre FROM Book b")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    Stream<Object[]> streamIsbnAndGenre();
+
+    // Feeds the facet index at startup, in ISBN order so book ids follow the catalog order
+    @Query("SELECT b.isbn, b.genre, b.price, b.yearPublished, p.publisherId FROM Book b LEFT JOIN b.publisher p ORDER BY b.isbn")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    Stream<Object[]> streamFacetValues();
+
+    // Keyset pagination: seeks past the last ISBN of the previous page instead of using OFFSET
+    @Query("SELECT " + BOOK_DTO + " FROM Book b WHERE b.isbn > :after ORDER BY b.isbn")
+    List<BookDTO> findBookDTOPageAfterIsbn(@Param("after") String after, Pageable pageable);
+
+    // Server-side cursor over the whole catalog; must be consumed inside a transaction and closed
+    @Query("SELECT " + BOOK_DTO + " FROM Book b ORDER BY b.isbn")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    Stream<BookDTO> streamAllBookDTOs();
+
+    // Feed the full-text search index at startup
+    @Query("SELECT b.isbn, b.title, b.description FROM Book b")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    Stream<Object[]> streamSearchableText();
+
+    @Query("SELECT ba.id.ISBN, a.firstName, a.lastName FROM BookAuthors ba JOIN ba.author a")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    Stream<Object[]> streamAuthorNames();
+
+    // Feeds the autocomplete index, titles weighted by copies sold
+    @Query("SELECT b.isbn, b.title, b.copiesSold FROM Book b")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    Stream<Object[]> streamTitlesWithCopiesSold();
+
+    // Seeds the in-memory leaderboard; the Pageable keeps it a LIMIT-ed query
+    @Query("SELECT " + BOOK_DTO + " FROM Book b ORDER BY b.copiesSold DESC, b.isbn")
+    List<BookDTO> findTopSellers(Pageable pageable);
 
-    @Query("SELECT b FROM Book b ORDER BY b.copiesSold DESC")
-    List<Book> findTopTenSellers();
+    // Next chunk of a publisher's books for a discount job, seeking past the job's checkpoint
+    @Query("SELECT b.isbn FROM Book b WHERE b.publisher.publisherId = :publisherId AND b.isbn > :after ORDER BY b.isbn")
+    List<String> findIsbnsByPublisherAfter(@Param("publisherId") Long publisherId, @Param("after") String after, Pageable pageable);
 
     @Modifying
-    @Query("UPDATE Book b SET b.price = b.price - (b.price * (:percentage /100.0)) WHERE b.publisher.publisherId = :publisherId")
-    int discountBooksByPublisher(@Param("percentage") Double percentage, @Param("publisherId") Long publisherId);
+    @Query("UPDATE Book b SET b.price = b.price - (b.price * (:percentage /100.0)) WHERE b.isbn IN :isbns")
+    int discountBooks(@Param("percentage") Double percentage, @Param("isbns") List<String> isbns);
 
     @Query("SELECT COUNT(b) from Book b WHERE b.publisher.publisherId = :publisherId")
     int countBooksByPublisherId(@Param("publisherId") Long publisherId);
@@ -0,0 +1,14 @@
+package com.example.bookstore.repository;
+
+import com.example.bookstore.model.DiscountJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface DiscountJobRepository extends JpaRepository<DiscountJob, Long> {
+
+    List<DiscountJob> findByStatusInOrderByJobId(Collection<DiscountJob.Status> statuses);
+}
@@ -0,0 +1,108 @@
+package com.example.bookstore.repository;
+
+import com.example.bookstore.dto.BookDTO;
+import com.example.bookstore.dto.OrderLineDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+// Checkout writes in plain JDBC; the writes run inside the checkout transaction
+@Repository
+public class OrderJdbcRepository {
+
+    public interface SaleHandler {
+        void sale(long orderId, String isbn, Instant createdAt, int quantity);
+    }
+
+    public interface LineHandler {
+        void line(long orderId, String isbn);
+    }
+
+    public interface QuantityHandler {
+        void line(long orderId, String isbn, int quantity);
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // What an order snapshots of its books, in ISBN order. A plain read: sales reach copies_sold through
+    // SalesCounter, so checkout takes no locks on books rows.
+    public List<BookDTO> findBooks(Collection<String> isbns) {
+        String placeholders = String.join(", ", Collections.nCopies(isbns.size(), "?"));
+        return jdbcTemplate.query(
+                "SELECT isbn, title, genre, price, copies_sold FROM books WHERE isbn IN (" + placeholders + ") " +
+                "ORDER BY isbn",
+                (resultSet, rowNum) -> new BookDTO(resultSet.getString(1).trim(), resultSet.getString(2),
+                        resultSet.getString(3), resultSet.getDouble(4), resultSet.getInt(5)),
+                isbns.toArray());
+    }
+
+    public long insertOrder(long userId, long totalCents, Instant createdAt) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    "INSERT INTO orders (user_id, total_cents, created_at) VALUES (?, ?, ?)", new String[]{"order_id"});
+            statement.setLong(1, userId);
+            statement.setLong(2, totalCents);
+            statement.setTimestamp(3, Timestamp.from(createdAt));
+            return statement;
+        }, keyHolder);
+        return keyHolder.getKey().longValue();
+    }
+
+    // One JDBC batch for all lines
+    public void insertLines(long orderId, List<OrderLineDTO> lines) {
+        jdbcTemplate.batchUpdate("INSERT INTO order_lines (order_id, isbn, quantity, unit_price_cents) VALUES (?, ?, ?, ?)",
+                lines, lines.size(), (statement, line) -> {
+                    statement.setLong(1, orderId);
+                    statement.setString(2, line.getIsbn());
+                    statement.setInt(3, line.getQuantity());
+                    statement.setLong(4, Math.round(line.getUnitPrice() * 100));
+                });
+    }
+
+    // Streams every order line placed since the given instant, used to rebuild in-memory sales windows
+    public void forEachSaleSince(Instant since, SaleHandler handler) {
+        jdbcTemplate.query(
+                "SELECT o.order_id, l.isbn, o.created_at, l.quantity FROM order_lines l JOIN orders o ON o.order_id = l.order_id " +
+                "WHERE o.created_at >= ?",
+                resultSet -> {
+                    handler.sale(resultSet.getLong(1), resultSet.getString(2).trim(), resultSet.getTimestamp(3).toInstant(),
+                            resultSet.getInt(4));
+                },
+                Timestamp.from(since));
+    }
+
+    // Highest order id so far, 0 if there is none
+    public long findLastOrderId() {
+        Long orderId = jdbcTemplate.queryForObject("SELECT MAX(order_id) FROM orders", Long.class);
+        return orderId == null ? 0 : orderId;
+    }
+
+    // Streams the lines of every order after afterOrderId, grouped by order
+    public void forEachLineAfter(long afterOrderId, QuantityHandler handler) {
+        jdbcTemplate.query("SELECT order_id, isbn, quantity FROM order_lines WHERE order_id > ? ORDER BY order_id",
+                resultSet -> {
+                    handler.line(resultSet.getLong(1), resultSet.getString(2).trim(), resultSet.getInt(3));
+                },
+                afterOrderId);
+    }
+
+    // Streams the lines of orders with ids in (afterOrderId, toOrderId], grouped by order
+    public void forEachLineBetween(long afterOrderId, long toOrderId, LineHandler handler) {
+        jdbcTemplate.query("SELECT order_id, isbn FROM order_lines WHERE order_id > ? AND order_id <= ? ORDER BY order_id",
+                resultSet -> {
+                    handler.line(resultSet.getLong(1), resultSet.getString(2).trim());
+                },
+                afterOrderId, toOrderId);
+    }
+}
@@ -2,6 +2,8 @@ package com.example.bookstore.repository;
 
 import com.example.bookstore.model.Book;
 import com.example.bookstore.model.Publisher;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -13,6 +15,15 @@ import java.util.List;
 @Repository
 public interface PublisherRepository extends JpaRepository<Publisher, Long> {
 
+    // The publisher list is tiny and rarely changes, so it is cached whole and dropped on any save
+    @Override
+    @Cacheable("publishers")
+    List<Publisher> findAll();
+
+    @Override
+    @CacheEvict(cacheNames = "publishers", allEntries = true)
+    <S extends Publisher> S save(S publisher);
+
     @Query("SELECT b FROM Book b WHERE b.publisher.publisherId = :publisherId")
     List<Book> getBooksByPublisherId(@Param("publisherId") Long publisherID);
 }
\ No newline at end of file
@@ -1,25 +1,35 @@
 package com.example.bookstore.repository;
 
-import com.example.bookstore.dto.BookRatingDTO;
-import com.example.bookstore.model.Book;
 import com.example.bookstore.model.Ratings;
 import com.example.bookstore.model.RatingsId;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import java.util.List;
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 @Repository
 public interface RatingsRepository extends JpaRepository<Ratings, RatingsId> {
 
-    @Query("SELECT new com.example.bookstore.dto.BookRatingDTO(b.ISBN, b.title, ROUND(AVG(r.rating), 1)) " +
+    // (isbn, title, rating, count) for every rated book, seeds the in-memory rating summaries; ratings outside
+    // 0-5 (RatingSummaryIndex.MAX_RATING) or missing are left out, they have no histogram slot
+    @Query("SELECT b.isbn, b.title, r.rating, COUNT(r) " +
             "FROM Ratings r JOIN r.book b " +
-            "GROUP BY b.ISBN, b.title " +
-            "HAVING AVG(r.rating) >= :minRating " +
-            "ORDER BY AVG(r.rating) DESC")
-    List<BookRatingDTO> findDistinctTopByRatingGreaterThanEqual(@Param("minRating") double minRating);
-}
-
+            "WHERE r.rating BETWEEN 0 AND 5 " +
+            "GROUP BY b.isbn, b.title, r.rating")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    Stream<Object[]> streamRatingHistogram();
 
+    // The user's rating row, locked until the transaction ends so concurrent re-rates see each other's value
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM Ratings r WHERE r.id = :id")
+    Optional<Ratings> findForUpdateById(@Param("id") RatingsId id);
+}
@@ -3,6 +3,7 @@ package com.example.bookstore.repository;
 import com.example.bookstore.model.ShoppingCartItem;
 import com.example.bookstore.model.ShoppingCartItemId;
 import org.springframework.data.jpa.repository.JpaRepository;
+
 import java.util.List;
 import java.util.Optional;
 
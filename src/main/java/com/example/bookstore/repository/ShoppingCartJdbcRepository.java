@@ -0,0 +1,188 @@
+package com.example.bookstore.repository;
+
+import com.example.bookstore.cart.CartContents;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+// Cart reads and writes in plain JDBC: single-statement mutations for the write-through store, so concurrent
+// requests for one cart never lose an update, and batched writes for both stores
+@Repository
+public class ShoppingCartJdbcRepository {
+
+    private static final String POSTGRES_ADD_QUANTITY =
+            "INSERT INTO shopping_cart_items (cart_id, isbn, quantity) VALUES (?, ?, ?) " +
+            "ON CONFLICT (cart_id, isbn) DO UPDATE SET quantity = shopping_cart_items.quantity + EXCLUDED.quantity";
+
+    private static final String UPDATE_QUANTITY =
+            "UPDATE shopping_cart_items SET quantity = quantity + ? WHERE cart_id = ? AND isbn = ?";
+
+    private static final String INSERT_ITEM =
+            "INSERT INTO shopping_cart_items (cart_id, isbn, quantity) VALUES (?, ?, ?)";
+
+    // Takes the line total off the running subtotal, priced the same way recomputeSubtotal does
+    private static final String SUBTRACT_LINE =
+            "UPDATE shopping_carts SET subtotal_cents = subtotal_cents - COALESCE((" +
+            "SELECT ROUND(b.price * 100) * i.quantity FROM shopping_cart_items i JOIN books b ON b.isbn = i.isbn " +
+            "WHERE i.cart_id = ? AND i.isbn = ?), 0) WHERE cart_id = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private volatile Boolean postgres;
+
+    public Optional<Long> findCartId(long userId) {
+        List<Long> ids = jdbcTemplate.queryForList("SELECT cart_id FROM shopping_carts WHERE user_id = ?", Long.class, userId);
+        return ids.stream().findFirst();
+    }
+
+    // The user's cart and all of its lines, with their books' current prices, in one round trip, or empty if
+    // they have no cart
+    public Optional<CartContents> loadCart(long userId) {
+        return loadCartWhere("c.user_id = ?", userId);
+    }
+
+    // The same, addressed by primary key; empty if the cart no longer exists
+    public Optional<CartContents> loadCartById(long cartId) {
+        return loadCartWhere("c.cart_id = ?", cartId);
+    }
+
+    // shopping_carts.user_id is unique, so two first adds racing here end up sharing one cart
+    public long createCart(long userId) {
+        try {
+            jdbcTemplate.update("INSERT INTO shopping_carts (user_id, subtotal_cents) VALUES (?, 0)", userId);
+        } catch (DuplicateKeyException e) {
+            // Lost the race, the other request's cart is ours too
+        }
+        return findCartId(userId).orElseThrow();
+    }
+
+    // Atomically adds delta to the item's quantity, creating the row if needed
+    public void addQuantity(long cartId, String isbn, int delta) {
+        if (isPostgres()) {
+            jdbcTemplate.update(POSTGRES_ADD_QUANTITY, cartId, isbn, delta);
+            return;
+        }
+        // Without ON CONFLICT: update, else insert, and if a concurrent insert won, update after all
+        if (jdbcTemplate.update(UPDATE_QUANTITY, delta, cartId, isbn) == 0) {
+            try {
+                jdbcTemplate.update(INSERT_ITEM, cartId, isbn, delta);
+            } catch (DuplicateKeyException e) {
+                jdbcTemplate.update(UPDATE_QUANTITY, delta, cartId, isbn);
+            }
+        }
+    }
+
+    // Deletes the item and its line total from the subtotal; must run in a transaction. Returns rows deleted.
+    public int removeItem(long cartId, String isbn) {
+        jdbcTemplate.update(SUBTRACT_LINE, cartId, isbn, cartId);
+        return jdbcTemplate.update("DELETE FROM shopping_cart_items WHERE cart_id = ? AND isbn = ?", cartId, isbn);
+    }
+
+    // Empties the cart after checkout; must run in the checkout transaction
+    public void clearCart(long cartId) {
+        jdbcTemplate.update("DELETE FROM shopping_cart_items WHERE cart_id = ?", cartId);
+        jdbcTemplate.update("UPDATE shopping_carts SET subtotal_cents = 0 WHERE cart_id = ?", cartId);
+    }
+
+    // Row-locks the cart for the rest of the transaction; false if the cart no longer exists
+    public boolean lockCart(long cartId) {
+        return !jdbcTemplate.queryForList("SELECT cart_id FROM shopping_carts WHERE cart_id = ? FOR UPDATE", Long.class, cartId).isEmpty();
+    }
+
+    public Map<String, Integer> findQuantities(long cartId) {
+        Map<String, Integer> quantities = new HashMap<>();
+        jdbcTemplate.query("SELECT isbn, quantity FROM shopping_cart_items WHERE cart_id = ?",
+                resultSet -> {
+                    quantities.put(resultSet.getString(1).trim(), resultSet.getInt(2));
+                },
+                cartId);
+        return quantities;
+    }
+
+    // Writes final quantities, keyed by cart ID, with one JDBC batch each for updates, inserts and deletes.
+    // The carts must be locked, or owned by the caller as with the write-behind store.
+    public void writeQuantities(Map<Long, Map<String, Integer>> updates, Map<Long, Map<String, Integer>> inserts,
+                                Map<Long, ? extends Collection<String>> deletes) {
+        List<Object[]> updateRows = new ArrayList<>();
+        updates.forEach((cartId, quantities) -> quantities.forEach((isbn, quantity) ->
+                updateRows.add(new Object[]{quantity, cartId, isbn})));
+        if (!updateRows.isEmpty()) {
+            jdbcTemplate.batchUpdate("UPDATE shopping_cart_items SET quantity = ? WHERE cart_id = ? AND isbn = ?", updateRows);
+        }
+
+        List<Object[]> insertRows = new ArrayList<>();
+        inserts.forEach((cartId, quantities) -> quantities.forEach((isbn, quantity) ->
+                insertRows.add(new Object[]{cartId, isbn, quantity})));
+        if (!insertRows.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_ITEM, insertRows);
+        }
+
+        List<Object[]> deleteRows = new ArrayList<>();
+        deletes.forEach((cartId, isbns) -> isbns.forEach(isbn -> deleteRows.add(new Object[]{cartId, isbn})));
+        if (!deleteRows.isEmpty()) {
+            jdbcTemplate.batchUpdate("DELETE FROM shopping_cart_items WHERE cart_id = ? AND isbn = ?", deleteRows);
+        }
+    }
+
+    // Overwrites subtotals, keyed by cart ID; a null value invalidates the subtotal
+    public void writeSubtotals(Map<Long, Long> subtotalCents) {
+        if (subtotalCents.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<Long, Long>> rows = new ArrayList<>(subtotalCents.entrySet());
+        jdbcTemplate.batchUpdate("UPDATE shopping_carts SET subtotal_cents = ? WHERE cart_id = ?",
+                rows, rows.size(), (statement, row) -> {
+                    statement.setObject(1, row.getValue(), Types.BIGINT);
+                    statement.setLong(2, row.getKey());
+                });
+    }
+
+    private Optional<CartContents> loadCartWhere(String condition, long id) {
+        return Optional.ofNullable(jdbcTemplate.query(
+                "SELECT c.cart_id, c.subtotal_cents, i.isbn, i.quantity, ROUND(b.price * 100) FROM shopping_carts c " +
+                "LEFT JOIN shopping_cart_items i ON i.cart_id = c.cart_id LEFT JOIN books b ON b.isbn = i.isbn " +
+                "WHERE " + condition,
+                resultSet -> {
+                    if (!resultSet.next()) {
+                        return null;
+                    }
+                    long cartId = resultSet.getLong(1);
+                    long subtotal = resultSet.getLong(2);
+                    Long subtotalCents = resultSet.wasNull() ? null : subtotal;
+                    Map<String, Integer> quantities = new LinkedHashMap<>();
+                    Map<String, Long> unitPriceCents = new HashMap<>();
+                    do {
+                        String isbn = resultSet.getString(3);
+                        if (isbn != null) {
+                            quantities.put(isbn.trim(), resultSet.getInt(4));
+                            long priceCents = resultSet.getLong(5);
+                            if (!resultSet.wasNull()) {
+                                unitPriceCents.put(isbn.trim(), priceCents);
+                            }
+                        }
+                    } while (resultSet.next());
+                    return new CartContents(cartId, quantities, subtotalCents, unitPriceCents);
+                },
+                id));
+    }
+
+    boolean isPostgres() {
+        if (postgres == null) {
+            postgres = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection ->
+                    connection.getMetaData().getDatabaseProductName().toLowerCase().contains("postgres"));
+        }
+        return postgres;
+    }
+}
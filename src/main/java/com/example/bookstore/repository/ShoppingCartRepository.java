@@ -2,13 +2,43 @@ package com.example.bookstore.repository;
 
 import com.example.bookstore.model.ShoppingCart;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
-
+import java.util.Collection;
 import java.util.Optional;
 
 public interface ShoppingCartRepository extends JpaRepository<ShoppingCart, Long> {
 
     Optional<ShoppingCart> findByUserUserId(Long userID);
 
-}
+    long countByUserUserId(Long userID);
+
+    // Read as a scalar so a cart already in the persistence context cannot mask a fresh recompute
+    @Query("SELECT c.subtotalCents FROM ShoppingCart c WHERE c.cartId = :cartId")
+    Long findSubtotalCents(@Param("cartId") Long cartId);
 
+    // Adjusts the running subtotal in place; a null (invalidated) subtotal stays null
+    @Modifying
+    @Transactional
+    @Query("UPDATE ShoppingCart c SET c.subtotalCents = c.subtotalCents + :deltaCents WHERE c.cartId = :cartId")
+    int addToSubtotal(@Param("cartId") Long cartId, @Param("deltaCents") long deltaCents);
+
+    // Recomputes an invalidated subtotal with one aggregate over the cart's items
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE shopping_carts SET subtotal_cents = (" +
+            "SELECT COALESCE(SUM(ROUND(b.price * 100) * i.quantity), 0) " +
+            "FROM shopping_cart_items i JOIN books b ON b.isbn = i.isbn WHERE i.cart_id = :cartId) " +
+            "WHERE cart_id = :cartId AND subtotal_cents IS NULL", nativeQuery = true)
+    int recomputeSubtotal(@Param("cartId") Long cartId);
+
+    // Invalidates the subtotal of every cart holding one of these books, after their prices changed
+    @Modifying
+    @Transactional
+    @Query("UPDATE ShoppingCart c SET c.subtotalCents = NULL WHERE c.cartId IN " +
+            "(SELECT i.id.cartId FROM ShoppingCartItem i WHERE i.id.ISBN IN :isbns)")
+    int clearSubtotalsContaining(@Param("isbns") Collection<String> isbns);
+}
@@ -0,0 +1,448 @@
+package com.example.bookstore.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index over book text with BM25 ranking.
+ *
+ * Each book is one document made of its title, author names and description; title and author terms are
+ * counted several times so they outweigh the description. Documents get dense int ids and postings are
+ * primitive arrays. Re-indexing a book tombstones its old document and appends a new one; once tombstones
+ * make up a quarter of the documents, the index is compacted: live documents are renumbered in their existing
+ * order and dead postings and terms dropped.
+ *
+ * Typo tolerance: a query term that is not in the dictionary is expanded to the dictionary terms that share
+ * enough character trigrams with it.
+ */
+public class InvertedIndex {
+
+    // BM25 parameters
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+
+    private static final int TITLE_WEIGHT = 3;
+    private static final int AUTHOR_WEIGHT = 2;
+    private static final int DESCRIPTION_WEIGHT = 1;
+
+    // Fuzzy expansion: minimum trigram similarity and how many close terms a misspelling may expand to
+    private static final float MIN_SIMILARITY = 0.4f;
+    private static final int MAX_EXPANSIONS = 3;
+
+    // Compact once more than 1/COMPACT_FRACTION of the documents are tombstones
+    private static final int COMPACT_FRACTION = 4;
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "by", "for", "from", "in", "is", "it",
+            "of", "on", "or", "the", "to", "with");
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Integer> docIdsByIsbn = new HashMap<>();
+    private final List<String> isbnsByDocId = new ArrayList<>();
+    private int[] docLengths = new int[1024];
+    private final BitSet deleted = new BitSet();
+    private long totalLength;
+    private int liveDocs;
+
+    private final Map<String, Postings> postingsByTerm = new HashMap<>();
+    private final Map<String, List<String>> termsByTrigram = new HashMap<>();
+
+    public void index(String isbn, String title, String description, List<String> authorNames) {
+        Map<String, Integer> termFrequencies = new HashMap<>();
+        addTerms(termFrequencies, title, TITLE_WEIGHT);
+        addTerms(termFrequencies, description, DESCRIPTION_WEIGHT);
+        if (authorNames != null) {
+            for (String name : authorNames) {
+                addTerms(termFrequencies, name, AUTHOR_WEIGHT);
+            }
+        }
+        int length = termFrequencies.values().stream().mapToInt(Integer::intValue).sum();
+
+        lock.writeLock().lock();
+        try {
+            removeLocked(isbn);
+
+            int docId = isbnsByDocId.size();
+            isbnsByDocId.add(isbn);
+            docIdsByIsbn.put(isbn, docId);
+            if (docId == docLengths.length) {
+                docLengths = Arrays.copyOf(docLengths, docLengths.length * 2);
+            }
+            docLengths[docId] = length;
+            totalLength += length;
+            liveDocs++;
+
+            termFrequencies.forEach((term, frequency) -> {
+                Postings postings = postingsByTerm.get(term);
+                if (postings == null) {
+                    postings = new Postings();
+                    postingsByTerm.put(term, postings);
+                    for (String trigram : trigrams(term)) {
+                        termsByTrigram.computeIfAbsent(trigram, t -> new ArrayList<>()).add(term);
+                    }
+                }
+                postings.add(docId, frequency);
+            });
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String isbn) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(isbn);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Top-k ISBNs for the query, best match first
+    public List<String> search(String query, int limit) {
+        List<String> queryTerms = tokenize(query);
+        if (queryTerms.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            if (liveDocs == 0) {
+                return List.of();
+            }
+            float averageLength = (float) totalLength / liveDocs;
+
+            List<Postings> matched = new ArrayList<>();
+            List<Float> weights = new ArrayList<>();
+            long matchedEntries = 0;
+            for (String term : queryTerms) {
+                Postings exact = postingsByTerm.get(term);
+                if (exact != null) {
+                    matched.add(exact);
+                    weights.add(1f);
+                    matchedEntries += exact.size;
+                    continue;
+                }
+                for (Map.Entry<String, Float> expansion : expand(term).entrySet()) {
+                    Postings postings = postingsByTerm.get(expansion.getKey());
+                    matched.add(postings);
+                    weights.add(expansion.getValue());
+                    matchedEntries += postings.size;
+                }
+            }
+            if (matched.isEmpty()) {
+                return List.of();
+            }
+
+            Accumulator scores = new Accumulator((int) Math.min(matchedEntries, isbnsByDocId.size()));
+            for (int i = 0; i < matched.size(); i++) {
+                score(matched.get(i), weights.get(i), averageLength, scores);
+            }
+
+            int[] top = scores.top(limit);
+            String[] results = new String[top.length];
+            for (int i = 0; i < top.length; i++) {
+                results[i] = isbnsByDocId.get(top[i]);
+            }
+            return Arrays.asList(results);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveDocs;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Document ids handed out since the last compaction, tombstones included
+    int documentCount() {
+        lock.readLock().lock();
+        try {
+            return isbnsByDocId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                String token = lower.substring(start, i);
+                if (!STOP_WORDS.contains(token)) {
+                    tokens.add(token);
+                }
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private void score(Postings postings, float weight, float averageLength, Accumulator scores) {
+        // Postings still hold tombstoned documents, so the frequency can briefly exceed the live count
+        int documentFrequency = Math.min(postings.size, liveDocs);
+        float idf = (float) Math.log(1 + (liveDocs - documentFrequency + 0.5) / (documentFrequency + 0.5));
+        for (int i = 0; i < postings.size; i++) {
+            int docId = postings.docIds[i];
+            if (deleted.get(docId)) {
+                continue;
+            }
+            int frequency = postings.frequencies[i];
+            float norm = K1 * (1 - B + B * docLengths[docId] / averageLength);
+            float termScore = weight * idf * frequency * (K1 + 1) / (frequency + norm);
+            scores.add(docId, termScore);
+        }
+    }
+
+    // Dictionary terms that look like a misspelling of the given term, with their similarity as weight
+    private Map<String, Float> expand(String term) {
+        Set<String> queryTrigrams = trigrams(term);
+        Map<String, Integer> shared = new HashMap<>();
+        for (String trigram : queryTrigrams) {
+            List<String> candidates = termsByTrigram.get(trigram);
+            if (candidates != null) {
+                for (String candidate : candidates) {
+                    shared.merge(candidate, 1, Integer::sum);
+                }
+            }
+        }
+
+        PriorityQueue<Map.Entry<String, Float>> best = new PriorityQueue<>(Map.Entry.comparingByValue());
+        for (Map.Entry<String, Integer> candidate : shared.entrySet()) {
+            // A padded term of n characters has n trigrams
+            int candidateTrigrams = candidate.getKey().length();
+            float similarity = (float) candidate.getValue()
+                    / (queryTrigrams.size() + candidateTrigrams - candidate.getValue());
+            if (similarity >= MIN_SIMILARITY) {
+                best.offer(Map.entry(candidate.getKey(), similarity));
+                if (best.size() > MAX_EXPANSIONS) {
+                    best.poll();
+                }
+            }
+        }
+
+        Map<String, Float> expansions = new HashMap<>();
+        best.forEach(entry -> expansions.put(entry.getKey(), entry.getValue()));
+        return expansions;
+    }
+
+    // Character trigrams of the term padded with boundary markers, e.g. "cat" -> "$ca", "cat", "at$"
+    private static Set<String> trigrams(String term) {
+        String padded = "$" + term + "$";
+        Set<String> trigrams = new HashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            trigrams.add(padded.substring(i, i + 3));
+        }
+        return trigrams;
+    }
+
+    private static void addTerms(Map<String, Integer> termFrequencies, String text, int weight) {
+        for (String token : tokenize(text)) {
+            termFrequencies.merge(token, weight, Integer::sum);
+        }
+    }
+
+    private void removeLocked(String isbn) {
+        Integer docId = docIdsByIsbn.remove(isbn);
+        if (docId != null) {
+            deleted.set(docId);
+            totalLength -= docLengths[docId];
+            liveDocs--;
+        }
+    }
+
+    // Rewrites ids, lengths and postings without the tombstoned documents. Live documents keep their relative
+    // order, so ties still go to the older one
+    private void compactIfNeeded() {
+        int dead = isbnsByDocId.size() - liveDocs;
+        if (dead == 0 || dead * COMPACT_FRACTION <= isbnsByDocId.size()) {
+            return;
+        }
+
+        int[] newIds = new int[isbnsByDocId.size()];
+        List<String> isbns = new ArrayList<>(liveDocs);
+        int[] lengths = new int[Math.max(1024, liveDocs)];
+        for (int docId = 0; docId < newIds.length; docId++) {
+            if (deleted.get(docId)) {
+                newIds[docId] = -1;
+            } else {
+                newIds[docId] = isbns.size();
+                lengths[isbns.size()] = docLengths[docId];
+                isbns.add(isbnsByDocId.get(docId));
+            }
+        }
+
+        postingsByTerm.values().removeIf(postings -> postings.retain(newIds) == 0);
+        termsByTrigram.clear();
+        for (String term : postingsByTerm.keySet()) {
+            for (String trigram : trigrams(term)) {
+                termsByTrigram.computeIfAbsent(trigram, t -> new ArrayList<>()).add(term);
+            }
+        }
+
+        isbnsByDocId.clear();
+        isbnsByDocId.addAll(isbns);
+        docIdsByIsbn.clear();
+        for (int docId = 0; docId < isbns.size(); docId++) {
+            docIdsByIsbn.put(isbns.get(docId), docId);
+        }
+        docLengths = lengths;
+        deleted.clear();
+    }
+
+    // Per-query scores in an open-addressing docId -> score table, sized from the postings the query reads
+    // rather than the whole collection, so a query matching a handful of books does not allocate per book
+    private static final class Accumulator {
+        // Keys hold docId + 1, so a zeroed slot is free
+        private static final int FREE = 0;
+
+        private final int[] keys;
+        private final float[] values;
+        private final int mask;
+
+        Accumulator(int expectedDocs) {
+            // At most half full: the table never needs to grow
+            int capacity = Integer.highestOneBit(Math.max(4, expectedDocs)) << 2;
+            keys = new int[capacity];
+            values = new float[capacity];
+            mask = capacity - 1;
+        }
+
+        void add(int docId, float score) {
+            int key = docId + 1;
+            int hash = key * 0x9E3779B9;
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            while (keys[slot] != FREE && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] += score;
+        }
+
+        // Doc ids of the best k documents, best first; ties go to the older document
+        int[] top(int limit) {
+            // Min-heap of slots, worst of the best k seen so far at the root
+            int[] heap = new int[limit];
+            int size = 0;
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (keys[slot] == FREE) {
+                    continue;
+                }
+                if (size < limit) {
+                    heap[size] = slot;
+                    siftUp(heap, size++);
+                } else if (better(slot, heap[0])) {
+                    heap[0] = slot;
+                    siftDown(heap, size);
+                }
+            }
+
+            int[] docIds = new int[size];
+            for (int i = size - 1; i >= 0; i--) {
+                docIds[i] = keys[heap[0]] - 1;
+                heap[0] = heap[i];
+                siftDown(heap, i);
+            }
+            return docIds;
+        }
+
+        private boolean better(int slot, int other) {
+            return values[slot] > values[other] || (values[slot] == values[other] && keys[slot] < keys[other]);
+        }
+
+        private void siftUp(int[] heap, int index) {
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (!better(heap[parent], heap[index])) {
+                    break;
+                }
+                swap(heap, parent, index);
+                index = parent;
+            }
+        }
+
+        private void siftDown(int[] heap, int size) {
+            int index = 0;
+            while (true) {
+                int worst = index;
+                int left = 2 * index + 1;
+                if (left < size && better(heap[worst], heap[left])) {
+                    worst = left;
+                }
+                if (left + 1 < size && better(heap[worst], heap[left + 1])) {
+                    worst = left + 1;
+                }
+                if (worst == index) {
+                    return;
+                }
+                swap(heap, index, worst);
+                index = worst;
+            }
+        }
+
+        private static void swap(int[] heap, int i, int j) {
+            int slot = heap[i];
+            heap[i] = heap[j];
+            heap[j] = slot;
+        }
+    }
+
+    private static final class Postings {
+        private int[] docIds = new int[4];
+        private int[] frequencies = new int[4];
+        private int size;
+
+        void add(int docId, int frequency) {
+            if (size == docIds.length) {
+                docIds = Arrays.copyOf(docIds, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            docIds[size] = docId;
+            frequencies[size] = frequency;
+            size++;
+        }
+
+        // Keeps the entries of documents whose new id is not -1, renumbered; returns how many are left
+        int retain(int[] newIds) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                int docId = newIds[docIds[i]];
+                if (docId >= 0) {
+                    docIds[kept] = docId;
+                    frequencies[kept++] = frequencies[i];
+                }
+            }
+            size = kept;
+            if (kept * 4 < docIds.length) {
+                docIds = Arrays.copyOf(docIds, Math.max(4, kept));
+                frequencies = Arrays.copyOf(frequencies, docIds.length);
+            }
+            return kept;
+        }
+    }
+}
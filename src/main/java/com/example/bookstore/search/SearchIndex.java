@@ -0,0 +1,121 @@
+package com.example.bookstore.search;
+
+import com.example.bookstore.model.Book;
+import com.example.bookstore.repository.AuthorRepository;
+import com.example.bookstore.repository.BookRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Full-text search over book titles, descriptions and author names.
+ *
+ * The index is built from the database once the application is ready and then kept current as books are
+ * added. Only ISBNs are returned; callers load the rows so prices are never stale. Books updated while a
+ * rebuild streams the catalog are replayed into the new index before it replaces the old one.
+ */
+@Component
+public class SearchIndex {
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private AuthorRepository authorRepository;
+
+    private volatile InvertedIndex index = new InvertedIndex();
+
+    private final Object rebuildLock = new Object();
+    // Updates made while a rebuild runs, in order; null when none is running. Guarded by rebuildLock
+    private List<IndexedBook> updatedDuringRebuild;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        synchronized (rebuildLock) {
+            updatedDuringRebuild = new ArrayList<>();
+        }
+        Map<String, List<String>> authorsByIsbn = new HashMap<>();
+        try (Stream<Object[]> rows = bookRepository.streamAuthorNames()) {
+            rows.forEach(row -> authorsByIsbn
+                    .computeIfAbsent(((String) row[0]).trim(), isbn -> new ArrayList<>(1))
+                    .add(fullName((String) row[1], (String) row[2])));
+        }
+
+        InvertedIndex rebuilt = new InvertedIndex();
+        try (Stream<Object[]> rows = bookRepository.streamSearchableText()) {
+            rows.forEach(row -> {
+                String isbn = ((String) row[0]).trim();
+                rebuilt.index(isbn, (String) row[1], (String) row[2], authorsByIsbn.get(isbn));
+            });
+        }
+        synchronized (rebuildLock) {
+            // The stream may have read these books before they were updated
+            updatedDuringRebuild.forEach(book -> book.indexInto(rebuilt));
+            updatedDuringRebuild = null;
+            index = rebuilt;
+        }
+    }
+
+    // (Re)indexes books after they were added or their text changed, with one query for their authors
+    public void updateAll(Collection<Book> books) {
+        if (books.isEmpty()) {
+            return;
+        }
+        List<String> isbns = books.stream().map(Book::getIsbn).toList();
+        Map<String, List<String>> authorsByIsbn = new HashMap<>();
+        for (Object[] row : authorRepository.findAuthorNamesByIsbns(isbns)) {
+            authorsByIsbn.computeIfAbsent(((String) row[0]).trim(), isbn -> new ArrayList<>(1))
+                    .add(fullName((String) row[1], (String) row[2]));
+        }
+
+        List<IndexedBook> updated = new ArrayList<>(books.size());
+        for (Book book : books) {
+            String isbn = book.getIsbn().trim();
+            updated.add(new IndexedBook(isbn, book.getTitle(), book.getDescription(), authorsByIsbn.get(isbn)));
+        }
+        synchronized (rebuildLock) {
+            InvertedIndex current = index;
+            updated.forEach(book -> book.indexInto(current));
+            if (updatedDuringRebuild != null) {
+                updatedDuringRebuild.addAll(updated);
+            }
+        }
+    }
+
+    public List<String> search(String query, int limit) {
+        return index.search(query, limit);
+    }
+
+    private static String fullName(String firstName, String lastName) {
+        return (firstName == null ? "" : firstName) + " " + (lastName == null ? "" : lastName);
+    }
+
+    // What updateAll indexed for one book, kept to replay into an index being rebuilt
+    private static final class IndexedBook {
+        private final String isbn;
+        private final String title;
+        private final String description;
+        private final List<String> authorNames;
+
+        private IndexedBook(String isbn, String title, String description, List<String> authorNames) {
+            this.isbn = isbn;
+            this.title = title;
+            this.description = description;
+            this.authorNames = authorNames;
+        }
+
+        void indexInto(InvertedIndex index) {
+            index.index(isbn, title, description, authorNames);
+        }
+    }
+}
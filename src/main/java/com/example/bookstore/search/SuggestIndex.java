@@ -0,0 +1,238 @@
+package com.example.bookstore.search;
+
+import com.example.bookstore.dto.SuggestionDTO;
+import com.example.bookstore.repository.AuthorRepository;
+import com.example.bookstore.repository.BookRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Prefix autocomplete over book titles and author names, ranked by copies sold.
+ *
+ * Entries live in an array sorted by their lower-cased text, so a prefix maps to one contiguous range found
+ * by binary search. Very short prefixes match huge ranges, so their top completions are precomputed. The
+ * whole structure is rebuilt on a background thread and swapped in with a single volatile write; lookups
+ * never block.
+ */
+@Component
+public class SuggestIndex {
+
+    public static final int MAX_SUGGESTIONS = 20;
+
+    // Prefixes up to this length are answered from precomputed lists
+    private static final int PRECOMPUTED_PREFIX_LENGTH = 2;
+
+    private static final Comparator<Entry> BY_WEIGHT = Comparator
+            .comparingLong((Entry entry) -> entry.weight)
+            .thenComparing(entry -> entry.key, Comparator.reverseOrder());
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private AuthorRepository authorRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "suggest-index-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean rebuildPending = new AtomicBoolean();
+
+    private TransactionTemplate readOnlyTransaction;
+    private volatile Snapshot snapshot = Snapshot.build(new ArrayList<>());
+
+    @PostConstruct
+    void init() {
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        requestRebuild();
+    }
+
+    @Scheduled(fixedDelayString = "${bookstore.suggest.rebuild-interval-ms:300000}",
+            initialDelayString = "${bookstore.suggest.rebuild-interval-ms:300000}")
+    public void scheduledRebuild() {
+        requestRebuild();
+    }
+
+    // Queues a rebuild unless one is already waiting to run
+    public void requestRebuild() {
+        if (rebuildPending.compareAndSet(false, true)) {
+            rebuildExecutor.execute(() -> {
+                rebuildPending.set(false);
+                try {
+                    snapshot = Snapshot.build(readOnlyTransaction.execute(status -> loadEntries()));
+                } catch (RuntimeException e) {
+                    System.out.println("Suggest index rebuild failed: " + e.getMessage());
+                }
+            });
+        }
+    }
+
+    public List<SuggestionDTO> suggest(String prefix, int limit) {
+        String key = normalize(prefix);
+        if (key.isEmpty()) {
+            return List.of();
+        }
+        return snapshot.lookup(key, Math.min(limit, MAX_SUGGESTIONS)).stream()
+                .map(entry -> new SuggestionDTO(entry.text, entry.type, entry.isbn, entry.authorId, entry.weight))
+                .toList();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    private List<Entry> loadEntries() {
+        List<Entry> entries = new ArrayList<>();
+        try (Stream<Object[]> rows = bookRepository.streamTitlesWithCopiesSold()) {
+            rows.forEach(row -> {
+                String title = (String) row[1];
+                if (title != null && !title.isBlank()) {
+                    entries.add(new Entry(normalize(title), title.trim(), "title",
+                            ((String) row[0]).trim(), null, ((Number) row[2]).longValue()));
+                }
+            });
+        }
+        try (Stream<Object[]> rows = authorRepository.streamNamesWithCopiesSold()) {
+            rows.forEach(row -> {
+                String name = ((row[1] == null ? "" : row[1]) + " " + (row[2] == null ? "" : row[2])).trim();
+                if (!name.isEmpty()) {
+                    entries.add(new Entry(normalize(name), name, "author",
+                            null, (Long) row[0], ((Number) row[3]).longValue()));
+                }
+            });
+        }
+        return entries;
+    }
+
+    private static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return text.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Entry {
+        private final String key;
+        private final String text;
+        private final String type;
+        private final String isbn;
+        private final Long authorId;
+        private final long weight;
+
+        private Entry(String key, String text, String type, String isbn, Long authorId, long weight) {
+            this.key = key;
+            this.text = text;
+            this.type = type;
+            this.isbn = isbn;
+            this.authorId = authorId;
+            this.weight = weight;
+        }
+    }
+
+    // Immutable once built
+    private static final class Snapshot {
+        private final String[] keys;
+        private final Entry[] entries;
+        private final Map<String, List<Entry>> topByShortPrefix;
+
+        private Snapshot(String[] keys, Entry[] entries, Map<String, List<Entry>> topByShortPrefix) {
+            this.keys = keys;
+            this.entries = entries;
+            this.topByShortPrefix = topByShortPrefix;
+        }
+
+        static Snapshot build(List<Entry> loaded) {
+            Entry[] entries = loaded.toArray(new Entry[0]);
+            Arrays.sort(entries, Comparator.comparing((Entry entry) -> entry.key));
+
+            String[] keys = new String[entries.length];
+            Map<String, PriorityQueue<Entry>> heaps = new HashMap<>();
+            for (int i = 0; i < entries.length; i++) {
+                Entry entry = entries[i];
+                keys[i] = entry.key;
+                for (int length = 1; length <= Math.min(PRECOMPUTED_PREFIX_LENGTH, entry.key.length()); length++) {
+                    PriorityQueue<Entry> heap = heaps.computeIfAbsent(entry.key.substring(0, length),
+                            prefix -> new PriorityQueue<>(BY_WEIGHT));
+                    offer(heap, entry, MAX_SUGGESTIONS);
+                }
+            }
+
+            Map<String, List<Entry>> topByShortPrefix = new HashMap<>();
+            heaps.forEach((prefix, heap) -> topByShortPrefix.put(prefix, drainBestFirst(heap)));
+            return new Snapshot(keys, entries, topByShortPrefix);
+        }
+
+        List<Entry> lookup(String prefix, int limit) {
+            if (prefix.length() <= PRECOMPUTED_PREFIX_LENGTH) {
+                List<Entry> top = topByShortPrefix.getOrDefault(prefix, List.of());
+                return top.subList(0, Math.min(limit, top.size()));
+            }
+
+            int from = lowerBound(prefix);
+            PriorityQueue<Entry> heap = new PriorityQueue<>(BY_WEIGHT);
+            for (int i = from; i < keys.length && keys[i].startsWith(prefix); i++) {
+                offer(heap, entries[i], limit);
+            }
+            return drainBestFirst(heap);
+        }
+
+        private int lowerBound(String prefix) {
+            int low = 0;
+            int high = keys.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (keys[mid].compareTo(prefix) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private static void offer(PriorityQueue<Entry> heap, Entry entry, int limit) {
+            heap.offer(entry);
+            if (heap.size() > limit) {
+                heap.poll();
+            }
+        }
+
+        private static List<Entry> drainBestFirst(PriorityQueue<Entry> heap) {
+            Entry[] best = new Entry[heap.size()];
+            for (int i = best.length - 1; i >= 0; i--) {
+                best[i] = heap.poll();
+            }
+            return List.of(best);
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.example.bookstore.service;
+
+import com.example.bookstore.repository.OrderJdbcRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * "Customers also bought": item-to-item co-occurrence over completed orders.
+ *
+ * ISBNs are dictionary-encoded to dense ints and each book owns a sparse row of co-occurrence counts, an
+ * open-addressing int -> int map. A scheduled job folds in only the orders placed since its last run (order
+ * ids are increasing, so a watermark is enough), then recomputes the neighbor list of just the books those
+ * orders touched. Neighbor lists are precomputed, best first, and published per ISBN, so serving is one map
+ * lookup returning a ready array. Checkouts commit out of order id order, so a run only reads up to the id
+ * SalesCounter knows every order below has settled; one whose transaction commits late is picked up by the
+ * run after it, never skipped.
+ */
+@Component
+public class AlsoBoughtIndex {
+
+    public static final int MAX_NEIGHBORS = 20;
+
+    // Order ids folded in per query
+    private static final long ORDER_CHUNK = 10_000;
+    private static final String[] NONE = new String[0];
+
+    @Autowired
+    private OrderJdbcRepository orderJdbcRepository;
+
+    @Autowired
+    private SalesCounter salesCounter;
+
+    // Written by refresh only
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> isbns = new ArrayList<>();
+    private final List<CountMap> rows = new ArrayList<>();
+    private long lastOrderId;
+
+    private final Map<String, String[]> neighbors = new ConcurrentHashMap<>();
+
+    @Scheduled(fixedDelayString = "${bookstore.also-bought.refresh-ms:300000}")
+    public synchronized void refresh() {
+        long upTo = salesCounter.settledOrderId();
+        if (upTo <= lastOrderId) {
+            return;
+        }
+
+        BitSet touched = new BitSet();
+        for (long from = lastOrderId; from < upTo; from += ORDER_CHUNK) {
+            Basket basket = new Basket();
+            orderJdbcRepository.forEachLineBetween(from, Math.min(from + ORDER_CHUNK, upTo), (orderId, isbn) -> {
+                if (orderId != basket.orderId) {
+                    count(basket, touched);
+                    basket.orderId = orderId;
+                    basket.size = 0;
+                }
+                basket.add(idOf(isbn));
+            });
+            count(basket, touched);
+        }
+        lastOrderId = upTo;
+
+        for (int id = touched.nextSetBit(0); id >= 0; id = touched.nextSetBit(id + 1)) {
+            neighbors.put(isbns.get(id), topNeighbors(rows.get(id)));
+        }
+        System.out.println("Also-bought index now covers orders up to " + upTo + ", " + touched.cardinality() + " books updated");
+    }
+
+    // Up to MAX_NEIGHBORS ISBNs most often ordered together with the book, best first
+    public String[] neighborsOf(String isbn) {
+        return neighbors.getOrDefault(isbn.trim(), NONE);
+    }
+
+    private int idOf(String isbn) {
+        Integer id = ids.get(isbn);
+        if (id == null) {
+            id = isbns.size();
+            ids.put(isbn, id);
+            isbns.add(isbn);
+            rows.add(new CountMap());
+        }
+        return id;
+    }
+
+    // Every pair of distinct books in the order co-occurs once
+    private void count(Basket basket, BitSet touched) {
+        for (int i = 0; i < basket.size; i++) {
+            int a = basket.ids[i];
+            touched.set(a);
+            for (int j = 0; j < basket.size; j++) {
+                if (i != j) {
+                    rows.get(a).increment(basket.ids[j]);
+                }
+            }
+        }
+    }
+
+    // Counts ranked high to low, ties to the book first seen
+    private String[] topNeighbors(CountMap row) {
+        long[] ranked = new long[row.size];
+        int n = 0;
+        for (int slot = 0; slot < row.keys.length; slot++) {
+            if (row.keys[slot] != CountMap.FREE) {
+                ranked[n++] = ((long) row.counts[slot] << 32) | (Integer.MAX_VALUE - row.keys[slot]);
+            }
+        }
+        Arrays.sort(ranked);
+
+        String[] top = new String[Math.min(MAX_NEIGHBORS, n)];
+        for (int i = 0; i < top.length; i++) {
+            top[i] = isbns.get(Integer.MAX_VALUE - (int) ranked[n - 1 - i]);
+        }
+        return top;
+    }
+
+    // Distinct book ids of the order being read
+    private static final class Basket {
+        private long orderId = -1;
+        private int[] ids = new int[8];
+        private int size;
+
+        private void add(int id) {
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id) {
+                    return;
+                }
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+    }
+
+    // Open-addressing int -> int map with linear probing, one per row of the matrix
+    static final class CountMap {
+        private static final int FREE = -1;
+
+        private int[] keys = newKeys(4);
+        private int[] counts = new int[4];
+        private int size;
+
+        void increment(int key) {
+            if ((size + 1) * 4 > keys.length * 3) {
+                grow();
+            }
+            int mask = keys.length - 1;
+            int slot = mix(key) & mask;
+            while (keys[slot] != FREE && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (keys[slot] == FREE) {
+                keys[slot] = key;
+                size++;
+            }
+            counts[slot]++;
+        }
+
+        // 0 for a key never incremented
+        int get(int key) {
+            int mask = keys.length - 1;
+            int slot = mix(key) & mask;
+            while (keys[slot] != FREE) {
+                if (keys[slot] == key) {
+                    return counts[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            return 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int capacity() {
+            return keys.length;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            int[] oldCounts = counts;
+            keys = newKeys(oldKeys.length * 2);
+            counts = new int[keys.length];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != FREE) {
+                    int slot = mix(oldKeys[i]) & mask;
+                    while (keys[slot] != FREE) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    counts[slot] = oldCounts[i];
+                }
+            }
+        }
+
+        private static int[] newKeys(int capacity) {
+            int[] keys = new int[capacity];
+            Arrays.fill(keys, FREE);
+            return keys;
+        }
+
+        private static int mix(int key) {
+            int hash = key * 0x9E3779B9;
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.example.bookstore.service;
 import com.example.bookstore.model.Author;
 import com.example.bookstore.repository.AuthorRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 
 import java.util.Optional;
@@ -18,7 +19,8 @@ public class AuthorService {
         return authorRepository.save(author);
     }
 
-    // Retrieve author by ID
+    // Retrieve author by ID; unknown IDs are not cached so a later insert is visible straight away
+    @Cacheable(cacheNames = "authors", unless = "#result == null")
     public Optional<Author> getAuthorById(Long authorId) {
         return authorRepository.findById(authorId);  // Returns Optional<Author>
     }
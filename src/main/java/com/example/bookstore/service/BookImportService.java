@@ -0,0 +1,322 @@
+package com.example.bookstore.service;
+
+import com.example.bookstore.model.Book;
+import com.example.bookstore.model.Publisher;
+import com.example.bookstore.repository.BookBatchRepository;
+import com.example.bookstore.repository.BookBatchRepository.BookRow;
+import com.example.bookstore.repository.BookRepository;
+import com.example.bookstore.repository.PublisherRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk catalog import from NDJSON or CSV.
+ *
+ * The request body is read line by line and valid rows are upserted in JDBC batches, each batch in its own
+ * transaction. Progress is written back as NDJSON events while the import runs: one "batch" event per
+ * committed batch, one "reject" event per invalid row and a final "done" summary. Fields a row leaves out keep
+ * their stored value, and copies sold only seeds new books: an existing book's sales are never reset by a feed.
+ */
+@Service
+public class BookImportService {
+
+    public enum Format { NDJSON, CSV }
+
+    @Autowired
+    private BookBatchRepository bookBatchRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private PublisherRepository publisherRepository;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${bookstore.import.batch-size:1000}")
+    private int batchSize;
+
+    private TransactionTemplate batchTransaction;
+
+    @PostConstruct
+    void init() {
+        batchTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    public void importBooks(InputStream body, Format format, OutputStream progress) throws IOException {
+        Set<Long> publisherIds = publisherRepository.findAll().stream()
+                .map(Publisher::getPublisherId)
+                .collect(Collectors.toSet());
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        JsonGenerator events = objectMapper.getFactory().createGenerator(progress);
+        events.setRootValueSeparator(null);
+
+        ImportState state = new ImportState();
+        List<BookRow> batch = new ArrayList<>(batchSize);
+        List<String> csvHeader = null;
+        long lineNumber = 0;
+        String line;
+
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            if (format == Format.CSV && csvHeader == null) {
+                csvHeader = normalizeHeader(splitCsvLine(line));
+                continue;
+            }
+
+            Map<String, String> fields;
+            try {
+                fields = format == Format.CSV ? toFields(csvHeader, splitCsvLine(line)) : toFields(objectMapper.readTree(line));
+            } catch (JsonProcessingException e) {
+                reject(events, state, lineNumber, null, "Malformed JSON");
+                continue;
+            }
+
+            String isbn = normalizeIsbn(fields.get("isbn"));
+            String error = validate(isbn, fields, publisherIds);
+            if (error != null) {
+                reject(events, state, lineNumber, fields.get("isbn"), error);
+                continue;
+            }
+
+            batch.add(toRow(isbn, fields));
+            if (batch.size() == batchSize) {
+                flushBatch(events, state, batch);
+            }
+        }
+        flushBatch(events, state, batch);
+
+        Map<String, Object> done = new LinkedHashMap<>();
+        done.put("event", "done");
+        done.put("batches", state.batches);
+        done.put("imported", state.imported);
+        done.put("rejected", state.rejected);
+        writeEvent(events, done);
+        events.close();
+    }
+
+    // Validates an ISBN-10 or ISBN-13 check digit after stripping hyphens and spaces
+    static boolean isValidIsbn(String isbn) {
+        if (isbn == null) {
+            return false;
+        }
+        if (isbn.length() == 13) {
+            int sum = 0;
+            for (int i = 0; i < 13; i++) {
+                char c = isbn.charAt(i);
+                if (c < '0' || c > '9') {
+                    return false;
+                }
+                sum += (c - '0') * (i % 2 == 0 ? 1 : 3);
+            }
+            return sum % 10 == 0;
+        }
+        if (isbn.length() == 10) {
+            int sum = 0;
+            for (int i = 0; i < 10; i++) {
+                char c = isbn.charAt(i);
+                int digit;
+                if (c >= '0' && c <= '9') {
+                    digit = c - '0';
+                } else if (i == 9 && (c == 'X' || c == 'x')) {
+                    digit = 10;
+                } else {
+                    return false;
+                }
+                sum += digit * (10 - i);
+            }
+            return sum % 11 == 0;
+        }
+        return false;
+    }
+
+    private void flushBatch(JsonGenerator events, ImportState state, List<BookRow> batch) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        state.batches++;
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("event", "batch");
+        event.put("batch", state.batches);
+        event.put("rows", batch.size());
+
+        try {
+            // Rows may leave fields out, the indexes get the books as stored
+            List<String> isbns = batch.stream().map(BookRow::getIsbn).toList();
+            Map<String, Long> priceCentsBefore = new HashMap<>();
+            List<Book> stored = batchTransaction.execute(status -> {
+                priceCentsBefore.putAll(bookBatchRepository.findPriceCents(isbns));
+                bookBatchRepository.upsertAll(batch);
+                return bookRepository.findWithPublisherByIsbns(isbns);
+            });
+            bookService.indexBooks(stored, priceCentsBefore);
+            state.imported += batch.size();
+            event.put("imported", state.imported);
+        } catch (DataAccessException e) {
+            // The whole batch rolled back, report it and keep going with the rest of the file
+            state.rejected += batch.size();
+            event.put("error", e.getMostSpecificCause().getMessage());
+        }
+        writeEvent(events, event);
+        events.flush();
+        batch.clear();
+    }
+
+    private void reject(JsonGenerator events, ImportState state, long lineNumber, String isbn, String reason) throws IOException {
+        state.rejected++;
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("event", "reject");
+        event.put("line", lineNumber);
+        if (isbn != null) {
+            event.put("isbn", isbn);
+        }
+        event.put("reason", reason);
+        writeEvent(events, event);
+    }
+
+    private void writeEvent(JsonGenerator events, Map<String, Object> event) throws IOException {
+        objectMapper.writeValue(events, event);
+        events.writeRaw('\n');
+    }
+
+    private static String validate(String isbn, Map<String, String> fields, Set<Long> publisherIds) {
+        if (!isValidIsbn(isbn)) {
+            return "Invalid ISBN";
+        }
+        String title = fields.get("title");
+        if (title == null || title.isBlank()) {
+            return "Title is required";
+        }
+        try {
+            if (fields.get("price") != null && Double.parseDouble(fields.get("price")) < 0) {
+                return "Price must not be negative";
+            }
+            if (fields.get("yearpublished") != null) {
+                Integer.parseInt(fields.get("yearpublished"));
+            }
+            if (fields.get("copiessold") != null && Integer.parseInt(fields.get("copiessold")) < 0) {
+                return "Copies sold must not be negative";
+            }
+            if (fields.get("publisherid") != null && !publisherIds.contains(Long.parseLong(fields.get("publisherid")))) {
+                return "Unknown publisher " + fields.get("publisherid");
+            }
+        } catch (NumberFormatException e) {
+            return "Invalid number: " + e.getMessage();
+        }
+        return null;
+    }
+
+    private static BookRow toRow(String isbn, Map<String, String> fields) {
+        return new BookRow(isbn,
+                fields.get("title").trim(),
+                fields.get("description"),
+                fields.get("price") == null ? null : Double.valueOf(fields.get("price")),
+                fields.get("genre"),
+                fields.get("yearpublished") == null ? null : Integer.valueOf(fields.get("yearpublished")),
+                fields.get("copiessold") == null ? null : Integer.valueOf(fields.get("copiessold")),
+                fields.get("publisherid") == null ? null : Long.valueOf(fields.get("publisherid")));
+    }
+
+    private static String normalizeIsbn(String isbn) {
+        return isbn == null ? null : isbn.replace("-", "").replace(" ", "").trim();
+    }
+
+    // Field names are matched case-insensitively and without underscores, so copies_sold == copiesSold
+    private static String normalizeName(String name) {
+        return name.replace("_", "").trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static List<String> normalizeHeader(List<String> header) {
+        return header.stream().map(BookImportService::normalizeName).toList();
+    }
+
+    private static Map<String, String> toFields(JsonNode node) {
+        Map<String, String> fields = new HashMap<>();
+        node.fields().forEachRemaining(field -> {
+            if (!field.getValue().isNull()) {
+                fields.put(normalizeName(field.getKey()), field.getValue().asText());
+            }
+        });
+        return fields;
+    }
+
+    private static Map<String, String> toFields(List<String> header, List<String> values) {
+        Map<String, String> fields = new HashMap<>();
+        for (int i = 0; i < Math.min(header.size(), values.size()); i++) {
+            if (!values.get(i).isEmpty()) {
+                fields.put(header.get(i), values.get(i));
+            }
+        }
+        return fields;
+    }
+
+    // RFC 4180 style splitting for a single line: quoted fields may contain commas and doubled quotes
+    static List<String> splitCsvLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        values.add(current.toString());
+        return values;
+    }
+
+    private static final class ImportState {
+        private long batches;
+        private long imported;
+        private long rejected;
+    }
+}
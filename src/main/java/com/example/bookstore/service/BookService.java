@@ -1,19 +1,46 @@
 package com.example.bookstore.service;
 
+import com.example.bookstore.cart.CartStore;
 import com.example.bookstore.controller.BookController;
+import com.example.bookstore.controller.LinkTemplates;
+import com.example.bookstore.dto.BookBatchDTO;
+import com.example.bookstore.dto.BookBrowseDTO;
 import com.example.bookstore.dto.BookDTO;
+import com.example.bookstore.dto.BookPageDTO;
+import com.example.bookstore.dto.SuggestionDTO;
 import com.example.bookstore.model.Book;
-import com.example.bookstore.model.Publisher;
+import com.example.bookstore.model.DiscountJob;
+import com.example.bookstore.repository.BookBatchRepository;
 import com.example.bookstore.repository.BookRepository;
 import com.example.bookstore.repository.PublisherRepository;
+import com.example.bookstore.repository.ShoppingCartRepository;
+import com.example.bookstore.search.SearchIndex;
+import com.example.bookstore.search.SuggestIndex;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.server.ResponseStatusException;
 
-import javax.transaction.Transactional;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
 
 import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
 import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
@@ -21,93 +48,325 @@ import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
 @Service
 public class BookService {
 
+    // Rows are flushed to the client in groups of this size
+    private static final int STREAM_FLUSH_INTERVAL = 500;
+
+    // Upper bound on bind parameters per IN (...) lookup
+    private static final int IN_CLAUSE_CHUNK_SIZE = 1000;
+
+    private static final int MAX_SEARCH_RESULTS = 100;
+
+    private static final int MAX_BROWSE_PAGE_SIZE = 100;
+
+    public static final String BOOK_CACHE = "books";
+
     @Autowired
     private BookRepository bookRepository;
 
     @Autowired
     private PublisherRepository publisherRepository;
 
+    @Autowired
+    private ShoppingCartRepository shoppingCartRepository;
+
+    @Autowired
+    private BookBatchRepository bookBatchRepository;
+
+    @Autowired
+    private CartStore cartStore;
+
+    @Autowired
+    private LinkTemplates linkTemplates;
+
+    @Autowired
+    private TopSellersLeaderboard topSellersLeaderboard;
+
+    @Autowired
+    private SalesWindows salesWindows;
+
+    @Autowired
+    private TrendingBooks trendingBooks;
+
+    @Autowired
+    private AlsoBoughtIndex alsoBoughtIndex;
+
+    @Autowired
+    private FacetIndex facetIndex;
+
+    @Autowired
+    private DiscountJobService discountJobService;
+
+    @Autowired
+    private GenreIndex genreIndex;
+
+    @Autowired
+    private RatingSummaryIndex ratingSummaryIndex;
+
+    @Autowired
+    private SearchIndex searchIndex;
+
+    @Autowired
+    private SuggestIndex suggestIndex;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Value("${bookstore.catalog.default-page-size:50}")
+    private int defaultPageSize;
+
+    @Value("${bookstore.catalog.max-page-size:500}")
+    private int maxPageSize;
+
     public List<BookDTO> getAllBooks() {
-        List<Book> books = bookRepository.findAll();
+        List<BookDTO> books = bookRepository.findAllBookDTOs();
+        LinkTemplates.Bound links = linkTemplates.forCurrentRequest();
+        books.forEach(book -> book.add(links.bookDetails(book.getISBN())));
+        return books;
+    }
 
-        return books.stream()
-                .map(book -> {
-                    BookDTO bookDTO = new BookDTO(book.getIsbn(), book.getTitle());
-                    bookDTO.add(
-                            linkTo(methodOn(BookController.class).getBookByIsbn(book.getIsbn())).withRel("details")
-                    );
-                    BookDTO bookDTO = new BookDTO(book.getISBN(), book.getTitle(), book.getPrice());
-                    bookDTO.setPrice(book.getPrice());
-                    bookDTO.setCopiesSold(book.getCopiesSold());
-                    Link detailsLink =
-                            linkTo(methodOn(BookController.class)
-                                    .getBookByISBN
-                                            (book.getISBN()))
-                                    .withRel("details");
-                    bookDTO.add(detailsLink);
+    // One keyset page of the catalog: books with an ISBN strictly after the cursor, in ISBN order
+    public BookPageDTO getBooksPage(String after, Integer limit) {
+        int pageSize = limit == null ? defaultPageSize : limit;
+        if (pageSize <= 0 || pageSize > maxPageSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Limit must be between 1 and " + maxPageSize);
+        }
 
-                    return bookDTO;
-                })
-                .toList();
+        String cursor = after == null ? "" : after.trim();
+        // Fetch one extra row so we know whether another page exists without a COUNT query
+        Pageable pageable = PageRequest.of(0, pageSize + 1);
+        List<BookDTO> books = bookRepository.findBookDTOPageAfterIsbn(cursor, pageable);
+
+        boolean hasMore = books.size() > pageSize;
+        LinkTemplates.Bound links = linkTemplates.forCurrentRequest();
+        List<BookDTO> page = books.subList(0, Math.min(pageSize, books.size()));
+        page.forEach(book -> book.add(links.bookDetails(book.getISBN())));
+
+        String nextCursor = hasMore ? page.get(page.size() - 1).getISBN() : null;
+        BookPageDTO pageDTO = new BookPageDTO(page, nextCursor);
+        if (nextCursor != null) {
+            pageDTO.add(linkTo(methodOn(BookController.class).getBooksPage(nextCursor, pageSize)).withRel("next"));
+        }
+        return pageDTO;
+    }
+
+    // Writes the whole catalog as a JSON array, one row at a time, straight from a database cursor
+    @Transactional(readOnly = true)
+    public void writeAllBooks(OutputStream out) throws IOException {
+        try (Stream<BookDTO> books = bookRepository.streamAllBookDTOs();
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.writeStartArray();
+
+            LinkTemplates.Bound links = linkTemplates.forCurrentRequest();
+            int written = 0;
+            Iterator<BookDTO> iterator = books.iterator();
+            while (iterator.hasNext()) {
+                BookDTO book = iterator.next();
+                book.add(links.bookDetails(book.getISBN()));
+                objectMapper.writeValue(generator, book);
+
+                if (++written % STREAM_FLUSH_INTERVAL == 0) {
+                    generator.flush();
+                }
+            }
+
+            generator.writeEndArray();
+        }
     }
 
     public List<BookDTO> getBooksByGenre(String genre) {
         genre = genre.trim();
-        List<Book> books = bookRepository.findByGenreIgnoreCase(genre);
+        List<BookDTO> books = genreIndex.isReady()
+                ? findBookDTOsByIsbns(genreIndex.isbnsFor(genre))
+                : bookRepository.findBookDTOsByGenre(genre);
 
         if (books.isEmpty()) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No books found with genre: " + genre);
         }
 
-        return books.stream()
-                .map(book -> {
-                    BookDTO bookDTO = new BookDTO(book.getIsbn(), book.getTitle(), book.getGenre());
-                    bookDTO.add(
-                            linkTo(methodOn(BookController.class).getBookByIsbn(book.getIsbn())).withRel("details")
-                    );
-                    BookDTO bookDTO = new BookDTO(book.getISBN(), book.getTitle(), book.getGenre());
-                    bookDTO.setPrice(book.getPrice());
-                    bookDTO.setCopiesSold(book.getCopiesSold());
-                    Link detailsLink =
-                            linkTo(methodOn(BookController.class)
-                                    .getBookByISBN
-                                            (book.getISBN()))
-                                    .withRel("details");
-                    bookDTO.add(detailsLink);
-
-                    return bookDTO;
-                })
-                .toList();
+        LinkTemplates.Bound links = linkTemplates.forCurrentRequest();
+        books.forEach(book -> book.add(links.bookDetails(book.getISBN())));
+        return books;
     }
 
-    public List<BookDTO> getTopSellers(){
-        List<Book> books = bookRepository.findTopTenSellers().stream().limit(10).toList();
+    public List<BookDTO> getTopSellers(int limit) {
+        if (limit <= 0 || limit > topSellersLeaderboard.getCapacity()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Limit must be between 1 and " + topSellersLeaderboard.getCapacity());
+        }
+
+        List<TopSellersLeaderboard.Entry> books = topSellersLeaderboard.top(limit);
+        LinkTemplates.Bound links = linkTemplates.forCurrentRequest();
 
         return books.stream()
                 .map(book -> {
                     BookDTO bookDTO = new BookDTO(book.getIsbn(), book.getTitle(), book.getCopiesSold());
-                    bookDTO.add(
-                            linkTo(methodOn(BookController.class).getBookByIsbn(book.getIsbn())).withRel("details")
-                    );
-                .map (book -> {
-                    BookDTO bookDTO = new BookDTO(book.getISBN(), book.getTitle(), book.getCopiesSold());
                     bookDTO.setPrice(book.getPrice());
-                    Link detailsLink = linkTo(methodOn(BookController.class).getBookByISBN(book.getISBN()))
-                            .withRel("details");
-                    bookDTO.add(detailsLink);
+                    bookDTO.add(links.bookDetails(book.getIsbn()));
                     return bookDTO;
                 })
                 .toList();
     }
 
+    // Bestsellers of the last hour, day or week, overall or within one genre or publisher; copiesSold is the
+    // number sold in the window
+    public List<BookDTO> getTopSellers(int limit, String window, String genre, Long publisherId) {
+        if (window == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Genre and publisher rankings need a window: 1h, 1d or 7d");
+        }
+        SalesWindows.Window range = SalesWindows.Window.fromParam(window);
+        if (range == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Window must be one of 1h, 1d or 7d");
+        }
+        if (genre != null && publisherId != null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Rank by genre or by publisher, not both");
+        }
+        if (limit <= 0 || limit > salesWindows.getTopK()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Limit must be between 1 and " + salesWindows.getTopK());
+        }
+
+        Map<String, Long> sold = salesWindows.top(range, genre, publisherId, limit);
+        List<BookDTO> books = findBookDTOsByIsbns(new ArrayList<>(sold.keySet()));
+        LinkTemplates.Bound links = linkTemplates.forCurrentRequest();
+        books.forEach(book -> {
+            book.setCopiesSold(sold.get(book.getISBN()).intValue());
+            book.add(links.bookDetails(book.getISBN()));
+        });
+        return books;
+    }
+
+    // Books most added to carts lately, hottest first
+    public List<BookDTO> getTrendingBooks(int limit) {
+        if (limit <= 0 || limit > trendingBooks.getCapacity()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Limit must be between 1 and " + trendingBooks.getCapacity());
+        }
+
+        List<BookDTO> books = findBookDTOsByIsbns(trendingBooks.top(limit));
+        LinkTemplates.Bound links = linkTemplates.forCurrentRequest();
+        books.forEach(book -> book.add(links.bookDetails(book.getISBN())));
+        return books;
+    }
+
+    // Books most often ordered together with this one, most frequent first
+    public List<BookDTO> getAlsoBought(String isbn, int limit) {
+        if (limit <= 0 || limit > AlsoBoughtIndex.MAX_NEIGHBORS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Limit must be between 1 and " + AlsoBoughtIndex.MAX_NEIGHBORS);
+        }
+
+        String[] neighbors = alsoBoughtIndex.neighborsOf(isbn);
+        List<BookDTO> books = findBookDTOsByIsbns(Arrays.asList(neighbors).subList(0, Math.min(limit, neighbors.length)));
+        LinkTemplates.Bound links = linkTemplates.forCurrentRequest();
+        books.forEach(book -> book.add(links.bookDetails(book.getISBN())));
+        return books;
+    }
+
+    // Any combination of genre, price band, year, publisher and minimum rating, with counts for every facet value
+    public BookBrowseDTO browseBooks(String genre, String price, Integer year, Long publisherId, Integer minRating,
+                                     int page, int size) {
+        Integer priceBand = null;
+        if (price != null) {
+            priceBand = FacetIndex.PRICE_BANDS.indexOf(price.trim());
+            if (priceBand < 0) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Price must be one of " + String.join(", ", FacetIndex.PRICE_BANDS));
+            }
+        }
+        if (minRating != null && (minRating < 1 || minRating > RatingSummaryIndex.MAX_RATING)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Minimum rating must be between 1 and " + RatingSummaryIndex.MAX_RATING);
+        }
+        if (size <= 0 || size > MAX_BROWSE_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Size must be between 1 and " + MAX_BROWSE_PAGE_SIZE);
+        }
+        if (page < 0 || (long) page * size > Integer.MAX_VALUE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Page out of range");
+        }
+
+        FacetIndex.Result result = facetIndex.browse(genre == null || genre.isBlank() ? null : genre, priceBand, year,
+                publisherId, minRating, page * size, size);
+        List<BookDTO> books = findBookDTOsByIsbns(result.getIsbns());
+        LinkTemplates.Bound links = linkTemplates.forCurrentRequest();
+        books.forEach(book -> book.add(links.bookDetails(book.getISBN())));
+        return new BookBrowseDTO(books, result.getTotal(), result.getFacets());
+    }
+
+    // Ranked full-text search over title, description and author names
+    public List<BookDTO> searchBooks(String query, int limit) {
+        if (query == null || query.isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Search query must not be empty");
+        }
+        if (limit <= 0 || limit > MAX_SEARCH_RESULTS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Limit must be between 1 and " + MAX_SEARCH_RESULTS);
+        }
+
+        List<BookDTO> books = findBookDTOsByIsbns(searchIndex.search(query, limit));
+        LinkTemplates.Bound links = linkTemplates.forCurrentRequest();
+        books.forEach(book -> book.add(links.bookDetails(book.getISBN())));
+        return books;
+    }
+
+    // Title and author completions for a search-box prefix, most sold first
+    public List<SuggestionDTO> suggest(String prefix, int limit) {
+        if (limit <= 0 || limit > SuggestIndex.MAX_SUGGESTIONS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Limit must be between 1 and " + SuggestIndex.MAX_SUGGESTIONS);
+        }
+        return suggestIndex.suggest(prefix, limit);
+    }
+
+    @Cacheable(cacheNames = BOOK_CACHE, key = "#isbn.trim()")
     public Book getBookByISBN(String isbn) {
         isbn = isbn.trim();
         System.out.println("Searching for ISBN: " + isbn);  // Log ISBN before querying
         String finalIsbn = isbn;
         return bookRepository.findById(isbn)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Book not found with ISBN: " + finalIsbn));
-    @Transactional
-    public void discountBooksByPublisher(@RequestParam(required = true) Double percentage, @RequestParam(required = true) Long publisherId) {
+    }
+
+    // Resolves many ISBNs at once: cached books first, the rest with one IN (...) query per chunk
+    public BookBatchDTO getBooksByIsbns(List<String> isbns) {
+        List<String> requested = isbns.stream()
+                .map(String::trim)
+                .filter(isbn -> !isbn.isEmpty())
+                .distinct()
+                .toList();
+
+        Cache bookCache = cacheManager.getCache(BOOK_CACHE);
+        Map<String, Book> booksByIsbn = new HashMap<>();
+        List<String> uncached = new ArrayList<>();
+        for (String isbn : requested) {
+            Book cached = bookCache.get(isbn, Book.class);
+            if (cached != null) {
+                booksByIsbn.put(isbn, cached);
+            } else {
+                uncached.add(isbn);
+            }
+        }
+
+        for (int from = 0; from < uncached.size(); from += IN_CLAUSE_CHUNK_SIZE) {
+            List<String> chunk = uncached.subList(from, Math.min(from + IN_CLAUSE_CHUNK_SIZE, uncached.size()));
+            for (Book book : bookRepository.findWithPublisherByIsbns(chunk)) {
+                // Keyed like the request and like getBookByISBN's cache entries
+                String isbn = book.getIsbn().trim();
+                booksByIsbn.put(isbn, book);
+                bookCache.put(isbn, book);
+            }
+        }
+
+        List<Book> books = new ArrayList<>(booksByIsbn.size());
+        List<String> missing = new ArrayList<>();
+        for (String isbn : requested) {
+            Book book = booksByIsbn.get(isbn);
+            if (book != null) {
+                books.add(book);
+            } else {
+                missing.add(isbn);
+            }
+        }
+        return new BookBatchDTO(books, missing);
+    }
+
+    // Validates the request and queues it; the discount itself runs in chunks on a background job
+    public DiscountJob discountBooksByPublisher(@RequestParam(required = true) Double percentage, @RequestParam(required = true) Long publisherId) {
 
         if (percentage <= 0 || percentage >= 100) { // Throw error if percentage is not between 0 and 100
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Discount percent must be greater than 0 and less than 100");
@@ -117,12 +376,9 @@ public class BookService {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Publisher with ID " + publisherId + " not found");
         }
 
-        System.out.println("Updating books with Publisher ID: " + publisherId + " with Discount Percentage: " + percentage);
-
-        int rowsModified = bookRepository.discountBooksByPublisher(percentage, publisherId);
-
-        System.out.println("Number of Records Updated: " + rowsModified);
+        System.out.println("Queueing discount for Publisher ID: " + publisherId + " with Discount Percentage: " + percentage);
 
+        return discountJobService.submit(percentage, publisherId);
     }
 
     public List<Book> getBooksByPublisherId(@RequestParam Long publisherId) {
@@ -130,18 +386,52 @@ public class BookService {
         return publisherRepository.getBooksByPublisherId(publisherId);
     }
 
-    public ResponseEntity<Book> getBookByISBN(@PathVariable String isbn) {
-        Book book = bookRepository.findById(isbn)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Book not found with ISBN: " + isbn));
-        return ResponseEntity.ok(book);
-    }
-
-
-
     public void addBook(Book book) {
         if (book.getIsbn() == null || book.getIsbn().isEmpty()) {
             throw new IllegalArgumentException("ISBN must be provided.");
         }
-        bookRepository.save(book);
+        Map<String, Long> priceCentsBefore = bookBatchRepository.findPriceCents(List.of(book.getIsbn()));
+        Book saved = bookRepository.save(book);
+        indexBooks(List.of(saved), priceCentsBefore);
+    }
+
+    // Brings the in-memory indexes up to date with books that were just written; priceCentsBefore holds the
+    // prices they had before, as read by BookBatchRepository.findPriceCents
+    public void indexBooks(List<Book> books, Map<String, Long> priceCentsBefore) {
+        Cache bookCache = cacheManager.getCache(BOOK_CACHE);
+        books.forEach(book -> bookCache.evict(book.getIsbn()));
+        // Carts holding a repriced book rebuild their subtotal on next read; a book that did not exist before
+        // is in no cart
+        List<String> repriced = books.stream()
+                .filter(book -> {
+                    Long before = priceCentsBefore.get(book.getIsbn().trim());
+                    return before != null && before != Math.round(book.getPrice() * 100);
+                })
+                .map(Book::getIsbn)
+                .toList();
+        if (!repriced.isEmpty()) {
+            shoppingCartRepository.clearSubtotalsContaining(repriced);
+            cartStore.pricesChanged(repriced);
+        }
+        books.forEach(topSellersLeaderboard::update);
+        genreIndex.putAll(books);
+        ratingSummaryIndex.updateTitles(books);
+        searchIndex.updateAll(books);
+        facetIndex.putAll(books);
+    }
+
+    // Projects the books for the given ISBNs in that order, with one IN (...) query per chunk
+    private List<BookDTO> findBookDTOsByIsbns(List<String> isbns) {
+        Map<String, BookDTO> booksByIsbn = new HashMap<>();
+        for (int from = 0; from < isbns.size(); from += IN_CLAUSE_CHUNK_SIZE) {
+            List<String> chunk = isbns.subList(from, Math.min(from + IN_CLAUSE_CHUNK_SIZE, isbns.size()));
+            for (BookDTO book : bookRepository.findBookDTOsByIsbns(chunk)) {
+                booksByIsbn.put(book.getISBN().trim(), book);
+            }
+        }
+        return isbns.stream()
+                .map(booksByIsbn::get)
+                .filter(Objects::nonNull)
+                .toList();
     }
 }
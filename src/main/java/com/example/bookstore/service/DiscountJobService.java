@@ -0,0 +1,175 @@
+package com.example.bookstore.service;
+
+import com.example.bookstore.cart.CartStore;
+import com.example.bookstore.model.DiscountJob;
+import com.example.bookstore.repository.BookRepository;
+import com.example.bookstore.repository.DiscountJobRepository;
+import com.example.bookstore.repository.ShoppingCartRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs publisher discounts as background jobs.
+ *
+ * A job walks the publisher's books in ISBN order and discounts one chunk per transaction, writing the last
+ * ISBN of the chunk to the job row in that same transaction. A chunk is therefore either applied and
+ * checkpointed or neither, and a job interrupted by a restart picks up after its checkpoint without
+ * discounting anything twice. Jobs pause between chunks so row locks are short and spread out.
+ */
+@Service
+public class DiscountJobService {
+
+    private static final List<DiscountJob.Status> UNFINISHED = List.of(DiscountJob.Status.PENDING, DiscountJob.Status.RUNNING);
+
+    @Autowired
+    private DiscountJobRepository discountJobRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private ShoppingCartRepository shoppingCartRepository;
+
+    @Autowired
+    private CartStore cartStore;
+
+    @Autowired
+    private TopSellersLeaderboard topSellersLeaderboard;
+
+    @Autowired
+    private FacetIndex facetIndex;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Value("${bookstore.discount.chunk-size:500}")
+    private int chunkSize;
+
+    // Pause between chunks, caps the write rate a discount puts on the books table
+    @Value("${bookstore.discount.chunk-pause-ms:50}")
+    private long chunkPauseMs;
+
+    private final ExecutorService jobExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "discount-job");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private TransactionTemplate chunkTransaction;
+
+    @PostConstruct
+    void init() {
+        chunkTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    public DiscountJob submit(double percentage, long publisherId) {
+        DiscountJob job = new DiscountJob();
+        job.setPublisherId(publisherId);
+        job.setPercentage(percentage);
+        job.setStatus(DiscountJob.Status.PENDING);
+        job.setChunkSize(chunkSize);
+        job.setCreatedAt(Instant.now());
+        job.setUpdatedAt(job.getCreatedAt());
+        DiscountJob saved = discountJobRepository.save(job);
+
+        jobExecutor.execute(() -> run(saved.getJobId()));
+        return saved;
+    }
+
+    public DiscountJob getJob(Long jobId) {
+        return discountJobRepository.findById(jobId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Discount job not found with ID: " + jobId));
+    }
+
+    // Picks up jobs that were queued or half-way through when the application last stopped
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeUnfinished() {
+        for (DiscountJob job : discountJobRepository.findByStatusInOrderByJobId(UNFINISHED)) {
+            System.out.println("Resuming discount job " + job.getJobId() + " after ISBN " + job.getLastIsbn());
+            jobExecutor.execute(() -> run(job.getJobId()));
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        // Interrupts the running job between chunks; it stays RUNNING and resumes on the next start
+        jobExecutor.shutdownNow();
+    }
+
+    void run(Long jobId) {
+        try {
+            updateStatus(jobId, DiscountJob.Status.RUNNING, null);
+
+            while (true) {
+                List<String> chunk = chunkTransaction.execute(status -> discountNextChunk(jobId));
+                if (chunk.isEmpty()) {
+                    break;
+                }
+                // Only the rows this chunk repriced, once the new prices are committed
+                Cache bookCache = cacheManager.getCache(BookService.BOOK_CACHE);
+                chunk.forEach(bookCache::evict);
+                cartStore.pricesChanged(chunk);
+                facetIndex.refresh(chunk);
+                Thread.sleep(chunkPauseMs);
+            }
+
+            updateStatus(jobId, DiscountJob.Status.COMPLETED, null);
+            System.out.println("Discount job " + jobId + " completed");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            System.out.println("Discount job " + jobId + " failed: " + e.getMessage());
+            updateStatus(jobId, DiscountJob.Status.FAILED, e.getMessage());
+        } finally {
+            // Prices on the leaderboard are snapshots, re-read them once the job stops touching rows
+            topSellersLeaderboard.reload();
+        }
+    }
+
+    // Discounts the next chunk and advances the checkpoint in one transaction
+    private List<String> discountNextChunk(Long jobId) {
+        DiscountJob job = getJob(jobId);
+        String after = job.getLastIsbn() == null ? "" : job.getLastIsbn();
+        List<String> isbns = bookRepository.findIsbnsByPublisherAfter(job.getPublisherId(), after,
+                PageRequest.of(0, job.getChunkSize()));
+        if (isbns.isEmpty()) {
+            return isbns;
+        }
+
+        int rowsModified = bookRepository.discountBooks(job.getPercentage(), isbns);
+        shoppingCartRepository.clearSubtotalsContaining(isbns);
+        job.setLastIsbn(isbns.get(isbns.size() - 1));
+        job.setBooksUpdated(job.getBooksUpdated() + rowsModified);
+        job.setUpdatedAt(Instant.now());
+        return isbns;
+    }
+
+    private void updateStatus(Long jobId, DiscountJob.Status status, String error) {
+        chunkTransaction.executeWithoutResult(tx -> {
+            DiscountJob job = getJob(jobId);
+            job.setStatus(status);
+            job.setError(error);
+            job.setUpdatedAt(Instant.now());
+        });
+    }
+}
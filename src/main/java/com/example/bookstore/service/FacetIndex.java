@@ -0,0 +1,547 @@
+package com.example.bookstore.service;
+
+import com.example.bookstore.model.Book;
+import com.example.bookstore.repository.BookRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+
+/**
+ * In-memory faceted browsing by genre, price band, publication year, publisher and minimum rating.
+ *
+ * Books get dense int ids (ISBN order at startup, later books appended) and every facet value owns an IdSet
+ * of the books that have it. A query intersects the sets of its filters and pages through the result in id
+ * order. Each facet's counts are taken against the intersection of the other filters only, so with a genre
+ * picked the genre facet still tells how many books every other genre would give. Values are numbered per
+ * facet and every book keeps the number of its value, so counting walks the matching books once and bumps an
+ * int[] instead of intersecting every value's set; only facets with a handful of values facing a large match
+ * are counted set by set. Everything published is immutable: writers copy what a change touches and publish
+ * a new State, readers never lock. Those numbers live in fixed-size pages, so a change copies the pages of
+ * the books it touches rather than a catalog-sized array. Rating sets follow RatingSummaryIndex: every rating
+ * write moves its one book between the sets of the levels its average crossed.
+ */
+@Component
+public class FacetIndex {
+
+    public static final List<String> PRICE_BANDS = List.of("0-10", "10-20", "20-30", "30-50", "50-100", "100+");
+    private static final double[] PRICE_BAND_FLOORS = {10, 20, 30, 50, 100};
+    private static final int IN_CLAUSE_CHUNK_SIZE = 1000;
+    // A facet with at most FEW_VALUES values is counted set by set once the matching books exceed
+    // 1/SCAN_FRACTION of the catalog; word-wise bitmap ANDs beat walking that many ids
+    private static final int FEW_VALUES = 16;
+    private static final int SCAN_FRACTION = 16;
+    // Books' value numbers are held in pages of 4096 ids
+    private static final int PAGE_BITS = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private RatingSummaryIndex ratingSummaryIndex;
+
+    // Guards everything below up to state; readers only touch state
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final Map<String, Integer> ids = new HashMap<>();
+    private String[] isbns = new String[0];
+    // Highest minRating filter each book passes, 0 for none; never published
+    private byte[] ratingLevels = new byte[0];
+    private int size;
+
+    private volatile State state = new State(new String[0], IdSet.EMPTY, Facet.empty(), Map.of(), Facet.empty(),
+            Facet.empty(), Facet.empty(), Map.of());
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        try (Stream<Object[]> rows = bookRepository.streamFacetValues()) {
+            load(rows);
+        }
+    }
+
+    // Replaces the whole index from (isbn, genre, price, year, publisherId) rows; ids follow the row order
+    public void load(Stream<Object[]> rows) {
+        writeLock.lock();
+        try {
+            // Fresh arrays, the published state keeps reading the old ones
+            ids.clear();
+            isbns = new String[0];
+            ratingLevels = new byte[0];
+            size = 0;
+            List<String> genres = new ArrayList<>();
+            Map<String, String> genreNames = new HashMap<>();
+            IntList priceBands = new IntList();
+            IntList years = new IntList();
+            List<Long> publishers = new ArrayList<>();
+            IntList everything = new IntList();
+            rows.forEach(row -> {
+                everything.add(append(((String) row[0]).trim()));
+                String genre = GenreIndex.normalize((String) row[1]);
+                if (genre != null) {
+                    genreNames.putIfAbsent(genre, ((String) row[1]).trim());
+                }
+                genres.add(genre);
+                priceBands.add(priceBand(((Number) row[2]).doubleValue()));
+                years.add(((Number) row[3]).intValue());
+                publishers.add((Long) row[4]);
+            });
+
+            IntList[] atLeast = new IntList[RatingSummaryIndex.MAX_RATING + 1];
+            for (int rating = 1; rating <= RatingSummaryIndex.MAX_RATING; rating++) {
+                atLeast[rating] = new IntList();
+            }
+            for (int id = 0; id < size; id++) {
+                int level = ratingLevel(isbns[id]);
+                ratingLevels[id] = (byte) level;
+                for (int rating = 1; rating <= level; rating++) {
+                    atLeast[rating].add(id);
+                }
+            }
+            Map<Integer, IdSet> minRatings = new HashMap<>();
+            for (int rating = 1; rating <= RatingSummaryIndex.MAX_RATING; rating++) {
+                minRatings.put(rating, atLeast[rating].toIdSet());
+            }
+
+            state = new State(isbns, everything.toIdSet(),
+                    Facet.of(size, genres::get), genreNames,
+                    Facet.of(size, id -> priceBands.ids[id]),
+                    Facet.of(size, id -> yearOf(years.ids[id])),
+                    Facet.of(size, publishers::get),
+                    minRatings);
+        } finally {
+            writeLock.unlock();
+        }
+        System.out.println("Facet index built over " + size + " books");
+    }
+
+    // Records new books and changed genres, prices, years or publishers
+    public void putAll(Collection<Book> books) {
+        writeLock.lock();
+        try {
+            State current = state;
+            ensureCapacity(size + books.size());
+            IdSet all = current.all;
+            Facet.Builder<String> genres = current.genres.toBuilder(isbns.length);
+            Map<String, String> genreNames = new HashMap<>(current.genreNames);
+            Facet.Builder<Integer> priceBands = current.priceBands.toBuilder(isbns.length);
+            Facet.Builder<Integer> years = current.years.toBuilder(isbns.length);
+            Facet.Builder<Long> publishers = current.publishers.toBuilder(isbns.length);
+            Map<Integer, IdSet> minRatings = new HashMap<>(current.minRatings);
+
+            for (Book book : books) {
+                String isbn = book.getIsbn().trim();
+                Integer existing = ids.get(isbn);
+                int id = existing != null ? existing : append(isbn);
+                if (existing == null) {
+                    // Ratings written before the book was indexed
+                    moveRatingLevel(id, ratingLevel(isbn), minRatings);
+                }
+                String genre = GenreIndex.normalize(book.getGenre());
+                if (genre != null) {
+                    genreNames.putIfAbsent(genre, book.getGenre().trim());
+                }
+
+                all = all.with(id);
+                genres.set(id, genre);
+                priceBands.set(id, priceBand(book.getPrice()));
+                years.set(id, yearOf(book.getYearPublished()));
+                publishers.set(id, book.getPublisher() == null ? null : book.getPublisher().getPublisherId());
+            }
+
+            state = new State(isbns, all, genres.build(), genreNames, priceBands.build(), years.build(),
+                    publishers.build(), minRatings);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Called after each rating write to the book; re-reads its average, so calls racing for one book settle
+    // on the latest
+    public void ratingChanged(String isbn) {
+        writeLock.lock();
+        try {
+            Integer id = ids.get(isbn.trim());
+            if (id == null) {
+                return; // putAll reads the level once the book is indexed
+            }
+            int level = ratingLevel(isbn);
+            if (level == ratingLevels[id]) {
+                return;
+            }
+            State current = state;
+            Map<Integer, IdSet> minRatings = new HashMap<>(current.minRatings);
+            moveRatingLevel(id, level, minRatings);
+            state = new State(current.isbns, current.all, current.genres, current.genreNames, current.priceBands,
+                    current.years, current.publishers, minRatings);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Re-reads books changed behind the entities' back, e.g. repriced by a discount job
+    public void refresh(List<String> isbns) {
+        for (int from = 0; from < isbns.size(); from += IN_CLAUSE_CHUNK_SIZE) {
+            putAll(bookRepository.findWithPublisherByIsbns(isbns.subList(from, Math.min(from + IN_CLAUSE_CHUNK_SIZE, isbns.size()))));
+        }
+    }
+
+    // Filters left null are not applied; priceBand indexes PRICE_BANDS
+    public Result browse(String genre, Integer priceBand, Integer year, Long publisherId, Integer minRating, int skip, int limit) {
+        State current = state;
+
+        IdSet[] filters = {
+                genre == null ? null : current.genres.setOf(GenreIndex.normalize(genre)),
+                priceBand == null ? null : current.priceBands.setOf(priceBand),
+                year == null ? null : current.years.setOf(year),
+                publisherId == null ? null : current.publishers.setOf(publisherId),
+                minRating == null ? null : current.minRatings.getOrDefault(minRating, IdSet.EMPTY)
+        };
+
+        IdSet matching = intersect(current.all, filters, -1);
+        int[] page = new int[limit];
+        int count = matching.page(skip, page);
+        List<String> books = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            books.add(current.isbns[page[i]]);
+        }
+
+        Map<String, Map<String, Integer>> facets = new LinkedHashMap<>();
+        facets.put("genre", byCount(current.genres.counts(intersect(current.all, filters, 0), current.all),
+                current.genreNames::get));
+        Map<String, Integer> prices = new LinkedHashMap<>();
+        current.priceBands.counts(intersect(current.all, filters, 1), current.all).entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(entry -> prices.put(PRICE_BANDS.get(entry.getKey()), entry.getValue()));
+        facets.put("price", prices);
+        Map<String, Integer> years = new LinkedHashMap<>();
+        current.years.counts(intersect(current.all, filters, 2), current.all).entrySet().stream()
+                .sorted(Map.Entry.<Integer, Integer>comparingByKey().reversed())
+                .forEach(entry -> years.put(String.valueOf(entry.getKey()), entry.getValue()));
+        facets.put("year", years);
+        facets.put("publisher", byCount(current.publishers.counts(intersect(current.all, filters, 3), current.all),
+                String::valueOf));
+        Map<String, Integer> ratings = new LinkedHashMap<>();
+        IdSet ratingBase = intersect(current.all, filters, 4);
+        current.minRatings.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(entry -> {
+                    int ratingCount = ratingBase == current.all ? entry.getValue().cardinality() : ratingBase.andCardinality(entry.getValue());
+                    if (ratingCount > 0) {
+                        ratings.put(String.valueOf(entry.getKey()), ratingCount);
+                    }
+                });
+        facets.put("minRating", ratings);
+
+        return new Result(books, matching.cardinality(), facets);
+    }
+
+    // PRICE_BANDS index of a price
+    static int priceBand(double price) {
+        int band = 0;
+        while (band < PRICE_BAND_FLOORS.length && price >= PRICE_BAND_FLOORS[band]) {
+            band++;
+        }
+        return band;
+    }
+
+    private static Integer yearOf(int yearPublished) {
+        return yearPublished > 0 ? yearPublished : null;
+    }
+
+    // Highest minRating filter the book passes: its average rounded down, 0 while it has no ratings
+    private int ratingLevel(String isbn) {
+        RatingSummaryIndex.Summary summary = ratingSummaryIndex.getSummary(isbn);
+        long count = summary == null ? 0 : summary.getCount();
+        return count == 0 ? 0 : (int) (summary.getSum() / count);
+    }
+
+    // Adds the book to the sets of the levels it reaches and takes it out of those it no longer does
+    private void moveRatingLevel(int id, int level, Map<Integer, IdSet> minRatings) {
+        int before = ratingLevels[id];
+        for (int rating = before + 1; rating <= level; rating++) {
+            minRatings.put(rating, minRatings.getOrDefault(rating, IdSet.EMPTY).with(id));
+        }
+        for (int rating = level + 1; rating <= before; rating++) {
+            minRatings.put(rating, minRatings.getOrDefault(rating, IdSet.EMPTY).without(id));
+        }
+        ratingLevels[id] = (byte) level;
+    }
+
+    private int append(String isbn) {
+        ensureCapacity(size + 1);
+        isbns[size] = isbn;
+        ids.put(isbn, size);
+        return size++;
+    }
+
+    // Grows by doubling; ids in use keep their slots, which a published state may be reading
+    private void ensureCapacity(int capacity) {
+        if (capacity > isbns.length) {
+            int length = Math.max(1024, Math.max(capacity, isbns.length * 2));
+            isbns = Arrays.copyOf(isbns, length);
+            ratingLevels = Arrays.copyOf(ratingLevels, length);
+        }
+    }
+
+    // All filters but the one at skip, smallest set first so intermediate results stay small
+    private static IdSet intersect(IdSet all, IdSet[] filters, int skip) {
+        List<IdSet> applied = new ArrayList<>(filters.length);
+        for (int i = 0; i < filters.length; i++) {
+            if (i != skip && filters[i] != null) {
+                applied.add(filters[i]);
+            }
+        }
+        if (applied.isEmpty()) {
+            return all;
+        }
+        applied.sort(Comparator.comparingInt(IdSet::cardinality));
+        IdSet result = applied.get(0);
+        for (int i = 1; i < applied.size() && result.cardinality() > 0; i++) {
+            result = result.and(applied.get(i));
+        }
+        return result;
+    }
+
+    private static <K> Map<String, Integer> byCount(Map<K, Integer> counts, Function<K, String> label) {
+        Map<String, Integer> sorted = new LinkedHashMap<>();
+        counts.entrySet().stream()
+                .map(entry -> Map.entry(label.apply(entry.getKey()), entry.getValue()))
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed().thenComparing(Map.Entry.<String, Integer>comparingByKey()))
+                .forEach(entry -> sorted.put(entry.getKey(), entry.getValue()));
+        return sorted;
+    }
+
+    // One page of ISBNs, the number of books matching and the counts of every facet value
+    public static final class Result {
+        private final List<String> isbns;
+        private final int total;
+        private final Map<String, Map<String, Integer>> facets;
+
+        private Result(List<String> isbns, int total, Map<String, Map<String, Integer>> facets) {
+            this.isbns = isbns;
+            this.total = total;
+            this.facets = facets;
+        }
+
+        public List<String> getIsbns() {
+            return isbns;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        public Map<String, Map<String, Integer>> getFacets() {
+            return facets;
+        }
+    }
+
+    // A facet whose books have at most one value each. Values are numbered in order of appearance; sets and
+    // values are indexed by that number, and ordinals holds each book's number, -1 for none, in pages by id.
+    // A missing page is all -1
+    private static final class Facet<K> {
+        private final List<K> values;
+        private final Map<K, Integer> numbers;
+        private final IdSet[] sets;
+        private final int[][] ordinals;
+
+        private Facet(List<K> values, Map<K, Integer> numbers, IdSet[] sets, int[][] ordinals) {
+            this.values = values;
+            this.numbers = numbers;
+            this.sets = sets;
+            this.ordinals = ordinals;
+        }
+
+        private static <K> Facet<K> empty() {
+            return new Facet<>(List.of(), Map.of(), new IdSet[0], new int[0][]);
+        }
+
+        // Facet over ids 0 to size - 1, reading each book's value, null if it has none
+        private static <K> Facet<K> of(int size, IntFunction<K> valueOf) {
+            List<K> values = new ArrayList<>();
+            Map<K, Integer> numbers = new HashMap<>();
+            List<IntList> lists = new ArrayList<>();
+            int[][] ordinals = new int[pageCount(size)][];
+            for (int page = 0; page < ordinals.length; page++) {
+                ordinals[page] = emptyPage();
+            }
+            for (int id = 0; id < size; id++) {
+                K value = valueOf.apply(id);
+                if (value == null) {
+                    continue;
+                }
+                int number = numbers.computeIfAbsent(value, key -> {
+                    values.add(key);
+                    lists.add(new IntList());
+                    return values.size() - 1;
+                });
+                lists.get(number).add(id);
+                ordinals[id >>> PAGE_BITS][id & (PAGE_SIZE - 1)] = number;
+            }
+            return new Facet<>(values, numbers, lists.stream().map(IntList::toIdSet).toArray(IdSet[]::new), ordinals);
+        }
+
+        private IdSet setOf(K value) {
+            Integer number = numbers.get(value);
+            return number == null ? IdSet.EMPTY : sets[number];
+        }
+
+        // Non-zero counts of each value among the books of base; all is every book, where the counts are the
+        // set sizes
+        private Map<K, Integer> counts(IdSet base, IdSet all) {
+            int[] counts = new int[sets.length];
+            if (base == all) {
+                for (int number = 0; number < sets.length; number++) {
+                    counts[number] = sets[number].cardinality();
+                }
+            } else if (sets.length <= FEW_VALUES && base.cardinality() >= all.cardinality() / SCAN_FRACTION) {
+                for (int number = 0; number < sets.length; number++) {
+                    counts[number] = base.andCardinality(sets[number]);
+                }
+            } else {
+                base.forEach(id -> {
+                    int number = ordinal(ordinals, id);
+                    if (number >= 0) {
+                        counts[number]++;
+                    }
+                });
+            }
+
+            Map<K, Integer> result = new HashMap<>();
+            for (int number = 0; number < counts.length; number++) {
+                if (counts[number] > 0) {
+                    result.put(values.get(number), counts[number]);
+                }
+            }
+            return result;
+        }
+
+        // Copy to change, with room for ids below capacity
+        private Builder<K> toBuilder(int capacity) {
+            return new Builder<>(this, capacity);
+        }
+
+        private static int ordinal(int[][] ordinals, int id) {
+            int[] page = ordinals[id >>> PAGE_BITS];
+            return page == null ? -1 : page[id & (PAGE_SIZE - 1)];
+        }
+
+        private static int pageCount(int size) {
+            return (size + PAGE_SIZE - 1) >>> PAGE_BITS;
+        }
+
+        private static int[] emptyPage() {
+            int[] page = new int[PAGE_SIZE];
+            Arrays.fill(page, -1);
+            return page;
+        }
+
+        // Shares the values and pages of the facet it starts from and copies them the first time they change
+        private static final class Builder<K> {
+            private List<K> values;
+            private Map<K, Integer> numbers;
+            private boolean valuesCopied;
+            private final List<IdSet> sets;
+            private final int[][] ordinals;
+            private final boolean[] copied;
+
+            private Builder(Facet<K> from, int capacity) {
+                values = from.values;
+                numbers = from.numbers;
+                sets = new ArrayList<>(Arrays.asList(from.sets));
+                ordinals = Arrays.copyOf(from.ordinals, Math.max(from.ordinals.length, pageCount(capacity)));
+                copied = new boolean[ordinals.length];
+            }
+
+            // A value left without books keeps its number and an empty set
+            private void set(int id, K value) {
+                int before = ordinal(ordinals, id);
+                if (value != null && !numbers.containsKey(value) && !valuesCopied) {
+                    values = new ArrayList<>(values);
+                    numbers = new HashMap<>(numbers);
+                    valuesCopied = true;
+                }
+                int after = value == null ? -1 : numbers.computeIfAbsent(value, key -> {
+                    values.add(key);
+                    sets.add(IdSet.EMPTY);
+                    return values.size() - 1;
+                });
+                if (before == after) {
+                    return;
+                }
+                if (before >= 0) {
+                    sets.set(before, sets.get(before).without(id));
+                }
+                if (after >= 0) {
+                    sets.set(after, sets.get(after).with(id));
+                }
+                int page = id >>> PAGE_BITS;
+                if (!copied[page]) {
+                    ordinals[page] = ordinals[page] == null ? emptyPage() : ordinals[page].clone();
+                    copied[page] = true;
+                }
+                ordinals[page][id & (PAGE_SIZE - 1)] = after;
+            }
+
+            private Facet<K> build() {
+                return new Facet<>(values, numbers, sets.toArray(new IdSet[0]), ordinals);
+            }
+        }
+    }
+
+    // Immutable once published; isbns may be longer than the ids in use
+    private static final class State {
+        private final String[] isbns;
+        private final IdSet all;
+        private final Facet<String> genres;
+        private final Map<String, String> genreNames;
+        private final Facet<Integer> priceBands;
+        private final Facet<Integer> years;
+        private final Facet<Long> publishers;
+        private final Map<Integer, IdSet> minRatings;
+
+        private State(String[] isbns, IdSet all, Facet<String> genres, Map<String, String> genreNames,
+                      Facet<Integer> priceBands, Facet<Integer> years, Facet<Long> publishers,
+                      Map<Integer, IdSet> minRatings) {
+            this.isbns = isbns;
+            this.all = all;
+            this.genres = genres;
+            this.genreNames = genreNames;
+            this.priceBands = priceBands;
+            this.years = years;
+            this.publishers = publishers;
+            this.minRatings = minRatings;
+        }
+    }
+
+    private static final class IntList {
+        private int[] ids = new int[16];
+        private int size;
+
+        private void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        private IdSet toIdSet() {
+            return IdSet.of(ids, size);
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.example.bookstore.service;
+
+import com.example.bookstore.model.Book;
+import com.example.bookstore.repository.BookRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * In-process genre → ISBN index.
+ *
+ * Genres are interned to small integer ids (case-insensitive) and each id owns a sorted posting list. Plain
+ * 13-digit ISBNs are stored as longs, anything else falls back to a sorted String array. Posting lists are
+ * replaced copy-on-write, so lookups never lock.
+ */
+@Component
+public class GenreIndex {
+
+    private static final Posting EMPTY = new Posting(new long[0], new String[0]);
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    private volatile State state = new State(Map.of(), new Posting[0]);
+    private volatile boolean ready;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        try (Stream<Object[]> rows = bookRepository.streamIsbnAndGenre()) {
+            load(rows);
+        }
+    }
+
+    // Replaces the whole index from (isbn, genre) rows
+    public void load(Stream<Object[]> rows) {
+        Map<String, Integer> ids = new HashMap<>();
+        List<PostingBuilder> builders = new ArrayList<>();
+
+        rows.forEach(row -> {
+            String key = normalize((String) row[1]);
+            if (key == null) {
+                return;
+            }
+            int id = ids.computeIfAbsent(key, k -> {
+                builders.add(new PostingBuilder());
+                return builders.size() - 1;
+            });
+            builders.get(id).add(((String) row[0]).trim());
+        });
+
+        Posting[] built = new Posting[builders.size()];
+        for (int i = 0; i < built.length; i++) {
+            built[i] = builders.get(i).build();
+        }
+
+        synchronized (this) {
+            state = new State(ids, built);
+            ready = true;
+        }
+    }
+
+    // Records the (possibly changed) genres of a batch of books; only posting lists they touch are rebuilt
+    public synchronized void putAll(Collection<Book> books) {
+        Map<String, String> genreByIsbn = new LinkedHashMap<>();
+        for (Book book : books) {
+            genreByIsbn.put(book.getIsbn(), book.getGenre());
+        }
+
+        Set<Long> removedNumeric = new HashSet<>();
+        Set<String> removedOther = new HashSet<>();
+        for (String isbn : genreByIsbn.keySet()) {
+            if (isNumericIsbn(isbn)) {
+                removedNumeric.add(Long.parseLong(isbn));
+            } else {
+                removedOther.add(isbn);
+            }
+        }
+
+        State current = state;
+        Map<String, Integer> ids = new HashMap<>(current.genreIds);
+        Posting[] next = current.postings;
+        Map<Integer, List<String>> added = new HashMap<>();
+        for (Map.Entry<String, String> entry : genreByIsbn.entrySet()) {
+            String key = normalize(entry.getValue());
+            if (key == null) {
+                continue;
+            }
+            Integer id = ids.get(key);
+            if (id == null) {
+                id = next.length;
+                next = Arrays.copyOf(next, id + 1);
+                next[id] = EMPTY;
+                ids.put(key, id);
+            }
+            added.computeIfAbsent(id, k -> new ArrayList<>()).add(entry.getKey());
+        }
+
+        next = next.clone();
+        for (int i = 0; i < next.length; i++) {
+            next[i] = next[i].apply(removedNumeric, removedOther, added.getOrDefault(i, List.of()));
+        }
+        state = new State(ids, next);
+    }
+
+    // Sorted ISBNs of the genre, empty if the genre is unknown
+    public List<String> isbnsFor(String genre) {
+        String key = normalize(genre);
+        State current = state;
+        Integer id = key == null ? null : current.genreIds.get(key);
+        if (id == null) {
+            return List.of();
+        }
+        return current.postings[id].toList();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    static String normalize(String genre) {
+        if (genre == null || genre.isBlank()) {
+            return null;
+        }
+        return genre.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean isNumericIsbn(String isbn) {
+        if (isbn.length() != 13) {
+            return false;
+        }
+        for (int i = 0; i < isbn.length(); i++) {
+            char c = isbn.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String formatIsbn(long value) {
+        String digits = Long.toString(value);
+        return digits.length() == 13 ? digits : "0".repeat(13 - digits.length()) + digits;
+    }
+
+    // Genre dictionary and posting lists published together, never mutated after publication
+    private static final class State {
+        private final Map<String, Integer> genreIds;
+        private final Posting[] postings;
+
+        private State(Map<String, Integer> genreIds, Posting[] postings) {
+            this.genreIds = genreIds;
+            this.postings = postings;
+        }
+    }
+
+    private static final class Posting {
+        private final long[] numeric;
+        private final String[] other;
+
+        private Posting(long[] numeric, String[] other) {
+            this.numeric = numeric;
+            this.other = other;
+        }
+
+        // Copy of this list without the removed ISBNs and with the added ones, or this list if nothing changes
+        Posting apply(Set<Long> removedNumeric, Set<String> removedOther, List<String> added) {
+            boolean changed = !added.isEmpty();
+            for (Iterator<Long> it = removedNumeric.iterator(); !changed && it.hasNext(); ) {
+                changed = Arrays.binarySearch(numeric, it.next()) >= 0;
+            }
+            for (Iterator<String> it = removedOther.iterator(); !changed && it.hasNext(); ) {
+                changed = Arrays.binarySearch(other, it.next()) >= 0;
+            }
+            if (!changed) {
+                return this;
+            }
+
+            PostingBuilder builder = new PostingBuilder();
+            for (long value : numeric) {
+                if (!removedNumeric.contains(value)) {
+                    builder.addNumeric(value);
+                }
+            }
+            for (String isbn : other) {
+                if (!removedOther.contains(isbn)) {
+                    builder.other.add(isbn);
+                }
+            }
+            added.forEach(builder::add);
+            return builder.build();
+        }
+
+        List<String> toList() {
+            List<String> isbns = new ArrayList<>(numeric.length + other.length);
+            for (long value : numeric) {
+                isbns.add(formatIsbn(value));
+            }
+            isbns.addAll(Arrays.asList(other));
+            return isbns;
+        }
+    }
+
+    private static final class PostingBuilder {
+        private long[] numeric = new long[16];
+        private int numericSize;
+        private final List<String> other = new ArrayList<>();
+
+        void add(String isbn) {
+            if (isNumericIsbn(isbn)) {
+                addNumeric(Long.parseLong(isbn));
+            } else {
+                other.add(isbn);
+            }
+        }
+
+        void addNumeric(long value) {
+            if (numericSize == numeric.length) {
+                numeric = Arrays.copyOf(numeric, numericSize * 2);
+            }
+            numeric[numericSize++] = value;
+        }
+
+        Posting build() {
+            long[] sortedNumeric = Arrays.copyOf(numeric, numericSize);
+            Arrays.sort(sortedNumeric);
+            String[] sortedOther = other.toArray(new String[0]);
+            Arrays.sort(sortedOther);
+            return new Posting(sortedNumeric, sortedOther);
+        }
+    }
+}
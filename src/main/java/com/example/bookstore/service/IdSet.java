@@ -0,0 +1,399 @@
+package com.example.bookstore.service;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Immutable compressed set of dense int ids, laid out like a roaring bitmap.
+ *
+ * Ids are grouped into chunks by their high 16 bits. A chunk holding up to 4096 ids is a sorted char[] of the
+ * low bits, a denser one a 65536-bit long[] bitmap, so every chunk costs at most 8 KB. Intersections go
+ * chunk by chunk and only touch chunks present in both sets; counting an intersection allocates nothing.
+ * Updates copy just the chunk they change.
+ */
+final class IdSet {
+
+    static final IdSet EMPTY = new IdSet(new char[0], new Object[0], 0);
+
+    private static final int ARRAY_MAX = 4096;
+    private static final int BITMAP_WORDS = 1024;
+    // Below this size ratio two arrays are merged, above it the smaller one gallops through the larger
+    private static final int GALLOP_RATIO = 32;
+
+    // High 16 bits of each chunk, ascending
+    private final char[] keys;
+    // char[] or long[] per key
+    private final Object[] chunks;
+    private final int cardinality;
+
+    // Callers pass the cardinality along, so an update never recounts the chunks it did not touch
+    private IdSet(char[] keys, Object[] chunks, int cardinality) {
+        this.keys = keys;
+        this.chunks = chunks;
+        this.cardinality = cardinality;
+    }
+
+    // The first count ids, which must be ascending
+    static IdSet of(int[] ids, int count) {
+        char[] keys = new char[count == 0 ? 0 : (ids[count - 1] >>> 16) + 1];
+        Object[] chunks = new Object[keys.length];
+        int chunkCount = 0;
+        int from = 0;
+        while (from < count) {
+            int key = ids[from] >>> 16;
+            int to = from;
+            while (to < count && ids[to] >>> 16 == key) {
+                to++;
+            }
+            Object chunk;
+            if (to - from > ARRAY_MAX) {
+                long[] bitmap = new long[BITMAP_WORDS];
+                for (int i = from; i < to; i++) {
+                    bitmap[(ids[i] & 0xFFFF) >>> 6] |= 1L << ids[i];
+                }
+                chunk = bitmap;
+            } else {
+                char[] array = new char[to - from];
+                for (int i = from; i < to; i++) {
+                    array[i - from] = (char) ids[i];
+                }
+                chunk = array;
+            }
+            keys[chunkCount] = (char) key;
+            chunks[chunkCount++] = chunk;
+            from = to;
+        }
+        return new IdSet(Arrays.copyOf(keys, chunkCount), Arrays.copyOf(chunks, chunkCount), count);
+    }
+
+    int cardinality() {
+        return cardinality;
+    }
+
+    // How many chunks are bitmaps rather than arrays
+    int bitmapChunks() {
+        int count = 0;
+        for (Object chunk : chunks) {
+            if (chunk instanceof long[]) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    IdSet with(int id) {
+        char key = (char) (id >>> 16);
+        char low = (char) id;
+        int index = Arrays.binarySearch(keys, key);
+        if (index < 0) {
+            int at = -index - 1;
+            char[] nextKeys = new char[keys.length + 1];
+            Object[] nextChunks = new Object[chunks.length + 1];
+            System.arraycopy(keys, 0, nextKeys, 0, at);
+            System.arraycopy(chunks, 0, nextChunks, 0, at);
+            nextKeys[at] = key;
+            nextChunks[at] = new char[]{low};
+            System.arraycopy(keys, at, nextKeys, at + 1, keys.length - at);
+            System.arraycopy(chunks, at, nextChunks, at + 1, chunks.length - at);
+            return new IdSet(nextKeys, nextChunks, cardinality + 1);
+        }
+
+        Object chunk = chunks[index];
+        Object updated;
+        if (chunk instanceof long[] bitmap) {
+            if ((bitmap[low >>> 6] & (1L << low)) != 0) {
+                return this;
+            }
+            long[] copy = bitmap.clone();
+            copy[low >>> 6] |= 1L << low;
+            updated = copy;
+        } else {
+            char[] array = (char[]) chunk;
+            int at = Arrays.binarySearch(array, low);
+            if (at >= 0) {
+                return this;
+            }
+            at = -at - 1;
+            char[] copy = new char[array.length + 1];
+            System.arraycopy(array, 0, copy, 0, at);
+            copy[at] = low;
+            System.arraycopy(array, at, copy, at + 1, array.length - at);
+            updated = copy.length > ARRAY_MAX ? toBitmap(copy) : copy;
+        }
+        return replace(index, updated, cardinality + 1);
+    }
+
+    IdSet without(int id) {
+        int index = Arrays.binarySearch(keys, (char) (id >>> 16));
+        if (index < 0) {
+            return this;
+        }
+        char low = (char) id;
+
+        Object chunk = chunks[index];
+        Object updated;
+        if (chunk instanceof long[] bitmap) {
+            if ((bitmap[low >>> 6] & (1L << low)) == 0) {
+                return this;
+            }
+            long[] copy = bitmap.clone();
+            copy[low >>> 6] &= ~(1L << low);
+            updated = cardinality(copy) <= ARRAY_MAX ? toArray(copy) : copy;
+        } else {
+            char[] array = (char[]) chunk;
+            int at = Arrays.binarySearch(array, low);
+            if (at < 0) {
+                return this;
+            }
+            char[] copy = new char[array.length - 1];
+            System.arraycopy(array, 0, copy, 0, at);
+            System.arraycopy(array, at + 1, copy, at, copy.length - at);
+            updated = copy;
+        }
+
+        if (cardinality(updated) > 0) {
+            return replace(index, updated, cardinality - 1);
+        }
+        char[] nextKeys = new char[keys.length - 1];
+        Object[] nextChunks = new Object[chunks.length - 1];
+        System.arraycopy(keys, 0, nextKeys, 0, index);
+        System.arraycopy(chunks, 0, nextChunks, 0, index);
+        System.arraycopy(keys, index + 1, nextKeys, index, nextKeys.length - index);
+        System.arraycopy(chunks, index + 1, nextChunks, index, nextChunks.length - index);
+        return new IdSet(nextKeys, nextChunks, cardinality - 1);
+    }
+
+    IdSet and(IdSet other) {
+        int length = Math.min(keys.length, other.keys.length);
+        char[] nextKeys = new char[length];
+        Object[] nextChunks = new Object[length];
+        int count = 0;
+        int total = 0;
+        int i = 0;
+        int j = 0;
+        while (i < keys.length && j < other.keys.length) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Object chunk = and(chunks[i], other.chunks[j]);
+                int chunkCardinality = cardinality(chunk);
+                if (chunkCardinality > 0) {
+                    nextKeys[count] = keys[i];
+                    nextChunks[count++] = chunk;
+                    total += chunkCardinality;
+                }
+                i++;
+                j++;
+            }
+        }
+        return new IdSet(Arrays.copyOf(nextKeys, count), Arrays.copyOf(nextChunks, count), total);
+    }
+
+    int andCardinality(IdSet other) {
+        int total = 0;
+        int i = 0;
+        int j = 0;
+        while (i < keys.length && j < other.keys.length) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                total += andCardinality(chunks[i], other.chunks[j]);
+                i++;
+                j++;
+            }
+        }
+        return total;
+    }
+
+    // Ascending ids after skipping the first skip, at most out.length of them; returns how many were written
+    int page(int skip, int[] out) {
+        int written = 0;
+        for (int c = 0; c < chunks.length && written < out.length; c++) {
+            int chunkCardinality = cardinality(chunks[c]);
+            if (skip >= chunkCardinality) {
+                skip -= chunkCardinality;
+                continue;
+            }
+            int high = keys[c] << 16;
+            if (chunks[c] instanceof long[] bitmap) {
+                for (int w = 0; w < BITMAP_WORDS && written < out.length; w++) {
+                    long word = bitmap[w];
+                    while (word != 0 && written < out.length) {
+                        if (skip > 0) {
+                            skip--;
+                        } else {
+                            out[written++] = high | (w << 6) | Long.numberOfTrailingZeros(word);
+                        }
+                        word &= word - 1;
+                    }
+                }
+            } else {
+                char[] array = (char[]) chunks[c];
+                for (int k = skip; k < array.length && written < out.length; k++) {
+                    out[written++] = high | array[k];
+                }
+            }
+            skip = 0;
+        }
+        return written;
+    }
+
+    void forEach(IntConsumer action) {
+        for (int c = 0; c < chunks.length; c++) {
+            int high = keys[c] << 16;
+            if (chunks[c] instanceof long[] bitmap) {
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    long word = bitmap[w];
+                    while (word != 0) {
+                        action.accept(high | (w << 6) | Long.numberOfTrailingZeros(word));
+                        word &= word - 1;
+                    }
+                }
+            } else {
+                for (char low : (char[]) chunks[c]) {
+                    action.accept(high | low);
+                }
+            }
+        }
+    }
+
+    private IdSet replace(int index, Object chunk, int nextCardinality) {
+        Object[] nextChunks = chunks.clone();
+        nextChunks[index] = chunk;
+        return new IdSet(keys, nextChunks, nextCardinality);
+    }
+
+    private static Object and(Object a, Object b) {
+        if (a instanceof char[] left && b instanceof char[] right) {
+            char[] result = new char[Math.min(left.length, right.length)];
+            return Arrays.copyOf(result, intersect(left, right, result));
+        }
+        if (a instanceof long[] left && b instanceof long[] right) {
+            long[] result = new long[BITMAP_WORDS];
+            int count = 0;
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                result[w] = left[w] & right[w];
+                count += Long.bitCount(result[w]);
+            }
+            return count <= ARRAY_MAX ? toArray(result) : result;
+        }
+        char[] array = (char[]) (a instanceof char[] ? a : b);
+        long[] bitmap = (long[]) (a instanceof long[] ? a : b);
+        char[] result = new char[array.length];
+        int count = 0;
+        for (char low : array) {
+            if ((bitmap[low >>> 6] & (1L << low)) != 0) {
+                result[count++] = low;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private static int andCardinality(Object a, Object b) {
+        int count = 0;
+        if (a instanceof char[] left && b instanceof char[] right) {
+            count = intersect(left, right, null);
+        } else if (a instanceof long[] left && b instanceof long[] right) {
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                count += Long.bitCount(left[w] & right[w]);
+            }
+        } else {
+            char[] array = (char[]) (a instanceof char[] ? a : b);
+            long[] bitmap = (long[]) (a instanceof long[] ? a : b);
+            for (char low : array) {
+                if ((bitmap[low >>> 6] & (1L << low)) != 0) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    // Common values of two sorted arrays, written to result unless it is null; returns how many there are.
+    // A much smaller array is looked up in the larger one by galloping instead of merging the two.
+    private static int intersect(char[] left, char[] right, char[] result) {
+        char[] small = left.length <= right.length ? left : right;
+        char[] large = small == left ? right : left;
+        int count = 0;
+        if (small.length * GALLOP_RATIO < large.length) {
+            int from = 0;
+            for (char value : small) {
+                int step = 1;
+                int to = from;
+                while (to < large.length && large[to] < value) {
+                    from = to + 1;
+                    to += step;
+                    step <<= 1;
+                }
+                int at = Arrays.binarySearch(large, from, Math.min(to + 1, large.length), value);
+                if (at >= 0) {
+                    if (result != null) {
+                        result[count] = value;
+                    }
+                    count++;
+                    from = at + 1;
+                } else {
+                    from = -at - 1;
+                }
+                if (from >= large.length) {
+                    break;
+                }
+            }
+            return count;
+        }
+
+        int i = 0;
+        int j = 0;
+        while (i < left.length && j < right.length) {
+            if (left[i] < right[j]) {
+                i++;
+            } else if (left[i] > right[j]) {
+                j++;
+            } else {
+                if (result != null) {
+                    result[count] = left[i];
+                }
+                count++;
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+
+    private static int cardinality(Object chunk) {
+        if (chunk instanceof char[] array) {
+            return array.length;
+        }
+        int count = 0;
+        for (long word : (long[]) chunk) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    private static long[] toBitmap(char[] array) {
+        long[] bitmap = new long[BITMAP_WORDS];
+        for (char low : array) {
+            bitmap[low >>> 6] |= 1L << low;
+        }
+        return bitmap;
+    }
+
+    private static char[] toArray(long[] bitmap) {
+        char[] array = new char[cardinality(bitmap)];
+        int count = 0;
+        for (int w = 0; w < BITMAP_WORDS; w++) {
+            long word = bitmap[w];
+            while (word != 0) {
+                array[count++] = (char) ((w << 6) | Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+        return array;
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.bookstore.service;
+
+import com.example.bookstore.cart.CartContents;
+import com.example.bookstore.cart.CartStore;
+import com.example.bookstore.controller.LinkTemplates;
+import com.example.bookstore.dto.BookDTO;
+import com.example.bookstore.dto.OrderDTO;
+import com.example.bookstore.dto.OrderLineDTO;
+import com.example.bookstore.repository.OrderJdbcRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Checkout: turns a cart into an order.
+ *
+ * The cart store runs placeOrder in one transaction with the cart locked and empties the cart in that same
+ * transaction. placeOrder reads the cart's books in ISBN order and snapshots their prices into orders and
+ * order_lines. The only row it locks is the cart's, so concurrent checkouts of carts sharing books never
+ * wait on each other. The order is inserted through SalesCounter, which counts its sales into copies_sold
+ * once the transaction has committed; the caller then hands them to the top-sellers leaderboard and to the
+ * windowed rankings.
+ */
+@Service
+public class OrderService {
+
+    @Autowired
+    private CartStore cartStore;
+
+    @Autowired
+    private OrderJdbcRepository orderJdbcRepository;
+
+    @Autowired
+    private TopSellersLeaderboard topSellersLeaderboard;
+
+    @Autowired
+    private SalesCounter salesCounter;
+
+    @Autowired
+    private SalesWindows salesWindows;
+
+    @Autowired
+    private LinkTemplates linkTemplates;
+
+    public OrderDTO checkout(Long userId) {
+        Map<String, BookDTO> books = new HashMap<>();
+        OrderDTO order = cartStore.checkout(userId, cart -> placeOrder(userId, cart, books));
+
+        salesWindows.record(order.getOrderId(), order.getLines());
+        for (OrderLineDTO line : order.getLines()) {
+            topSellersLeaderboard.recordSale(books.get(line.getIsbn()), line.getQuantity());
+        }
+
+        LinkTemplates.Bound links = linkTemplates.forCurrentRequest();
+        order.add(links.cartBooks(userId));
+        order.add(links.cartRoot());
+        order.add(links.root());
+        return order;
+    }
+
+    // Runs inside the cart store's checkout transaction; books receives what was read of each book
+    private OrderDTO placeOrder(long userId, CartContents cart, Map<String, BookDTO> books) {
+        if (cart.getQuantities().isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Shopping cart is empty");
+        }
+        TreeMap<String, Integer> quantities = new TreeMap<>(cart.getQuantities());
+
+        orderJdbcRepository.findBooks(quantities.keySet()).forEach(book -> books.put(book.getISBN(), book));
+        if (books.size() < quantities.size()) {
+            List<String> unavailable = new ArrayList<>(quantities.keySet());
+            unavailable.removeAll(books.keySet());
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Books no longer available: " + String.join(", ", unavailable));
+        }
+
+        List<OrderLineDTO> lines = new ArrayList<>(quantities.size());
+        long totalCents = 0;
+        for (Map.Entry<String, Integer> entry : quantities.entrySet()) {
+            BookDTO book = books.get(entry.getKey());
+            long unitPriceCents = ShoppingCartService.toCents(book.getPrice());
+            lines.add(new OrderLineDTO(book.getISBN(), book.getTitle(), entry.getValue(), unitPriceCents / 100.0));
+            totalCents += unitPriceCents * entry.getValue();
+        }
+
+        Instant createdAt = Instant.now();
+        long orderTotalCents = totalCents;
+        long orderId = salesCounter.recordOrder(() -> orderJdbcRepository.insertOrder(userId, orderTotalCents, createdAt), lines);
+        orderJdbcRepository.insertLines(orderId, lines);
+        return new OrderDTO(orderId, lines, orderTotalCents / 100.0, createdAt);
+    }
+}
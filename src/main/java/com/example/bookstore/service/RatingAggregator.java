@@ -0,0 +1,81 @@
+package com.example.bookstore.service;
+
+import com.example.bookstore.repository.BookRatingSummaryRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write-behind for book_rating_summaries.
+ *
+ * Rating submissions only bump per-ISBN histogram deltas held in LongAdders, which stripe contended
+ * increments across cells instead of retrying one CAS, so a popular book on launch day does not serialize
+ * its raters. A scheduled flush drains every delta and applies them with one batched upsert. Draining uses
+ * sumThenReset, so an increment racing with a flush lands either in this flush or the next one, never
+ * neither. The final flush runs on shutdown.
+ */
+@Component
+public class RatingAggregator {
+
+    @Autowired
+    private BookRatingSummaryRepository bookRatingSummaryRepository;
+
+    private final Map<String, LongAdder[]> pending = new ConcurrentHashMap<>();
+
+    // Counts one rating; a changed rating also takes one away from its previous value
+    public void record(String isbn, Integer previousRating, int rating) {
+        LongAdder[] histogram = pending.computeIfAbsent(isbn, key -> newHistogram());
+        if (previousRating != null) {
+            histogram[previousRating].decrement();
+        }
+        histogram[rating].increment();
+    }
+
+    @Scheduled(fixedDelayString = "${bookstore.ratings.flush-interval-ms:1000}")
+    public synchronized void flush() {
+        Map<String, long[]> deltas = new HashMap<>();
+        pending.forEach((isbn, histogram) -> {
+            long[] delta = new long[histogram.length];
+            boolean changed = false;
+            for (int rating = 0; rating < histogram.length; rating++) {
+                delta[rating] = histogram[rating].sumThenReset();
+                changed |= delta[rating] != 0;
+            }
+            if (changed) {
+                deltas.put(isbn, delta);
+            }
+        });
+
+        try {
+            bookRatingSummaryRepository.addAll(deltas);
+        } catch (RuntimeException e) {
+            // Put the drained deltas back so the next flush retries them
+            System.out.println("Rating summary flush failed, retrying next interval: " + e.getMessage());
+            deltas.forEach((isbn, delta) -> {
+                LongAdder[] histogram = pending.computeIfAbsent(isbn, key -> newHistogram());
+                for (int rating = 0; rating < delta.length; rating++) {
+                    histogram[rating].add(delta[rating]);
+                }
+            });
+        }
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        flush();
+    }
+
+    private static LongAdder[] newHistogram() {
+        LongAdder[] histogram = new LongAdder[RatingSummaryIndex.MAX_RATING + 1];
+        for (int rating = 0; rating < histogram.length; rating++) {
+            histogram[rating] = new LongAdder();
+        }
+        return histogram;
+    }
+}
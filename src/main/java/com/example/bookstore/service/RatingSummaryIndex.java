@@ -0,0 +1,182 @@
+package com.example.bookstore.service;
+
+import com.example.bookstore.dto.BookRatingDTO;
+import com.example.bookstore.model.Book;
+import com.example.bookstore.repository.BookRatingSummaryRepository;
+import com.example.bookstore.repository.RatingsRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+
+/**
+ * Per-book rating aggregates, kept in memory and updated as ratings are written.
+ *
+ * Each book holds a 0-5 histogram of its ratings, from which count and sum follow. The same aggregates are
+ * materialized in book_rating_summaries (see RatingAggregator), which seeds this index at startup.
+ * Threshold queries are answered from a ranking of all rated books ordered best average first, so
+ * "average >= r" reads just the books it returns. Each write moves its one book within the ranking instead of
+ * re-sorting it; a read racing a re-rate may miss that book for the moment it is moved.
+ */
+@Component
+public class RatingSummaryIndex {
+
+    public static final int MAX_RATING = 5;
+
+    @Autowired
+    private RatingsRepository ratingsRepository;
+
+    @Autowired
+    private BookRatingSummaryRepository bookRatingSummaryRepository;
+
+    private final Map<String, Summary> summaries = new ConcurrentHashMap<>();
+    // Rated books by descending average, ties by ISBN
+    private final ConcurrentSkipListMap<RankKey, Summary> ranking = new ConcurrentSkipListMap<>();
+
+    // Loads the materialized summaries at startup; only the very first start aggregates the ratings table.
+    // Runs before FacetIndex builds its rating sets from them
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @Transactional
+    public void seed() {
+        summaries.clear();
+        ranking.clear();
+        if (bookRatingSummaryRepository.isEmpty()) {
+            Map<String, long[]> backfill = new HashMap<>();
+            try (Stream<Object[]> rows = ratingsRepository.streamRatingHistogram()) {
+                rows.forEach(row -> {
+                    String isbn = ((String) row[0]).trim();
+                    Summary summary = summaries.computeIfAbsent(isbn, key -> new Summary((String) row[1]));
+                    summary.histogram.addAndGet((Integer) row[2], ((Number) row[3]).longValue());
+                    backfill.computeIfAbsent(isbn, key -> new long[MAX_RATING + 1])[(Integer) row[2]] += ((Number) row[3]).longValue();
+                });
+            }
+            bookRatingSummaryRepository.addAll(backfill);
+        } else {
+            bookRatingSummaryRepository.forEach((isbn, title, histogram) -> {
+                Summary summary = summaries.computeIfAbsent(isbn.trim(), key -> new Summary(title));
+                for (int rating = 0; rating <= MAX_RATING; rating++) {
+                    summary.histogram.addAndGet(rating, histogram[rating]);
+                }
+            });
+        }
+        summaries.forEach((isbn, summary) -> move(null, summary.rankKey(isbn), summary));
+    }
+
+    // Records a new rating, or a user changing theirs from previousRating
+    public void apply(String isbn, String title, Integer previousRating, int rating) {
+        Summary summary = summaries.computeIfAbsent(isbn, key -> new Summary(title));
+        synchronized (summary) {
+            RankKey before = summary.rankKey(isbn);
+            if (previousRating != null) {
+                summary.histogram.decrementAndGet(previousRating);
+            }
+            summary.histogram.incrementAndGet(rating);
+            move(before, summary.rankKey(isbn), summary);
+        }
+    }
+
+    // Keeps titles in step with catalog edits
+    public void updateTitles(Collection<Book> books) {
+        for (Book book : books) {
+            Summary summary = summaries.get(book.getIsbn());
+            if (summary != null && !book.getTitle().equals(summary.title)) {
+                summary.title = book.getTitle();
+            }
+        }
+    }
+
+    // Books whose average rating is at least minRating, best first
+    public List<BookRatingDTO> atLeast(double minRating) {
+        List<BookRatingDTO> books = new ArrayList<>();
+        for (Map.Entry<RankKey, Summary> entry : ranking.entrySet()) {
+            RankKey key = entry.getKey();
+            if (key.average < minRating) {
+                break;
+            }
+            books.add(new BookRatingDTO(key.isbn, entry.getValue().title, Math.round(key.average * 10) / 10.0));
+        }
+        return books;
+    }
+
+    public Summary getSummary(String isbn) {
+        return summaries.get(isbn);
+    }
+
+    private void move(RankKey before, RankKey after, Summary summary) {
+        if (before != null && (after == null || before.compareTo(after) != 0)) {
+            ranking.remove(before);
+        }
+        if (after != null) {
+            ranking.put(after, summary);
+        }
+    }
+
+    public static final class Summary {
+        private final AtomicLongArray histogram = new AtomicLongArray(MAX_RATING + 1);
+        private volatile String title;
+
+        private Summary(String title) {
+            this.title = title;
+        }
+
+        public long getCount() {
+            long count = 0;
+            for (int rating = 0; rating <= MAX_RATING; rating++) {
+                count += histogram.get(rating);
+            }
+            return count;
+        }
+
+        public long getSum() {
+            long sum = 0;
+            for (int rating = 1; rating <= MAX_RATING; rating++) {
+                sum += rating * histogram.get(rating);
+            }
+            return sum;
+        }
+
+        // Position in the ranking, null while the book has no ratings
+        private RankKey rankKey(String isbn) {
+            long count = getCount();
+            return count == 0 ? null : new RankKey((double) getSum() / count, isbn);
+        }
+
+        public long[] getHistogram() {
+            long[] copy = new long[MAX_RATING + 1];
+            for (int rating = 0; rating <= MAX_RATING; rating++) {
+                copy[rating] = histogram.get(rating);
+            }
+            return copy;
+        }
+    }
+
+    private static final class RankKey implements Comparable<RankKey> {
+        private final double average;
+        private final String isbn;
+
+        private RankKey(double average, String isbn) {
+            this.average = average;
+            this.isbn = isbn;
+        }
+
+        @Override
+        public int compareTo(RankKey other) {
+            int byAverage = Double.compare(other.average, average);
+            return byAverage != 0 ? byAverage : isbn.compareTo(other.isbn);
+        }
+    }
+}
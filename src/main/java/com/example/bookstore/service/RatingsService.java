@@ -1,23 +1,47 @@
 package com.example.bookstore.service;
 
 import com.example.bookstore.dto.BookRatingDTO;
+import com.example.bookstore.dto.RatingRequestDTO;
 import com.example.bookstore.model.Book;
+import com.example.bookstore.model.Ratings;
+import com.example.bookstore.model.RatingsId;
+import com.example.bookstore.repository.BookRepository;
 import com.example.bookstore.repository.RatingsRepository;
-import org.springframework.beans.factory.annotation.Autowired;
+import com.example.bookstore.repository.UserProfileRepository;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Optional;
 
 @Service
 public class RatingsService {
 
+    private final RatingSummaryIndex ratingSummaryIndex;
+    private final RatingAggregator ratingAggregator;
     private final RatingsRepository ratingsRepository;
+    private final BookRepository bookRepository;
+    private final UserProfileRepository userProfileRepository;
+    private final BookService bookService;
+    private final FacetIndex facetIndex;
+    private final TransactionTemplate transactionTemplate;
 
-    public RatingsService(RatingsRepository ratingsRepository) {
+    public RatingsService(RatingSummaryIndex ratingSummaryIndex, RatingAggregator ratingAggregator,
+                          RatingsRepository ratingsRepository, BookRepository bookRepository,
+                          UserProfileRepository userProfileRepository, BookService bookService,
+                          FacetIndex facetIndex, PlatformTransactionManager transactionManager) {
+        this.ratingSummaryIndex = ratingSummaryIndex;
+        this.ratingAggregator = ratingAggregator;
         this.ratingsRepository = ratingsRepository;
+        this.bookRepository = bookRepository;
+        this.userProfileRepository = userProfileRepository;
+        this.bookService = bookService;
+        this.facetIndex = facetIndex;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     public List<BookRatingDTO> getBooksByRating(int rating) {
@@ -28,14 +52,60 @@ public class RatingsService {
 
         System.out.println("Searching for books with genre greater than or equal to: " + rating);
 
-        List<BookRatingDTO> books = ratingsRepository.findDistinctTopByRatingGreaterThanEqual(rating);
+        // Answered from the in-memory summaries, the ratings table is not scanned per request
+        List<BookRatingDTO> books = ratingSummaryIndex.atLeast(rating);
 
         if (books.isEmpty()) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No books found with a rating greater than or equal to: " + rating);
         }
-        return books.stream()
-                .map(book -> new BookRatingDTO(book.getIsbn(), book.getTitle(), book.getAverageRating()))
-                .collect(Collectors.toList());
+        return books;
     }
 
+    // Creates or replaces the user's rating of a book; returns true when it is the user's first rating of it
+    public boolean submitRating(String isbn, RatingRequestDTO request) {
+        if (request.getUserId() == null || request.getRating() == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "userId and rating are required");
+        }
+        int rating = request.getRating();
+        if (rating > RatingSummaryIndex.MAX_RATING || rating < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Rating must be a value between 0 and 5");
+        }
+
+        Book book = bookService.getBookByISBN(isbn); // 404 for unknown books, usually served from cache
+        if (!userProfileRepository.existsById(request.getUserId())) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "User with ID " + request.getUserId() + " not found");
+        }
+
+        RatingsId id = new RatingsId(book.getIsbn(), request.getUserId());
+        Optional<Integer> previous;
+        try {
+            previous = transactionTemplate.execute(status -> upsert(id, rating));
+        } catch (DataIntegrityViolationException e) {
+            // A concurrent first rating by the same user inserted the row; ours becomes an update of it
+            previous = transactionTemplate.execute(status -> upsert(id, rating));
+        }
+
+        Integer previousRating = previous.orElse(null);
+        if (previousRating == null || previousRating != rating) {
+            ratingSummaryIndex.apply(book.getIsbn(), book.getTitle(), previousRating, rating);
+            facetIndex.ratingChanged(book.getIsbn());
+            ratingAggregator.record(book.getIsbn(), previousRating, rating);
+        }
+        return previousRating == null;
+    }
+
+    // Returns the rating that was replaced, if any. The row is read under a lock: two re-rates by the same user
+    // would otherwise both report the same previous rating and take it out of the summaries twice
+    private Optional<Integer> upsert(RatingsId id, int rating) {
+        Optional<Ratings> existing = ratingsRepository.findForUpdateById(id);
+        if (existing.isPresent()) {
+            int previousRating = existing.get().getRating();
+            existing.get().setRating(rating);
+            return Optional.of(previousRating);
+        }
+        Ratings created = new Ratings(id, userProfileRepository.getReferenceById(id.getUserId()),
+                bookRepository.getReferenceById(id.getIsbn()), rating);
+        ratingsRepository.saveAndFlush(created);
+        return Optional.empty();
+    }
 }
@@ -0,0 +1,207 @@
+package com.example.bookstore.service;
+
+import com.example.bookstore.dto.OrderLineDTO;
+import com.example.bookstore.repository.BookBatchRepository;
+import com.example.bookstore.repository.OrderJdbcRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Write-behind for books.copies_sold.
+ *
+ * Checkouts record their sales here once they commit instead of updating the books rows, so a bestseller's
+ * buyers are not serialized on one row lock. Per-ISBN LongAdders stripe the live counts behind unflushed();
+ * a scheduled flush applies the recorded orders with one batched UPDATE, in ISBN order, and only then takes
+ * their copies off the adders, so persisted plus unflushed never misses a recorded sale.
+ *
+ * Each flush also stores, in the same transaction, the order id copies_sold now counts through (see
+ * SalesWatermark), and on startup the lines of every order after it are replayed into the counter, so sales
+ * recorded in memory but lost to a crash still reach copies_sold exactly once. That only holds if a flush
+ * applies a gapless prefix of order ids, while checkouts commit out of id order. So an order's id is tracked
+ * as open from its insert until its transaction completes, and a flush stops below the lowest open one;
+ * the insert itself runs under the shared side of a lock whose exclusive side the flush takes to read that
+ * bound, so no id can be handed out unseen while it does. Rolled-back ids are simply passed over.
+ */
+@Component
+public class SalesCounter {
+
+    @Autowired
+    private BookBatchRepository bookBatchRepository;
+
+    @Autowired
+    private OrderJdbcRepository orderJdbcRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final Map<String, LongAdder> pending = new ConcurrentHashMap<>();
+    // Committed orders not yet in copies_sold, by order id
+    private final ConcurrentSkipListMap<Long, Map<String, Integer>> recorded = new ConcurrentSkipListMap<>();
+    // Orders inserted by a checkout whose transaction has not completed yet
+    private final ConcurrentSkipListSet<Long> openOrders = new ConcurrentSkipListSet<>();
+    private final AtomicLong lastOrderId = new AtomicLong();
+    private final ReentrantReadWriteLock insertLock = new ReentrantReadWriteLock();
+
+    // Guarded by this
+    private long flushedOrderId;
+    private boolean replayed;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    // Inserts an order through insert, inside the checkout transaction, and counts its lines once that
+    // transaction commits
+    public long recordOrder(LongSupplier insert, List<OrderLineDTO> lines) {
+        long orderId;
+        insertLock.readLock().lock();
+        try {
+            orderId = insert.getAsLong();
+            openOrders.add(orderId);
+            lastOrderId.accumulateAndGet(orderId, Math::max);
+        } finally {
+            insertLock.readLock().unlock();
+        }
+
+        Map<String, Integer> quantities = new TreeMap<>();
+        lines.forEach(line -> quantities.merge(line.getIsbn(), line.getQuantity(), Integer::sum));
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    count(orderId, quantities);
+                } else if (status == STATUS_UNKNOWN) {
+                    System.out.println("Order " + orderId + " completed in an unknown state, its sales may be missing from copies_sold");
+                }
+                // Only after count: an id always sits in openOrders or recorded until it is flushed or rolled back
+                openOrders.remove(orderId);
+            }
+        });
+        return orderId;
+    }
+
+    // Highest order id such that every order up to it has committed or rolled back. Orders from before startup
+    // only count once replay has run
+    public long settledOrderId() {
+        insertLock.writeLock().lock();
+        try {
+            // No insert is running: every id handed out so far is open, recorded, flushed or rolled back, and
+            // ids handed out later are higher
+            return (openOrders.isEmpty() ? lastOrderId.get() + 1 : openOrders.first()) - 1;
+        } finally {
+            insertLock.writeLock().unlock();
+        }
+    }
+
+    // Sales of the book not yet in books.copies_sold
+    public long unflushed(String isbn) {
+        LongAdder counter = pending.get(isbn);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    // Runs before the leaderboard seeds, which reads unflushed()
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public synchronized void replay() {
+        Long watermark = bookBatchRepository.findSalesWatermark();
+        if (watermark == null) {
+            // First start with a watermark: copies_sold already counts the orders placed so far
+            watermark = orderJdbcRepository.findLastOrderId();
+            bookBatchRepository.saveSalesWatermark(watermark);
+        }
+
+        Map<Long, Map<String, Integer>> lost = new TreeMap<>();
+        orderJdbcRepository.forEachLineAfter(watermark, (orderId, isbn, quantity) ->
+                lost.computeIfAbsent(orderId, key -> new TreeMap<>()).merge(isbn, quantity, Integer::sum));
+        lost.forEach((orderId, quantities) -> {
+            // Checkouts that committed since startup count themselves; openOrders is checked first because an
+            // order enters recorded before it leaves openOrders
+            if (!openOrders.contains(orderId) && !recorded.containsKey(orderId)) {
+                count(orderId, quantities);
+            }
+            lastOrderId.accumulateAndGet(orderId, Math::max);
+        });
+        lastOrderId.accumulateAndGet(watermark, Math::max);
+        flushedOrderId = watermark;
+        replayed = true;
+        if (!lost.isEmpty()) {
+            System.out.println("Sales counter replayed " + lost.size() + " orders after order " + watermark);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${bookstore.sales.flush-interval-ms:1000}")
+    public synchronized void flush() {
+        if (!replayed) {
+            return;
+        }
+        long settled = settledOrderId();
+        long watermark = Math.max(flushedOrderId, settled);
+        NavigableMap<Long, Map<String, Integer>> orders = recorded.headMap(settled, true);
+
+        Map<String, Long> deltas = new TreeMap<>();
+        orders.values().forEach(quantities -> quantities.forEach((isbn, quantity) -> deltas.merge(isbn, (long) quantity, Long::sum)));
+        if (deltas.isEmpty() && watermark == flushedOrderId) {
+            return;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (!deltas.isEmpty()) {
+                    bookBatchRepository.addCopiesSold(deltas);
+                }
+                bookBatchRepository.saveSalesWatermark(watermark);
+            });
+        } catch (RuntimeException e) {
+            // The orders stay recorded, so the next flush retries them
+            System.out.println("Sales counter flush failed, retrying next interval: " + e.getMessage());
+            return;
+        }
+        orders.clear();
+        flushedOrderId = watermark;
+        deltas.forEach((isbn, delta) -> pending.get(isbn).add(-delta));
+        // Cached books carry copies sold as persisted
+        Cache bookCache = cacheManager.getCache(BookService.BOOK_CACHE);
+        deltas.keySet().forEach(bookCache::evict);
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        flush();
+    }
+
+    private void count(long orderId, Map<String, Integer> quantities) {
+        quantities.forEach((isbn, quantity) -> pending.computeIfAbsent(isbn, key -> new LongAdder()).add(quantity));
+        recorded.put(orderId, quantities);
+    }
+}
@@ -0,0 +1,352 @@
+package com.example.bookstore.service;
+
+import com.example.bookstore.dto.OrderLineDTO;
+import com.example.bookstore.model.Book;
+import com.example.bookstore.repository.BookRepository;
+import com.example.bookstore.repository.OrderJdbcRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Sliding-window bestseller rankings: last hour, day and week, overall and per genre and publisher.
+ *
+ * Checkouts record their sales into an open tally of LongAdders. A scheduled roll-up drains it, looks up the
+ * genre and publisher of the books sold with one query, and files the counts into two rings of immutable
+ * buckets: 60 one-minute buckets serve the hour window, 168 one-hour buckets the day and week windows. Every
+ * bucket keeps only its top-K books per ranking (overall, each genre, each publisher), so memory depends on
+ * K and the number of rankings, not on the catalog; a book counts in a bucket only if it was a heavy hitter
+ * there, which keeps the head of each ranking exact and drops the long tail. Windows are aligned to bucket
+ * boundaries and lag checkouts by at most one roll-up. At startup the rings are rebuilt from order_lines;
+ * checkouts that commit before that are held back by order id and only counted if the rebuild missed them.
+ */
+@Component
+public class SalesWindows {
+
+    private static final long MINUTE_MS = 60_000;
+    private static final long HOUR_MS = 60 * MINUTE_MS;
+    private static final int IN_CLAUSE_CHUNK_SIZE = 1000;
+    // The bucket still being filled keeps this many times K per ranking before it is trimmed
+    private static final int OPEN_TALLY_SLACK = 4;
+
+    private static final String OVERALL = "*";
+
+    public enum Window {
+        HOUR("1h", false, 60),
+        DAY("1d", true, 24),
+        WEEK("7d", true, 168);
+
+        private final String param;
+        private final boolean hourly;
+        private final int periods;
+
+        Window(String param, boolean hourly, int periods) {
+            this.param = param;
+            this.hourly = hourly;
+            this.periods = periods;
+        }
+
+        // null if the value is not one of 1h, 1d or 7d
+        public static Window fromParam(String value) {
+            for (Window window : values()) {
+                if (window.param.equalsIgnoreCase(value.trim())) {
+                    return window;
+                }
+            }
+            return null;
+        }
+    }
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private OrderJdbcRepository orderJdbcRepository;
+
+    // Books kept per ranking in each bucket, also the largest page served
+    @Value("${bookstore.sales.window-top-k:100}")
+    private int topK;
+
+    private final Map<String, LongAdder> pending = new ConcurrentHashMap<>();
+    // Orders recorded before seed() finished, by order id; guarded by itself
+    private final Map<Long, List<OrderLineDTO>> unseeded = new HashMap<>();
+    private volatile boolean seeded;
+    // Replaced in tests
+    LongSupplier clock = System::currentTimeMillis;
+    private final Ring minutes = new Ring(MINUTE_MS, Window.HOUR.periods);
+    private final Ring hours = new Ring(HOUR_MS, Window.WEEK.periods);
+
+    // Counts a committed order's lines
+    public void record(long orderId, List<OrderLineDTO> lines) {
+        if (!seeded) {
+            synchronized (unseeded) {
+                if (!seeded) {
+                    // seed() may or may not read this order, it decides once it is done
+                    unseeded.put(orderId, lines);
+                    return;
+                }
+            }
+        }
+        count(lines);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void seed() {
+        long now = clock.getAsLong();
+        Map<Long, Map<String, Long>> byHour = new TreeMap<>();
+        Map<Long, Map<String, Long>> byMinute = new TreeMap<>();
+        long firstHour = now / HOUR_MS - Window.WEEK.periods + 1;
+        long firstMinute = now / MINUTE_MS - Window.HOUR.periods + 1;
+
+        Set<Long> seen = new HashSet<>();
+        orderJdbcRepository.forEachSaleSince(Instant.ofEpochMilli(firstHour * HOUR_MS), (orderId, isbn, createdAt, quantity) -> {
+            seen.add(orderId);
+            long millis = createdAt.toEpochMilli();
+            byHour.computeIfAbsent(millis / HOUR_MS, key -> new HashMap<>()).merge(isbn, (long) quantity, Long::sum);
+            if (millis / MINUTE_MS >= firstMinute) {
+                byMinute.computeIfAbsent(millis / MINUTE_MS, key -> new HashMap<>()).merge(isbn, (long) quantity, Long::sum);
+            }
+        });
+
+        Map<String, List<String>> rankings = rankingsOf(byHour.values().stream()
+                .flatMap(sold -> sold.keySet().stream())
+                .distinct()
+                .toList());
+        byHour.forEach((hour, sold) -> hours.add(hour, byRanking(sold, rankings)));
+        byMinute.forEach((minute, sold) -> minutes.add(minute, byRanking(sold, rankings)));
+        System.out.println("Sales windows seeded from " + byHour.size() + " hours of orders");
+
+        synchronized (unseeded) {
+            unseeded.forEach((orderId, lines) -> {
+                if (!seen.contains(orderId)) {
+                    count(lines);
+                }
+            });
+            unseeded.clear();
+            seeded = true;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${bookstore.sales.window-rollup-ms:60000}")
+    public synchronized void rollUp() {
+        if (!seeded) {
+            return;
+        }
+        long now = clock.getAsLong();
+        Map<String, Long> sold = new HashMap<>();
+        pending.forEach((isbn, counter) -> {
+            long copies = counter.sumThenReset();
+            if (copies != 0) {
+                sold.put(isbn, copies);
+            }
+        });
+        if (sold.isEmpty()) {
+            return;
+        }
+
+        Map<String, Map<String, Long>> sales = byRanking(sold, rankingsOf(sold.keySet()));
+        minutes.add(now / MINUTE_MS, sales);
+        hours.add(now / HOUR_MS, sales);
+    }
+
+    // ISBN -> copies sold in the window, best first; genre and publisherId narrow the ranking, at most one of them
+    public Map<String, Long> top(Window window, String genre, Long publisherId, int limit) {
+        String ranking = genre != null ? "genre:" + GenreIndex.normalize(genre)
+                : publisherId != null ? "publisher:" + publisherId
+                : OVERALL;
+        Ring ring = window.hourly ? hours : minutes;
+        long newest = clock.getAsLong() / ring.spanMillis;
+
+        Map<String, Long> totals = new HashMap<>();
+        ring.collect(newest - window.periods + 1, newest, ranking, totals);
+
+        Map<String, Long> top = new LinkedHashMap<>();
+        totals.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.<String, Long>comparingByKey()))
+                .limit(limit)
+                .forEach(entry -> top.put(entry.getKey(), entry.getValue()));
+        return top;
+    }
+
+    public int getTopK() {
+        return topK;
+    }
+
+    private void count(List<OrderLineDTO> lines) {
+        lines.forEach(line -> pending.computeIfAbsent(line.getIsbn(), key -> new LongAdder()).add(line.getQuantity()));
+    }
+
+    // The genre and publisher rankings each book belongs to, one query per chunk
+    private Map<String, List<String>> rankingsOf(Collection<String> isbns) {
+        List<String> all = new ArrayList<>(isbns);
+        Map<String, List<String>> rankings = new HashMap<>();
+        for (int from = 0; from < all.size(); from += IN_CLAUSE_CHUNK_SIZE) {
+            List<String> chunk = all.subList(from, Math.min(from + IN_CLAUSE_CHUNK_SIZE, all.size()));
+            for (Book book : bookRepository.findWithPublisherByIsbns(chunk)) {
+                List<String> keys = new ArrayList<>(2);
+                String genre = GenreIndex.normalize(book.getGenre());
+                if (genre != null) {
+                    keys.add("genre:" + genre);
+                }
+                if (book.getPublisher() != null) {
+                    keys.add("publisher:" + book.getPublisher().getPublisherId());
+                }
+                rankings.put(book.getIsbn().trim(), keys);
+            }
+        }
+        return rankings;
+    }
+
+    // Spreads ISBN -> copies over the overall ranking and each book's genre and publisher rankings
+    private static Map<String, Map<String, Long>> byRanking(Map<String, Long> sold, Map<String, List<String>> rankings) {
+        Map<String, Map<String, Long>> sales = new HashMap<>();
+        sold.forEach((isbn, copies) -> {
+            sales.computeIfAbsent(OVERALL, key -> new HashMap<>()).put(isbn, copies);
+            for (String ranking : rankings.getOrDefault(isbn, List.of())) {
+                sales.computeIfAbsent(ranking, key -> new HashMap<>()).put(isbn, copies);
+            }
+        });
+        return sales;
+    }
+
+    // Keeps the best limit entries of each ranking
+    private static Map<String, Tally> trim(Map<String, Map<String, Long>> sales, int limit) {
+        Map<String, Tally> tallies = new HashMap<>();
+        sales.forEach((ranking, counts) -> {
+            List<Map.Entry<String, Long>> best = counts.entrySet().stream()
+                    .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                    .limit(limit)
+                    .toList();
+            String[] isbns = new String[best.size()];
+            long[] copies = new long[best.size()];
+            for (int i = 0; i < isbns.length; i++) {
+                isbns[i] = best.get(i).getKey();
+                copies[i] = best.get(i).getValue();
+            }
+            tallies.put(ranking, new Tally(isbns, copies));
+        });
+        return tallies;
+    }
+
+    // Fixed-size ring of buckets; only written under the SalesWindows monitor, read without locking
+    private final class Ring {
+        private final long spanMillis;
+        private final AtomicReferenceArray<Bucket> buckets;
+        private long openPeriod = -1;
+        // Untrimmed counts of the newest period, so its heavy hitters are picked from everything sold in it
+        private final Map<String, Map<String, Long>> open = new HashMap<>();
+
+        private Ring(long spanMillis, int periods) {
+            this.spanMillis = spanMillis;
+            this.buckets = new AtomicReferenceArray<>(periods);
+        }
+
+        private void add(long period, Map<String, Map<String, Long>> sales) {
+            int slot = (int) (period % buckets.length());
+            if (period >= openPeriod) {
+                if (period > openPeriod) {
+                    openPeriod = period;
+                    open.clear();
+                }
+                merge(open, sales);
+                buckets.set(slot, new Bucket(period, trim(open, topK)));
+                trimOpen();
+                return;
+            }
+
+            // An older period, only while seeding: fold into whatever that bucket already holds
+            Bucket existing = buckets.get(slot);
+            if (existing != null && existing.period > period) {
+                return;
+            }
+            Map<String, Map<String, Long>> counts = existing != null ? existing.toCounts() : new HashMap<>();
+            merge(counts, sales);
+            buckets.set(slot, new Bucket(period, trim(counts, topK)));
+        }
+
+        private void collect(long from, long to, String ranking, Map<String, Long> totals) {
+            for (int i = 0; i < buckets.length(); i++) {
+                Bucket bucket = buckets.get(i);
+                if (bucket != null && bucket.period >= from && bucket.period <= to) {
+                    Tally tally = bucket.tallies.get(ranking);
+                    if (tally != null) {
+                        for (int j = 0; j < tally.isbns.length; j++) {
+                            totals.merge(tally.isbns[j], tally.copies[j], Long::sum);
+                        }
+                    }
+                }
+            }
+        }
+
+        // Bounds the open tally too, keeping a few times K so late climbers can still make the bucket
+        private void trimOpen() {
+            int limit = OPEN_TALLY_SLACK * topK;
+            for (Map.Entry<String, Map<String, Long>> entry : open.entrySet()) {
+                if (entry.getValue().size() > 2 * limit) {
+                    Tally kept = trim(Map.of(entry.getKey(), entry.getValue()), limit).get(entry.getKey());
+                    entry.setValue(kept.toCounts());
+                }
+            }
+        }
+
+        private void merge(Map<String, Map<String, Long>> into, Map<String, Map<String, Long>> sales) {
+            sales.forEach((ranking, counts) -> {
+                Map<String, Long> tally = into.computeIfAbsent(ranking, key -> new HashMap<>());
+                counts.forEach((isbn, copies) -> tally.merge(isbn, copies, Long::sum));
+            });
+        }
+    }
+
+    private static final class Bucket {
+        private final long period;
+        private final Map<String, Tally> tallies;
+
+        private Bucket(long period, Map<String, Tally> tallies) {
+            this.period = period;
+            this.tallies = tallies;
+        }
+
+        private Map<String, Map<String, Long>> toCounts() {
+            Map<String, Map<String, Long>> counts = new HashMap<>();
+            tallies.forEach((ranking, tally) -> counts.put(ranking, tally.toCounts()));
+            return counts;
+        }
+    }
+
+    // One ranking's heavy hitters in a bucket, best first
+    private static final class Tally {
+        private final String[] isbns;
+        private final long[] copies;
+
+        private Tally(String[] isbns, long[] copies) {
+            this.isbns = isbns;
+            this.copies = copies;
+        }
+
+        private Map<String, Long> toCounts() {
+            Map<String, Long> counts = new HashMap<>();
+            for (int i = 0; i < isbns.length; i++) {
+                counts.put(isbns[i], copies[i]);
+            }
+            return counts;
+        }
+    }
+}
@@ -1,152 +1,133 @@
 package com.example.bookstore.service;
 
-import com.example.bookstore.controller.HomeController;
-import com.example.bookstore.controller.ShoppingCartController;
+import com.example.bookstore.cart.CartContents;
+import com.example.bookstore.cart.CartStore;
+import com.example.bookstore.controller.LinkTemplates;
+import com.example.bookstore.dto.BookDTO;
+import com.example.bookstore.dto.CartItemOperationDTO;
+import com.example.bookstore.dto.ShoppingCartDTO;
 import com.example.bookstore.dto.ShoppingCartItemDTO;
 import com.example.bookstore.dto.ShoppingCartSubtotalResource;
 import com.example.bookstore.model.Book;
-import com.example.bookstore.model.ShoppingCart;
-import com.example.bookstore.model.ShoppingCartItem;
-import com.example.bookstore.model.ShoppingCartItemId;
 import com.example.bookstore.repository.BookRepository;
-import com.example.bookstore.repository.ShoppingCartItemRepository;
-import com.example.bookstore.repository.ShoppingCartRepository;
-import com.example.bookstore.repository.UserProfileRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.hateoas.EntityModel;
 import org.springframework.hateoas.Link;
-import org.springframework.hateoas.server.mvc.WebMvcLinkBuilder;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
 public class ShoppingCartService {
 
     @Autowired
-    private ShoppingCartRepository cartRepository;
+    private CartStore cartStore;
 
     @Autowired
-    private ShoppingCartItemRepository cartItemRepository;
+    private BookRepository bookRepository;
 
     @Autowired
-    private BookRepository bookRepository;
+    private BookService bookService;
+
+    @Autowired
+    private LinkTemplates linkTemplates;
 
     @Autowired
-    private UserProfileRepository userProfileRepository;
+    private TrendingBooks trendingBooks;
 
 
     // Get all books in shopping cart ----------------------------------------------------------------------------------
     public List<EntityModel<ShoppingCartItemDTO>> getBooksInShoppingCart(Long userID) {
-        ShoppingCart shoppingCart = cartRepository.findByUserUserId(userID)
-                .orElseThrow(() -> new RuntimeException("Shopping cart not found"));
+        List<ShoppingCartItemDTO> cartItems = toItems(findCart(userID));
 
-        List<ShoppingCartItem> cartItems = cartItemRepository.findByShoppingCartCartId(shoppingCart.getCartId());
+        // Every item carries the same links, so they are built once per request
+        LinkTemplates.Bound links = linkTemplates.forCurrentRequest();
+        Link selfLink = links.cartBooks(userID);
+        Link cartSubtotalLink = links.cartSubtotal(userID);
+        Link shoppingCartRootLink = links.cartRoot();
+        Link rootLink = links.root();
 
         return cartItems.stream()
-                .map(cartItem -> {
-                    Book book = cartItem.getBook();
-                    Integer quantity = cartItem.getQuantity(); // new
-
-                    ShoppingCartItemDTO shoppingCartItemDTO = new ShoppingCartItemDTO(book, quantity);
-
-                    Link selfLink = WebMvcLinkBuilder.linkTo(
-                            WebMvcLinkBuilder.methodOn(ShoppingCartController.class).getBooksInShoppingCart(userID)
-                    ).withRel("shopping-cart-books");
-
-                    Link cartSubtotalLink = WebMvcLinkBuilder.linkTo(
-                            WebMvcLinkBuilder.methodOn(ShoppingCartController.class).getShoppingCartSubtotal(userID)
-                    ).withRel("shopping-cart-subtotal");
-
-                    Link shoppingCartRootLink = WebMvcLinkBuilder.linkTo(
-                            WebMvcLinkBuilder.methodOn(ShoppingCartController.class).getShoppingCartRoot()
-                    ).withRel("shopping-cart-root");
-
-                    Link rootLink = WebMvcLinkBuilder.linkTo(
-                            WebMvcLinkBuilder.methodOn(HomeController.class).getRoot()
-                    ).withRel("root");
-
-                    return EntityModel.of(shoppingCartItemDTO, selfLink, cartSubtotalLink,
-                            shoppingCartRootLink, rootLink);
-                })
+                .map(shoppingCartItemDTO -> EntityModel.of(shoppingCartItemDTO, selfLink, cartSubtotalLink,
+                        shoppingCartRootLink, rootLink))
                 .collect(Collectors.toList());
     }
 
 
     // Add book to shopping cart ---------------------------------------------------------------------------------------
     public void addBookToShoppingCart(Long userId, String isbn) {
-        ShoppingCart cart = cartRepository.findByUserUserId(userId)
-                .orElseGet(() -> {
-                    ShoppingCart newCart = new ShoppingCart();
-                    newCart.setUser(userProfileRepository.findById(userId)
-                            .orElseThrow(() -> new RuntimeException("User not found")));
-                    return cartRepository.save(newCart);
-                });
-
-        Book book = bookRepository.findById(isbn)
-                .orElseThrow(() -> new RuntimeException("Book not found"));
-
-        ShoppingCartItem item = cartItemRepository.findByShoppingCartCartIdAndBookIsbn(cart.getCartId(), isbn)
-                .orElseGet(() -> {
-                    ShoppingCartItem newItem = new ShoppingCartItem();
-                    ShoppingCartItemId newId = new ShoppingCartItemId();
-                    newId.setCartId(cart.getCartId());
-                    newId.setISBN(isbn);
-                    newItem.setId(newId);
-                    newItem.setShoppingCart(cart);
-                    newItem.setBook(book);
-                    return newItem;
-                });
-
-        item.setQuantity(item.getQuantity() + 1);
-        cartItemRepository.save(item);
+        Book book = bookService.getBookByISBN(isbn);
+        cartStore.add(userId, book.getIsbn(), toCents(book.getPrice()));
+        trendingBooks.record(book.getIsbn().trim());
     }
 
 
     // Delete a book from shopping cart, quantity 0 --------------------------------------------------------------------
     public void removeBookFromShoppingCart(Long userId, String isbn) {
-        ShoppingCart shoppingCart = cartRepository.findByUserUserId(userId)
-                .orElseThrow(() -> new RuntimeException("Shopping cart not found"));
+        if (!cartStore.remove(userId, isbn.trim())) {
+            throw new RuntimeException("Book not found in shopping cart");
+        }
+    }
 
-        ShoppingCartItem book = cartItemRepository.findByShoppingCartCartIdAndBookIsbn(shoppingCart.getCartId(), isbn)
-                .orElseThrow(() -> new RuntimeException("Book not found in shopping cart"));
 
-        book.setQuantity(book.getQuantity() - 1);
-        cartItemRepository.delete(book);
+    // Apply a list of item changes atomically -------------------------------------------------------------------------
+    public ShoppingCartDTO updateItems(Long userId, List<CartItemOperationDTO> operations) {
+        if (operations == null || operations.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At least one operation is required");
+        }
+        for (CartItemOperationDTO operation : operations) {
+            if (operation.getIsbn() == null || operation.getIsbn().isBlank()) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Every operation needs an isbn");
+            }
+            if ((operation.getDelta() == null) == (operation.getQuantity() == null)) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Give either delta or quantity for " + operation.getIsbn());
+            }
+            if (operation.getQuantity() != null && operation.getQuantity() < 0) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Quantity must not be negative for " + operation.getIsbn());
+            }
+        }
+
+        // Every ISBN checked, and priced, with one query
+        Map<String, Long> priceCents = new HashMap<>();
+        List<String> isbns = operations.stream().map(operation -> operation.getIsbn().trim()).distinct().toList();
+        for (BookDTO book : bookRepository.findBookDTOsByIsbns(isbns)) {
+            priceCents.put(book.getISBN().trim(), toCents(book.getPrice()));
+        }
+        List<String> unknown = isbns.stream().filter(isbn -> !priceCents.containsKey(isbn)).toList();
+        if (!unknown.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Books not found: " + String.join(", ", unknown));
+        }
+
+        CartContents contents = cartStore.update(userId, operations, priceCents);
+        ShoppingCartDTO cart = new ShoppingCartDTO(toItems(contents), contents.getSubtotalCents() / 100.0);
+
+        LinkTemplates.Bound links = linkTemplates.forCurrentRequest();
+        cart.add(links.cartBooks(userId));
+        cart.add(links.cartSubtotal(userId));
+        cart.add(links.cartRoot());
+        cart.add(links.root());
+        return cart;
     }
 
 
     // Retrieve shopping cart subtotal ---------------------------------------------------------------------------------
     public ShoppingCartSubtotalResource getShoppingCartSubtotal(Long userID) {
-        ShoppingCart shoppingCart = cartRepository.findByUserUserId(userID)
-                .orElseThrow(() -> new RuntimeException("Shopping cart not found"));
-
-        List<ShoppingCartItem> shoppingCartItems = cartItemRepository
-                .findByShoppingCartCartId(shoppingCart.getCartId());
-
-        double subtotal = shoppingCartItems.stream()
-                .mapToDouble(cartItem -> cartItem.getBook().getPrice() * cartItem.getQuantity())
-                .sum();
+        long subtotalCents = findCart(userID).getSubtotalCents();
 
-        ShoppingCartSubtotalResource resource = new ShoppingCartSubtotalResource(subtotal);
+        ShoppingCartSubtotalResource resource = new ShoppingCartSubtotalResource(subtotalCents / 100.0);
 
 
-        Link selfLink = WebMvcLinkBuilder.linkTo(
-                WebMvcLinkBuilder.methodOn(ShoppingCartController.class).getShoppingCartSubtotal(userID)
-        ).withRel("shopping-cart-subtotal");
-
-        Link getBooksLink = WebMvcLinkBuilder.linkTo(
-                WebMvcLinkBuilder.methodOn(ShoppingCartController.class).getBooksInShoppingCart(userID)
-        ).withRel("shopping-cart-books");
-
-        Link shoppingCartRootLink = WebMvcLinkBuilder.linkTo(
-                WebMvcLinkBuilder.methodOn(ShoppingCartController.class).getShoppingCartRoot()
-        ).withRel("shopping-cart-root");
-
-        Link rootLink = WebMvcLinkBuilder.linkTo(
-                WebMvcLinkBuilder.methodOn(HomeController.class).getRoot()
-        ).withRel("root");
+        LinkTemplates.Bound links = linkTemplates.forCurrentRequest();
+        Link selfLink = links.cartSubtotal(userID);
+        Link getBooksLink = links.cartBooks(userID);
+        Link shoppingCartRootLink = links.cartRoot();
+        Link rootLink = links.root();
 
 
         resource.add(selfLink);
@@ -156,4 +137,24 @@ public class ShoppingCartService {
 
         return resource;
     }
+
+
+    // Prices are doubles on Book; carts keep exact cents so running totals never drift
+    static long toCents(double price) {
+        return Math.round(price * 100);
+    }
+
+
+    private CartContents findCart(Long userId) {
+        return cartStore.find(userId).orElseThrow(() -> new RuntimeException("Shopping cart not found"));
+    }
+
+
+    // Books come from the book cache, uncached ones with one query; a book since deleted drops out of the list
+    private List<ShoppingCartItemDTO> toItems(CartContents cart) {
+        Map<String, Integer> quantities = cart.getQuantities();
+        return bookService.getBooksByIsbns(new ArrayList<>(quantities.keySet())).getBooks().stream()
+                .map(book -> new ShoppingCartItemDTO(book, quantities.get(book.getIsbn().trim())))
+                .toList();
+    }
 }
@@ -0,0 +1,176 @@
+package com.example.bookstore.service;
+
+import com.example.bookstore.dto.BookDTO;
+import com.example.bookstore.model.Book;
+import com.example.bookstore.repository.BookRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * In-memory top-N of books by copies sold.
+ *
+ * Seeded with a single LIMIT-ed query and kept current through {@link #update(Book)} and
+ * {@link #recordSale(BookDTO, int)}, so reading the top sellers never touches the database. Copies sold are
+ * live: counts read from the table are topped up with SalesCounter's unflushed sales, and each checkout adds
+ * its own. Writers rebuild a small sorted array under a lock and publish it as an immutable list; readers just
+ * take the current reference.
+ */
+@Component
+public class TopSellersLeaderboard {
+
+    private static final Comparator<Entry> RANKING = Comparator
+            .comparingInt(Entry::getCopiesSold).reversed()
+            .thenComparing(Entry::getIsbn);
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private SalesCounter salesCounter;
+
+    // Largest page the endpoint can serve, e.g. top 10, 50 or 100
+    @Value("${bookstore.top-sellers.capacity:100}")
+    private int capacity;
+
+    private volatile List<Entry> ranking = List.of();
+    private volatile boolean seeded;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void seed() {
+        reload();
+    }
+
+    // Re-reads the top of the table, used at startup and after bulk changes such as discounts
+    public synchronized void reload() {
+        List<BookDTO> books = bookRepository.findTopSellers(PageRequest.of(0, capacity));
+        List<Entry> entries = new ArrayList<>(books.size());
+        for (BookDTO book : books) {
+            entries.add(new Entry(book.getISBN(), book.getTitle(), book.getPrice(), live(book.getISBN(), book.getCopiesSold())));
+        }
+        entries.sort(RANKING);
+        ranking = List.copyOf(entries);
+        seeded = true;
+    }
+
+    // Applies a change to one book's copies sold, title or price
+    public void update(Book book) {
+        update(new Entry(book.getIsbn(), book.getTitle(), book.getPrice(), live(book.getIsbn(), book.getCopiesSold())));
+    }
+
+    // Adds a checkout's copies; book is the row as checkout read it, used if the book is not on the board yet
+    public synchronized void recordSale(BookDTO book, int quantity) {
+        int existing = indexOf(ranking, book.getISBN());
+        int copiesSold = existing >= 0
+                ? ranking.get(existing).getCopiesSold() + quantity
+                : live(book.getISBN(), book.getCopiesSold());
+        update(new Entry(book.getISBN(), book.getTitle(), book.getPrice(), copiesSold));
+    }
+
+    private synchronized void update(Entry entry) {
+        if (!seeded) {
+            reload();
+            return;
+        }
+
+        List<Entry> next = new ArrayList<>(ranking);
+        int existing = indexOf(next, entry.getIsbn());
+
+        if (existing >= 0) {
+            Entry previous = next.remove(existing);
+            boolean boardFull = ranking.size() == capacity;
+            if (boardFull && entry.getCopiesSold() < previous.getCopiesSold()) {
+                // The book may have dropped below titles we are not tracking, only the table knows
+                reload();
+                return;
+            }
+        } else if (next.size() == capacity && RANKING.compare(entry, next.get(next.size() - 1)) > 0) {
+            return; // Does not make the board
+        }
+
+        int position = insertionPoint(next, entry);
+        next.add(position, entry);
+        if (next.size() > capacity) {
+            next.remove(next.size() - 1);
+        }
+        ranking = List.copyOf(next);
+    }
+
+    public List<Entry> top(int limit) {
+        if (!seeded) {
+            reload();
+        }
+        List<Entry> current = ranking;
+        return current.subList(0, Math.min(limit, current.size()));
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    // Persisted copies sold plus the sales still waiting to be flushed
+    private int live(String isbn, int persistedCopiesSold) {
+        return (int) (persistedCopiesSold + salesCounter.unflushed(isbn));
+    }
+
+    private static int indexOf(List<Entry> entries, String isbn) {
+        for (int i = 0; i < entries.size(); i++) {
+            if (entries.get(i).getIsbn().equals(isbn)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int insertionPoint(List<Entry> entries, Entry entry) {
+        int low = 0;
+        int high = entries.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (RANKING.compare(entries.get(mid), entry) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Snapshot of the fields the top-sellers endpoint renders
+    public static final class Entry {
+        private final String isbn;
+        private final String title;
+        private final double price;
+        private final int copiesSold;
+
+        private Entry(String isbn, String title, double price, int copiesSold) {
+            this.isbn = isbn;
+            this.title = title;
+            this.price = price;
+            this.copiesSold = copiesSold;
+        }
+
+        public String getIsbn() {
+            return isbn;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public double getPrice() {
+            return price;
+        }
+
+        public int getCopiesSold() {
+            return copiesSold;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.bookstore.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Trending books: add-to-cart events scored with exponential decay.
+ *
+ * Recording an event claims a slot of a ring buffer with one CAS and stores the ISBN there; no locks, no
+ * allocation, and if the ring is full the event is dropped rather than making the request wait. A scheduled
+ * drain consumes the ring on the scheduler thread and adds each event to its book's score. Scores use
+ * forward decay: an event at time t adds e^(λ(t - landmark)), so scores never need to be decayed one by one
+ * and stay comparable; the landmark moves forward (rescaling every score once) before the weights overflow.
+ * Only a bounded set of books is tracked: when it fills up, the lower half is dropped. After each drain the
+ * top of the ranking is published as an immutable list that readers take without locking.
+ */
+@Component
+public class TrendingBooks {
+
+    // Landmark is moved once weights reach e^RESCALE_EXPONENT
+    private static final double RESCALE_EXPONENT = 30;
+    // Books whose decayed score fell below this many recent adds drop out of the feed
+    private static final double MIN_SCORE = 0.01;
+
+    // Events the ring holds between drains, rounded up to a power of two
+    @Value("${bookstore.trending.buffer-size:65536}")
+    private int bufferSize;
+
+    // A score halves after this long without new adds
+    @Value("${bookstore.trending.half-life-minutes:60}")
+    private double halfLifeMinutes;
+
+    // Books scored at once; the feed serves the best capacity of them
+    @Value("${bookstore.trending.tracked:1000}")
+    private int tracked;
+
+    @Value("${bookstore.trending.capacity:100}")
+    private int capacity;
+
+    private AtomicReferenceArray<String> ring;
+    private int mask;
+    private final AtomicLong claimed = new AtomicLong();
+    // Next slot the drain reads; written by the drain only
+    private volatile long consumed;
+    private final LongAdder dropped = new LongAdder();
+
+    private double lambdaPerMs;
+    private long landmark = System.currentTimeMillis();
+    private final Map<String, Double> scores = new HashMap<>();
+    private volatile Feed feed = new Feed(landmark, List.of());
+
+    @PostConstruct
+    void init() {
+        int size = Integer.highestOneBit(Math.max(2, bufferSize - 1)) << 1;
+        ring = new AtomicReferenceArray<>(size);
+        mask = size - 1;
+        lambdaPerMs = Math.log(2) / (halfLifeMinutes * 60_000);
+    }
+
+    // Called on the request thread
+    public void record(String isbn) {
+        long slot;
+        do {
+            slot = claimed.get();
+            if (slot - consumed >= ring.length()) {
+                dropped.increment();
+                return;
+            }
+        } while (!claimed.compareAndSet(slot, slot + 1));
+        ring.set((int) (slot & mask), isbn);
+    }
+
+    @Scheduled(fixedDelayString = "${bookstore.trending.drain-interval-ms:100}")
+    public synchronized void drain() {
+        long now = System.currentTimeMillis();
+        if (lambdaPerMs * (now - landmark) > RESCALE_EXPONENT) {
+            double factor = Math.exp(-lambdaPerMs * (now - landmark));
+            scores.replaceAll((isbn, score) -> score * factor);
+            scores.values().removeIf(score -> score < MIN_SCORE);
+            landmark = now;
+        }
+        double weight = Math.exp(lambdaPerMs * (now - landmark));
+
+        int drained = 0;
+        long next = consumed;
+        while (true) {
+            int slot = (int) (next & mask);
+            String isbn = ring.get(slot);
+            if (isbn == null) {
+                break; // Empty, or claimed but not written yet; the next drain picks it up
+            }
+            ring.set(slot, null);
+            consumed = ++next;
+            if (!scores.containsKey(isbn) && scores.size() >= tracked) {
+                pruneLowerHalf();
+            }
+            scores.merge(isbn, weight, Double::sum);
+            drained++;
+        }
+
+        long lost = dropped.sumThenReset();
+        if (lost > 0) {
+            System.out.println("Trending buffer full, dropped " + lost + " add-to-cart events");
+        }
+        if (drained > 0 || lost > 0) {
+            publish();
+        }
+    }
+
+    // Up to limit ISBNs, most trending first
+    public List<String> top(int limit) {
+        Feed current = feed;
+        double decay = Math.exp(-lambdaPerMs * (System.currentTimeMillis() - current.landmark));
+        List<String> isbns = new ArrayList<>(Math.min(limit, current.entries.size()));
+        for (Map.Entry<String, Double> entry : current.entries) {
+            if (isbns.size() == limit || entry.getValue() * decay < MIN_SCORE) {
+                break;
+            }
+            isbns.add(entry.getKey());
+        }
+        return isbns;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    private void publish() {
+        List<Map.Entry<String, Double>> best = scores.entrySet().stream()
+                .sorted(Map.Entry.<String, Double>comparingByValue(Comparator.reverseOrder())
+                        .thenComparing(Map.Entry.<String, Double>comparingByKey()))
+                .limit(capacity)
+                .map(entry -> Map.entry(entry.getKey(), entry.getValue()))
+                .toList();
+        feed = new Feed(landmark, best);
+    }
+
+    private void pruneLowerHalf() {
+        List<Double> sorted = new ArrayList<>(scores.values());
+        sorted.sort(Comparator.reverseOrder());
+        double cutoff = sorted.get(sorted.size() / 2);
+        scores.values().removeIf(score -> score <= cutoff);
+    }
+
+    // Published ranking; scores are relative to landmark
+    private static final class Feed {
+        private final long landmark;
+        private final List<Map.Entry<String, Double>> entries;
+
+        private Feed(long landmark, List<Map.Entry<String, Double>> entries) {
+            this.landmark = landmark;
+            this.entries = entries;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.bookstore.benchmark;
+
+import com.example.bookstore.model.Book;
+import com.example.bookstore.service.FacetIndex;
+import com.example.bookstore.service.RatingSummaryIndex;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+// Faceted browse on a synthetic 1M book catalog: one page plus the counts of every facet value
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class FacetIndexBenchmark {
+
+    private static final int BOOKS = 1_000_000;
+    private static final int GENRES = 40;
+    private static final int PUBLISHERS = 2_000;
+
+    private FacetIndex facetIndex;
+    private RatingSummaryIndex ratingSummaryIndex;
+    private String[] isbns;
+    private final Random writes = new Random(7);
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        isbns = new String[BOOKS];
+        Object[][] rows = new Object[BOOKS][];
+        for (int i = 0; i < BOOKS; i++) {
+            isbns[i] = String.valueOf(9_780_000_000_000L + i);
+            // Skewed genres and publishers so a few values are much larger than the rest
+            rows[i] = new Object[]{
+                    isbns[i],
+                    "Genre-" + (int) (GENRES * Math.pow(random.nextDouble(), 2)),
+                    5 + random.nextDouble() * 120,
+                    1950 + random.nextInt(75),
+                    1L + (long) (PUBLISHERS * Math.pow(random.nextDouble(), 3))
+            };
+        }
+
+        ratingSummaryIndex = new RatingSummaryIndex();
+        for (int i = 0; i < BOOKS; i += 3) {
+            ratingSummaryIndex.apply(isbns[i], "Book " + i, null, 1 + random.nextInt(RatingSummaryIndex.MAX_RATING));
+        }
+
+        facetIndex = new FacetIndex();
+        ReflectionTestUtils.setField(facetIndex, "ratingSummaryIndex", ratingSummaryIndex);
+        facetIndex.load(IntStream.range(0, BOOKS).mapToObj(i -> rows[i]));
+    }
+
+    @Benchmark
+    public FacetIndex.Result unfiltered() {
+        return facetIndex.browse(null, null, null, null, null, 0, 20);
+    }
+
+    @Benchmark
+    public FacetIndex.Result genreAndPrice() {
+        return facetIndex.browse("genre-3", 1, null, null, null, 0, 20);
+    }
+
+    @Benchmark
+    public FacetIndex.Result allFacets() {
+        return facetIndex.browse("genre-3", 4, 2001, 7L, 3, 40, 20);
+    }
+
+    // A rating write lands between every two queries
+    @Benchmark
+    public FacetIndex.Result rateThenBrowse() {
+        int i = writes.nextInt(BOOKS);
+        ratingSummaryIndex.apply(isbns[i], "Book " + i, null, writes.nextInt(RatingSummaryIndex.MAX_RATING + 1));
+        facetIndex.ratingChanged(isbns[i]);
+        return facetIndex.browse(null, null, null, null, 3, 0, 20);
+    }
+
+    // One catalog edit, as a single addBook or update makes
+    @Benchmark
+    public void putOneBook() {
+        int i = writes.nextInt(BOOKS);
+        Book book = new Book();
+        book.setIsbn(isbns[i]);
+        book.setGenre("Genre-" + writes.nextInt(GENRES));
+        book.setPrice(5 + writes.nextDouble() * 120);
+        book.setYearPublished(1950 + writes.nextInt(75));
+        facetIndex.putAll(List.of(book));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(FacetIndexBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
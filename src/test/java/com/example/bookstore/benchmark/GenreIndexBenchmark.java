@@ -0,0 +1,71 @@
+package com.example.bookstore.benchmark;
+
+import com.example.bookstore.service.GenreIndex;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+// Genre lookup on a synthetic 1M book catalog: GenreIndex vs. a case-insensitive scan of every row
+// (what upper(genre) = upper(?) costs the database without an index)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class GenreIndexBenchmark {
+
+    private static final int BOOKS = 1_000_000;
+    private static final int GENRES = 40;
+
+    private String[] isbns;
+    private String[] genres;
+    private GenreIndex genreIndex;
+
+    @Param({"genre-7", "GENRE-33"})
+    private String query;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        isbns = new String[BOOKS];
+        genres = new String[BOOKS];
+        for (int i = 0; i < BOOKS; i++) {
+            isbns[i] = String.valueOf(9_780_000_000_000L + i);
+            // Skewed distribution so a few genres are much larger than the rest
+            genres[i] = "Genre-" + (int) (GENRES * Math.pow(random.nextDouble(), 2));
+        }
+
+        genreIndex = new GenreIndex();
+        genreIndex.load(IntStream.range(0, BOOKS).mapToObj(i -> new Object[]{isbns[i], genres[i]}));
+    }
+
+    @Benchmark
+    public List<String> indexLookup() {
+        return genreIndex.isbnsFor(query);
+    }
+
+    @Benchmark
+    public List<String> fullScan() {
+        List<String> matches = new ArrayList<>();
+        for (int i = 0; i < BOOKS; i++) {
+            if (genres[i].equalsIgnoreCase(query)) {
+                matches.add(isbns[i]);
+            }
+        }
+        return matches;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(GenreIndexBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
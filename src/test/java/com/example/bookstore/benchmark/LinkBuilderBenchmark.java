@@ -0,0 +1,70 @@
+package com.example.bookstore.benchmark;
+
+import com.example.bookstore.controller.BookController;
+import com.example.bookstore.controller.HomeController;
+import com.example.bookstore.controller.LinkTemplates;
+import com.example.bookstore.controller.ShoppingCartController;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.hateoas.Link;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
+
+// Per-row link cost: WebMvcLinkBuilder proxying vs. LinkTemplates string concatenation
+// Run from the IDE via main(), or: ./mvnw test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.example.bookstore.benchmark.LinkBuilderBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LinkBuilderBenchmark {
+
+    private static final String ISBN = "9780123456789";
+    private static final Long USER_ID = 42L;
+
+    private LinkTemplates.Bound links;
+
+    @Setup
+    public void setUp() {
+        links = new LinkTemplates().forCurrentRequest();
+    }
+
+    @Benchmark
+    public Link bookDetailsWithBuilder() {
+        return linkTo(methodOn(BookController.class).getBookByIsbn(ISBN)).withRel("details");
+    }
+
+    @Benchmark
+    public Link bookDetailsWithTemplate() {
+        return links.bookDetails(ISBN);
+    }
+
+    @Benchmark
+    public void cartItemLinksWithBuilder(Blackhole blackhole) {
+        blackhole.consume(linkTo(methodOn(ShoppingCartController.class).getBooksInShoppingCart(USER_ID)).withRel("shopping-cart-books"));
+        blackhole.consume(linkTo(methodOn(ShoppingCartController.class).getShoppingCartSubtotal(USER_ID)).withRel("shopping-cart-subtotal"));
+        blackhole.consume(linkTo(methodOn(ShoppingCartController.class).getShoppingCartRoot()).withRel("shopping-cart-root"));
+        blackhole.consume(linkTo(methodOn(HomeController.class).getRoot()).withRel("root"));
+    }
+
+    @Benchmark
+    public void cartItemLinksWithTemplate(Blackhole blackhole) {
+        blackhole.consume(links.cartBooks(USER_ID));
+        blackhole.consume(links.cartSubtotal(USER_ID));
+        blackhole.consume(links.cartRoot());
+        blackhole.consume(links.root());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(LinkBuilderBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
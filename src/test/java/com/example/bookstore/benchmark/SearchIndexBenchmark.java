@@ -0,0 +1,98 @@
+package com.example.bookstore.benchmark;
+
+import com.example.bookstore.search.InvertedIndex;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Top-10 full-text search on a synthetic 1M book catalog, which should stay in single-digit milliseconds:
+// a very common term, two rare terms, and a misspelling that goes through trigram expansion
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class SearchIndexBenchmark {
+
+    private static final int BOOKS = 1_000_000;
+    private static final int WORDS = 20_000;
+    private static final int NAMES = 5_000;
+    private static final long TARGET_MICROS = 10_000;
+
+    private InvertedIndex index;
+    private String query;
+
+    @Param({"common", "rare", "typo"})
+    private String kind;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        String[] words = new String[WORDS];
+        for (int i = 0; i < WORDS; i++) {
+            words[i] = randomWord(random);
+        }
+        String[] names = new String[NAMES];
+        for (int i = 0; i < NAMES; i++) {
+            names[i] = randomWord(random);
+        }
+
+        index = new InvertedIndex();
+        for (int i = 0; i < BOOKS; i++) {
+            String title = skewedWords(random, words, 3);
+            String description = skewedWords(random, words, 12);
+            List<String> authors = List.of(names[random.nextInt(NAMES)] + " " + names[random.nextInt(NAMES)]);
+            index.index(String.valueOf(9_780_000_000_000L + i), title, description, authors);
+        }
+
+        // Words are drawn with a quadratic skew, so low indexes are frequent and high ones rare
+        switch (kind) {
+            case "common" -> query = words[0];
+            case "rare" -> query = words[WORDS - 2] + " " + words[WORDS - 1];
+            default -> query = words[1] + "x";
+        }
+    }
+
+    @Benchmark
+    public List<String> search() {
+        return index.search(query, 10);
+    }
+
+    private static String skewedWords(Random random, String[] words, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            text.append(words[(int) (words.length * Math.pow(random.nextDouble(), 2))]).append(' ');
+        }
+        return text.toString();
+    }
+
+    private static String randomWord(Random random) {
+        char[] letters = new char[5 + random.nextInt(5)];
+        for (int i = 0; i < letters.length; i++) {
+            letters[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(letters);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Collection<RunResult> results = new Runner(new OptionsBuilder()
+                .include(SearchIndexBenchmark.class.getSimpleName())
+                .build()).run();
+        List<String> slow = new ArrayList<>();
+        for (RunResult result : results) {
+            if (result.getPrimaryResult().getScore() >= TARGET_MICROS) {
+                slow.add(result.getParams().getParam("kind"));
+            }
+        }
+        System.out.println(slow.isEmpty() ? "All queries within " + TARGET_MICROS + " us" : "Over target: " + slow);
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.bookstore.integration;
+
+import com.example.bookstore.model.Book;
+import com.example.bookstore.model.Publisher;
+import com.example.bookstore.repository.BookRepository;
+import com.example.bookstore.repository.PublisherRepository;
+import com.example.bookstore.service.BookImportService;
+import com.example.bookstore.service.BookService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Re-importing a book must only change the fields the feed supplies and never reset its sales
+@SpringBootTest
+@ActiveProfiles("test")
+class BookImportUpsertTest {
+
+    @Autowired
+    private BookImportService bookImportService;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private PublisherRepository publisherRepository;
+
+    private String isbn;
+    private Long publisherId;
+
+    @BeforeEach
+    void setUp() {
+        Publisher publisher = new Publisher();
+        publisher.setPublisherName("Import Press");
+        publisherId = publisherRepository.save(publisher).getPublisherId();
+
+        isbn = isbn13(String.format("978990%06d", publisherId));
+        Book book = new Book();
+        book.setIsbn(isbn);
+        book.setTitle("Original Title");
+        book.setDescription("Original description");
+        book.setGenre("Import");
+        book.setPrice(24.5);
+        book.setYearPublished(2001);
+        book.setCopiesSold(42);
+        book.setPublisher(publisher);
+        bookService.addBook(book);
+    }
+
+    @Test
+    void partialRow_ShouldKeepFieldsItLeavesOut() throws Exception {
+        String progress = importNdjson("{\"isbn\":\"" + isbn + "\",\"title\":\"New Title\"}");
+
+        assertTrue(progress.contains("\"imported\":1"), progress);
+        Book stored = bookRepository.findWithPublisherByIsbns(List.of(isbn)).get(0);
+        assertEquals("New Title", stored.getTitle());
+        assertEquals("Original description", stored.getDescription());
+        assertEquals("Import", stored.getGenre());
+        assertEquals(24.5, stored.getPrice(), 1e-9);
+        assertEquals(2001, stored.getYearPublished());
+        assertEquals(42, stored.getCopiesSold());
+        assertEquals(publisherId, stored.getPublisher().getPublisherId());
+    }
+
+    @Test
+    void copiesSold_ShouldOnlySeedNewBooks() throws Exception {
+        String newIsbn = isbn13(String.format("978991%06d", publisherId));
+        importNdjson("{\"isbn\":\"" + isbn + "\",\"title\":\"Original Title\",\"price\":19.99,\"copies_sold\":7}\n"
+                + "{\"isbn\":\"" + newIsbn + "\",\"title\":\"New Book\",\"copies_sold\":7}");
+
+        Book existing = bookRepository.findById(isbn).orElseThrow();
+        assertEquals(19.99, existing.getPrice(), 1e-9);
+        assertEquals(42, existing.getCopiesSold());
+        Book inserted = bookRepository.findById(newIsbn).orElseThrow();
+        assertEquals(7, inserted.getCopiesSold());
+        assertEquals(0, inserted.getPrice(), 1e-9);
+    }
+
+    private String importNdjson(String body) throws Exception {
+        ByteArrayOutputStream progress = new ByteArrayOutputStream();
+        bookImportService.importBooks(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)),
+                BookImportService.Format.NDJSON, progress);
+        return progress.toString(StandardCharsets.UTF_8);
+    }
+
+    // Appends the ISBN-13 check digit to 12 digits
+    private static String isbn13(String digits) {
+        int sum = 0;
+        for (int i = 0; i < 12; i++) {
+            sum += (digits.charAt(i) - '0') * (i % 2 == 0 ? 1 : 3);
+        }
+        return digits + (10 - sum % 10) % 10;
+    }
+}
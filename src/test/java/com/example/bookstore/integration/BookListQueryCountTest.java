@@ -0,0 +1,111 @@
+package com.example.bookstore.integration;
+
+import com.example.bookstore.model.Book;
+import com.example.bookstore.model.Publisher;
+import com.example.bookstore.repository.PublisherRepository;
+import com.example.bookstore.service.BookService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import javax.persistence.EntityManagerFactory;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// List endpoints should issue a single projection query each and never hydrate Book entities
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class BookListQueryCountTest {
+
+    private static final String GENRE = "Query Count";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private PublisherRepository publisherRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        Publisher publisher = new Publisher();
+        publisher.setPublisherName("Query Count Press");
+        publisher = publisherRepository.save(publisher);
+
+        // Through the service so the genre index and leaderboard see the books too
+        for (int i = 0; i < 3; i++) {
+            Book book = new Book();
+            book.setIsbn("978000000100" + i);
+            book.setTitle("Query Count Book " + i);
+            book.setGenre(GENRE);
+            book.setPrice(20.0 + i);
+            book.setCopiesSold(1_000_000 + i);
+            book.setPublisher(publisher);
+            bookService.addBook(book);
+        }
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void streamingCatalog_ShouldUseOneQueryAndNoEntities() throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/books"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk());
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    void catalogPage_ShouldUseOneQueryAndNoEntities() throws Exception {
+        mockMvc.perform(get("/api/books").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.books", hasSize(2)));
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    void booksByGenre_ShouldUseOneQueryAndNoEntities() throws Exception {
+        mockMvc.perform(get("/api/books/genre/{genre}", GENRE))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(3)));
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    void topSellers_ShouldBeServedWithoutQueries() throws Exception {
+        mockMvc.perform(get("/api/books/top-sellers").param("limit", "3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].isbn").value("9780000001002"));
+
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.bookstore.integration;
+
+import com.example.bookstore.model.Book;
+import com.example.bookstore.service.BookService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Multi-get returns books in request order, cached or not, and names the ISBNs it could not find
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class BookMultiGetTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private BookService bookService;
+
+    private final List<String> isbns = new ArrayList<>();
+    private String missingIsbn;
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < 3; i++) {
+            Book book = new Book();
+            book.setIsbn(TestFixtures.uniqueIsbn());
+            book.setTitle("Multi Get Book " + i);
+            book.setPrice(10.0 + i);
+            bookService.addBook(book);
+            isbns.add(book.getIsbn());
+        }
+        // Handed out but never saved
+        missingIsbn = TestFixtures.uniqueIsbn();
+    }
+
+    @Test
+    void multiGet_ShouldKeepRequestOrderAndReportMissing() throws Exception {
+        // The middle book is cached, the others come from the database
+        bookService.getBookByISBN(isbns.get(1));
+
+        mockMvc.perform(get("/api/books")
+                        .param("isbn", isbns.get(2), missingIsbn, " " + isbns.get(0) + " ", isbns.get(1), isbns.get(2)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.books[*].isbn").value(contains(isbns.get(2), isbns.get(0), isbns.get(1))))
+                .andExpect(jsonPath("$.missing").value(contains(missingIsbn)));
+    }
+
+    @Test
+    void multiGet_ShouldAcceptCommaSeparatedIsbns() throws Exception {
+        mockMvc.perform(get("/api/books").param("isbn", isbns.get(1) + "," + isbns.get(0)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.books[*].isbn").value(contains(isbns.get(1), isbns.get(0))))
+                .andExpect(jsonPath("$.missing").value(empty()));
+    }
+
+    @Test
+    void batchPost_ShouldKeepRequestOrderAndReportMissing() throws Exception {
+        String body = "[\"" + missingIsbn + "\",\"" + isbns.get(1) + "\",\"" + isbns.get(0) + "\"]";
+        mockMvc.perform(post("/api/books/batch").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.books[*].isbn").value(contains(isbns.get(1), isbns.get(0))))
+                .andExpect(jsonPath("$.missing").value(contains(missingIsbn)));
+    }
+
+    @Test
+    void isbnAndLimitTogether_ShouldBeRejected() throws Exception {
+        mockMvc.perform(get("/api/books").param("isbn", isbns.get(0)).param("limit", "2"))
+                .andExpect(status().isBadRequest());
+    }
+}
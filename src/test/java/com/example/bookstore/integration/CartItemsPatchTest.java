@@ -0,0 +1,188 @@
+package com.example.bookstore.integration;
+
+import com.example.bookstore.cart.CartStore;
+import com.example.bookstore.cart.WriteBehindCartStore;
+import com.example.bookstore.model.Book;
+import com.example.bookstore.repository.BookRepository;
+import com.example.bookstore.repository.ShoppingCartJdbcRepository;
+import com.example.bookstore.repository.UserProfileRepository;
+import com.example.bookstore.service.ShoppingCartService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.util.Map;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// PATCH /{userId}/items folds its operations in order, rejects malformed ones and unknown books without touching
+// the cart, and answers with the new subtotal, with either cart store
+class CartItemsPatchTest {
+
+    @Nested
+    @SpringBootTest(properties = "bookstore.cart.store=write-through")
+    @AutoConfigureMockMvc
+    @ActiveProfiles("test")
+    class WriteThrough extends Scenarios {
+    }
+
+    @Nested
+    @SpringBootTest(properties = {"bookstore.cart.store=write-behind", "bookstore.cart.flush-interval-ms=5",
+            "bookstore.cart.idle-ttl-minutes=0"})
+    @AutoConfigureMockMvc
+    @ActiveProfiles("test")
+    class WriteBehind extends Scenarios {
+    }
+
+    abstract static class Scenarios {
+
+        @Autowired
+        private MockMvc mockMvc;
+
+        @Autowired
+        private ShoppingCartService shoppingCartService;
+
+        @Autowired
+        private CartStore cartStore;
+
+        @Autowired
+        private UserProfileRepository userProfileRepository;
+
+        @Autowired
+        private BookRepository bookRepository;
+
+        @Autowired
+        private ShoppingCartJdbcRepository cartJdbcRepository;
+
+        private Long userId;
+        private String isbn;
+        private String otherIsbn;
+        private String thirdIsbn;
+
+        @BeforeEach
+        void setUp() {
+            userId = TestFixtures.saveUser(userProfileRepository, "cart-items-").getUserId();
+
+            isbn = saveBook(12.34);
+            otherIsbn = saveBook(5.00);
+            thirdIsbn = saveBook(8.00);
+
+            shoppingCartService.addBookToShoppingCart(userId, isbn);
+            shoppingCartService.addBookToShoppingCart(userId, thirdIsbn);
+        }
+
+        @Test
+        void operations_ShouldFoldInOrder() throws Exception {
+            String body = "["
+                    + delta(isbn, 2) + ","            // 1 -> 3
+                    + quantity(isbn, 5) + ","         // 3 -> 5
+                    + delta(" " + isbn + " ", -1) + "," // 5 -> 4, padded ISBNs are the same book
+                    + delta(otherIsbn, 3) + ","       // 0 -> 3
+                    + quantity(otherIsbn, 0) + ","    // 3 -> 0, never stored
+                    + delta(thirdIsbn, -5)            // 1 -> 0, removed rather than negative
+                    + "]";
+
+            patchItems(body)
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.items[*].book.isbn").value(contains(isbn)))
+                    .andExpect(jsonPath("$.items[*].quantity").value(contains(4)))
+                    .andExpect(jsonPath("$.subtotal").value(closeTo(4 * 12.34, 1e-9)));
+
+            // Set first, then added to: the order of the operations matters
+            patchItems("[" + quantity(otherIsbn, 2) + "," + delta(otherIsbn, 1) + "]")
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.items[*].book.isbn").value(containsInAnyOrder(isbn, otherIsbn)))
+                    .andExpect(jsonPath("$.subtotal").value(closeTo(4 * 12.34 + 3 * 5.00, 1e-9)));
+
+            mockMvc.perform(get("/api/shopping-cart/{userId}/subtotal", userId))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.subtotal").value(closeTo(4 * 12.34 + 3 * 5.00, 1e-9)));
+
+            flush();
+            assertEquals(Map.of(isbn, 4, otherIsbn, 3), cartJdbcRepository.loadCart(userId).orElseThrow().getQuantities());
+            assertEquals(4 * 1234L + 3 * 500L, cartJdbcRepository.loadCart(userId).orElseThrow().getSubtotalCents());
+        }
+
+        @Test
+        void malformedOperations_ShouldBeRejectedWithoutChangingTheCart() throws Exception {
+            patchItems("[]").andExpect(status().isBadRequest());
+            // Both delta and quantity, or neither
+            patchItems("[" + delta(otherIsbn, 1) + ",{\"isbn\":\"" + isbn + "\",\"delta\":1,\"quantity\":2}]")
+                    .andExpect(status().isBadRequest());
+            patchItems("[" + delta(otherIsbn, 1) + ",{\"isbn\":\"" + isbn + "\"}]")
+                    .andExpect(status().isBadRequest());
+            patchItems("[" + delta(otherIsbn, 1) + "," + quantity(isbn, -1) + "]")
+                    .andExpect(status().isBadRequest());
+            patchItems("[" + delta(otherIsbn, 1) + ",{\"delta\":1}]")
+                    .andExpect(status().isBadRequest());
+            patchItems("[" + delta(otherIsbn, 1) + "," + delta(" ", 1) + "]")
+                    .andExpect(status().isBadRequest());
+
+            assertUnchanged();
+        }
+
+        @Test
+        void unknownBooks_ShouldBeListedWithoutChangingTheCart() throws Exception {
+            // Handed out but never saved
+            String missing = TestFixtures.uniqueIsbn();
+            String otherMissing = TestFixtures.uniqueIsbn();
+
+            patchItems("[" + delta(otherMissing, 1) + "," + delta(isbn, 1) + "," + quantity(missing, 2) + ","
+                    + delta(otherMissing, 1) + "]")
+                    .andExpect(status().isNotFound())
+                    .andExpect(jsonPath("$.message").value("Books not found: " + otherMissing + ", " + missing));
+
+            assertUnchanged();
+        }
+
+        private void assertUnchanged() throws Exception {
+            mockMvc.perform(get("/api/shopping-cart/{userId}/subtotal", userId))
+                    .andExpect(jsonPath("$.subtotal").value(closeTo(12.34 + 8.00, 1e-9)));
+            flush();
+            assertEquals(Map.of(isbn, 1, thirdIsbn, 1), cartJdbcRepository.loadCart(userId).orElseThrow().getQuantities());
+        }
+
+        private ResultActions patchItems(String body) throws Exception {
+            return mockMvc.perform(patch("/api/shopping-cart/{userId}/items", userId)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(body));
+        }
+
+        // The write-through store is already in the database
+        private void flush() {
+            if (cartStore instanceof WriteBehindCartStore writeBehind) {
+                writeBehind.flush();
+            }
+        }
+
+        private String saveBook(double price) {
+            Book book = new Book();
+            book.setIsbn(TestFixtures.uniqueIsbn());
+            book.setTitle("Cart Items Book " + book.getIsbn());
+            book.setPrice(price);
+            return bookRepository.save(book).getIsbn();
+        }
+
+        private static String delta(String isbn, int delta) {
+            return "{\"isbn\":\"" + isbn + "\",\"delta\":" + delta + "}";
+        }
+
+        private static String quantity(String isbn, int quantity) {
+            return "{\"isbn\":\"" + isbn + "\",\"quantity\":" + quantity + "}";
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.bookstore.integration;
+
+import com.example.bookstore.dto.OrderDTO;
+import com.example.bookstore.model.Book;
+import com.example.bookstore.repository.BookRepository;
+import com.example.bookstore.repository.UserProfileRepository;
+import com.example.bookstore.service.OrderService;
+import com.example.bookstore.service.SalesCounter;
+import com.example.bookstore.service.ShoppingCartService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Many carts sharing the same books, filled in different orders, must all check out without lost sales
+@SpringBootTest
+@ActiveProfiles("test")
+class CheckoutConcurrencyTest {
+
+    private static final int THREADS = 16;
+    private static final int USERS = 200;
+    private static final int BOOKS = 8;
+
+    @Autowired
+    private ShoppingCartService shoppingCartService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private SalesCounter salesCounter;
+
+    @Autowired
+    private UserProfileRepository userProfileRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final List<Long> userIds = new ArrayList<>();
+    private final List<String> isbns = new ArrayList<>();
+    private final Map<String, Integer> expectedSold = new HashMap<>();
+    private final Map<Long, Long> expectedTotalCents = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < BOOKS; i++) {
+            Book book = new Book();
+            book.setIsbn(TestFixtures.uniqueIsbn());
+            book.setTitle("Checkout Book " + i);
+            book.setPrice(10.00 + i);
+            isbns.add(bookRepository.save(book).getIsbn());
+        }
+
+        // Each cart holds a random subset of the books, added in a random order
+        Random random = new Random(42);
+        for (int u = 0; u < USERS; u++) {
+            Long userId = TestFixtures.saveUser(userProfileRepository, "checkout-" + u + "-").getUserId();
+            userIds.add(userId);
+
+            List<String> picks = new ArrayList<>(isbns);
+            Collections.shuffle(picks, random);
+            long totalCents = 0;
+            for (String isbn : picks.subList(0, 1 + random.nextInt(BOOKS))) {
+                int copies = 1 + random.nextInt(3);
+                for (int c = 0; c < copies; c++) {
+                    shoppingCartService.addBookToShoppingCart(userId, isbn);
+                }
+                expectedSold.merge(isbn, copies, Integer::sum);
+                totalCents += copies * (1000L + 100L * isbns.indexOf(isbn));
+            }
+            expectedTotalCents.put(userId, totalCents);
+        }
+    }
+
+    @Test
+    void concurrentCheckouts_ShouldAllCompleteAndCountEverySale() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        Map<Long, Future<OrderDTO>> orders = new HashMap<>();
+        try {
+            for (Long userId : userIds) {
+                orders.put(userId, executor.submit(() -> {
+                    start.await();
+                    return orderService.checkout(userId);
+                }));
+            }
+            start.countDown();
+            for (Map.Entry<Long, Future<OrderDTO>> order : orders.entrySet()) {
+                // Rethrows any failure from the worker
+                assertEquals(expectedTotalCents.get(order.getKey()) / 100.0, order.getValue().get().getTotal(), 1e-9);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        salesCounter.flush();
+        for (String isbn : isbns) {
+            Integer copiesSold = jdbcTemplate.queryForObject("SELECT copies_sold FROM books WHERE isbn = ?", Integer.class, isbn);
+            assertEquals(expectedSold.getOrDefault(isbn, 0), copiesSold, "copies sold of " + isbn);
+        }
+        for (Long userId : userIds) {
+            assertTrue(shoppingCartService.getBooksInShoppingCart(userId).isEmpty(), "cart of user " + userId);
+            assertEquals(0.0, shoppingCartService.getShoppingCartSubtotal(userId).getSubtotal());
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.bookstore.integration;
+
+import com.example.bookstore.model.Book;
+import com.example.bookstore.model.DiscountJob;
+import com.example.bookstore.model.Publisher;
+import com.example.bookstore.repository.BookRepository;
+import com.example.bookstore.repository.DiscountJobRepository;
+import com.example.bookstore.repository.PublisherRepository;
+import com.example.bookstore.repository.UserProfileRepository;
+import com.example.bookstore.service.BookService;
+import com.example.bookstore.service.DiscountJobService;
+import com.example.bookstore.service.FacetIndex;
+import com.example.bookstore.service.ShoppingCartService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// A discount job stopped between chunks resumes after its checkpoint and prices every book exactly once
+@SpringBootTest(properties = {"bookstore.discount.chunk-size=2", "bookstore.discount.chunk-pause-ms=300"})
+@ActiveProfiles("test")
+class DiscountJobResumeTest {
+
+    private static final double PRICE = 25.00;
+    private static final double DISCOUNTED = 17.50;
+    // PRICE_BANDS index of 10-20, where the discount moves the books from 20-30
+    private static final int DISCOUNTED_BAND = 1;
+
+    @Autowired
+    private DiscountJobService discountJobService;
+
+    @Autowired
+    private DiscountJobRepository discountJobRepository;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private PublisherRepository publisherRepository;
+
+    @Autowired
+    private ShoppingCartService shoppingCartService;
+
+    @Autowired
+    private UserProfileRepository userProfileRepository;
+
+    @Autowired
+    private FacetIndex facetIndex;
+
+    private Long publisherId;
+    private Long pendingPublisherId;
+    private final List<String> isbns = new ArrayList<>();
+    private final List<String> pendingIsbns = new ArrayList<>();
+    private Long userId;
+
+    @BeforeEach
+    void setUp() {
+        publisherId = savePublisher("Resume Press", 5, isbns);
+        pendingPublisherId = savePublisher("Pending Press", 2, pendingIsbns);
+
+        // One book of the first chunk and one of a later chunk
+        userId = TestFixtures.saveUser(userProfileRepository, "discount-resume-").getUserId();
+        shoppingCartService.addBookToShoppingCart(userId, isbns.get(0));
+        shoppingCartService.addBookToShoppingCart(userId, isbns.get(3));
+        assertEquals(2 * PRICE, subtotal(), 1e-9);
+    }
+
+    @Test
+    void stoppedJob_ShouldResumeAfterItsCheckpoint() throws Exception {
+        DiscountJob job = discountJobService.submit(30, publisherId);
+
+        // Stop it the way shutdown does: an interrupt while it pauses after its first chunk
+        await(() -> discountJobRepository.findById(job.getJobId()).orElseThrow().getBooksUpdated() == 2);
+        Thread worker = discountThreadIn(Thread.State.TIMED_WAITING);
+        worker.interrupt();
+        await(() -> worker.getState() == Thread.State.WAITING);
+
+        // The first chunk and its checkpoint were committed together, nothing after it
+        DiscountJob stopped = discountJobRepository.findById(job.getJobId()).orElseThrow();
+        assertEquals(DiscountJob.Status.RUNNING, stopped.getStatus());
+        assertEquals(isbns.get(1), stopped.getLastIsbn().trim());
+        assertEquals(2, stopped.getBooksUpdated());
+        assertPrices(isbns.subList(0, 2), DISCOUNTED);
+        assertPrices(isbns.subList(2, 5), PRICE);
+        assertEquals(DISCOUNTED + PRICE, subtotal(), 1e-9);
+
+        // Queued before the stop but never started
+        DiscountJob pending = new DiscountJob();
+        pending.setPublisherId(pendingPublisherId);
+        pending.setPercentage(30);
+        pending.setStatus(DiscountJob.Status.PENDING);
+        pending.setChunkSize(2);
+        pending.setCreatedAt(Instant.now());
+        pending.setUpdatedAt(pending.getCreatedAt());
+        Long pendingJobId = discountJobRepository.save(pending).getJobId();
+
+        discountJobService.resumeUnfinished();
+        await(() -> isCompleted(job.getJobId()) && isCompleted(pendingJobId));
+
+        assertEquals(5, discountJobRepository.findById(job.getJobId()).orElseThrow().getBooksUpdated());
+        assertEquals(2, discountJobRepository.findById(pendingJobId).orElseThrow().getBooksUpdated());
+        assertPrices(isbns, DISCOUNTED);
+        assertPrices(pendingIsbns, DISCOUNTED);
+
+        // Every chunk invalidated the cart subtotal, the book cache and the price facet
+        assertEquals(2 * DISCOUNTED, subtotal(), 1e-9);
+        assertEquals(DISCOUNTED, bookService.getBookByISBN(isbns.get(3)).getPrice(), 1e-9);
+        assertEquals(5, facetIndex.browse(null, DISCOUNTED_BAND, null, publisherId, null, 0, 10).getTotal());
+        assertEquals(2, facetIndex.browse(null, DISCOUNTED_BAND, null, pendingPublisherId, null, 0, 10).getTotal());
+
+        // Completed jobs are not picked up again
+        discountJobService.resumeUnfinished();
+        Thread.sleep(500);
+        assertPrices(isbns, DISCOUNTED);
+        assertPrices(pendingIsbns, DISCOUNTED);
+    }
+
+    private Long savePublisher(String name, int books, List<String> into) {
+        Publisher publisher = new Publisher();
+        publisher.setPublisherName(name);
+        publisher = publisherRepository.save(publisher);
+        for (int i = 0; i < books; i++) {
+            // Through the service so the facet index knows the books
+            Book book = new Book();
+            book.setIsbn(TestFixtures.uniqueIsbn());
+            book.setTitle(name + " Book " + i);
+            book.setPrice(PRICE);
+            book.setPublisher(publisher);
+            bookService.addBook(book);
+            into.add(book.getIsbn());
+        }
+        return publisher.getPublisherId();
+    }
+
+    private double subtotal() {
+        return shoppingCartService.getShoppingCartSubtotal(userId).getSubtotal();
+    }
+
+    private boolean isCompleted(Long jobId) {
+        return discountJobRepository.findById(jobId).orElseThrow().getStatus() == DiscountJob.Status.COMPLETED;
+    }
+
+    private void assertPrices(List<String> books, double expected) {
+        for (String isbn : books) {
+            assertEquals(expected, bookRepository.findById(isbn).orElseThrow().getPrice(), 1e-9, "price of " + isbn);
+        }
+    }
+
+    // Other cached contexts have idle job threads of their own, only this one is pausing between chunks
+    private static Thread discountThreadIn(Thread.State state) throws InterruptedException {
+        Thread[] found = new Thread[1];
+        await(() -> {
+            for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                if (thread.getName().equals("discount-job") && thread.getState() == state) {
+                    found[0] = thread;
+                    return true;
+                }
+            }
+            return false;
+        });
+        return found[0];
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 20_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out waiting for the discount job");
+            Thread.sleep(5);
+        }
+    }
+}
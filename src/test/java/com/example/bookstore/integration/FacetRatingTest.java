@@ -0,0 +1,87 @@
+package com.example.bookstore.integration;
+
+import com.example.bookstore.dto.RatingRequestDTO;
+import com.example.bookstore.model.Book;
+import com.example.bookstore.repository.UserProfileRepository;
+import com.example.bookstore.service.BookService;
+import com.example.bookstore.service.FacetIndex;
+import com.example.bookstore.service.RatingsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Every rating write must move its book between the minimum rating sets without a rebuild
+@SpringBootTest
+@ActiveProfiles("test")
+class FacetRatingTest {
+
+    @Autowired
+    private FacetIndex facetIndex;
+
+    @Autowired
+    private RatingsService ratingsService;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private UserProfileRepository userProfileRepository;
+
+    private String genre;
+    private String isbn;
+    private Long firstUserId;
+    private Long secondUserId;
+
+    @BeforeEach
+    void setUp() {
+        firstUserId = TestFixtures.saveUser(userProfileRepository, "facet-rating-a-").getUserId();
+        secondUserId = TestFixtures.saveUser(userProfileRepository, "facet-rating-b-").getUserId();
+
+        genre = "Facet Rating " + firstUserId;
+        Book book = new Book();
+        book.setIsbn(TestFixtures.uniqueIsbn());
+        book.setTitle("Facet Rating Book");
+        book.setGenre(genre);
+        book.setPrice(12.0);
+        bookService.addBook(book);
+        isbn = book.getIsbn();
+    }
+
+    @Test
+    void ratingWrites_ShouldMoveTheBookBetweenLevels() {
+        assertEquals(Map.of(), browse(1).getFacets().get("minRating"));
+
+        ratingsService.submitRating(isbn, request(firstUserId, 5));
+        assertEquals(List.of(isbn), browse(5).getIsbns());
+        assertEquals(Map.of("1", 1, "2", 1, "3", 1, "4", 1, "5", 1), browse(1).getFacets().get("minRating"));
+
+        // Average 3.5: passes 3, no longer 4 or 5
+        ratingsService.submitRating(isbn, request(secondUserId, 2));
+        assertEquals(List.of(isbn), browse(3).getIsbns());
+        assertEquals(List.of(), browse(4).getIsbns());
+        assertEquals(Map.of("1", 1, "2", 1, "3", 1), browse(1).getFacets().get("minRating"));
+
+        // A re-rate to average 4.5
+        ratingsService.submitRating(isbn, request(secondUserId, 4));
+        assertEquals(List.of(isbn), browse(4).getIsbns());
+        assertEquals(List.of(), browse(5).getIsbns());
+    }
+
+    private FacetIndex.Result browse(int minRating) {
+        return facetIndex.browse(genre, null, null, null, minRating, 0, 10);
+    }
+
+    private RatingRequestDTO request(Long userId, int rating) {
+        RatingRequestDTO request = new RatingRequestDTO();
+        request.setUserId(userId);
+        request.setRating(rating);
+        return request;
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.bookstore.integration;
+
+import com.example.bookstore.dto.RatingRequestDTO;
+import com.example.bookstore.model.Book;
+import com.example.bookstore.model.RatingsId;
+import com.example.bookstore.repository.BookRatingSummaryRepository;
+import com.example.bookstore.repository.RatingsRepository;
+import com.example.bookstore.repository.UserProfileRepository;
+import com.example.bookstore.service.BookService;
+import com.example.bookstore.service.RatingAggregator;
+import com.example.bookstore.service.RatingSummaryIndex;
+import com.example.bookstore.service.RatingsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+// Parallel re-rates by one user must leave exactly that user's final rating in the summaries
+@SpringBootTest
+@ActiveProfiles("test")
+class RatingConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int RATES_PER_THREAD = 20;
+
+    @Autowired
+    private RatingsService ratingsService;
+
+    @Autowired
+    private RatingSummaryIndex ratingSummaryIndex;
+
+    @Autowired
+    private RatingAggregator ratingAggregator;
+
+    @Autowired
+    private RatingsRepository ratingsRepository;
+
+    @Autowired
+    private BookRatingSummaryRepository bookRatingSummaryRepository;
+
+    @Autowired
+    private UserProfileRepository userProfileRepository;
+
+    @Autowired
+    private BookService bookService;
+
+    private Long userId;
+    private String isbn;
+
+    @BeforeEach
+    void setUp() {
+        userId = TestFixtures.saveUser(userProfileRepository, "rating-concurrency-").getUserId();
+
+        Book book = new Book();
+        book.setIsbn(TestFixtures.uniqueIsbn());
+        book.setTitle("Concurrency Rating Book");
+        book.setPrice(10.0);
+        bookService.addBook(book);
+        isbn = book.getIsbn();
+
+        ratingsService.submitRating(isbn, request(3));
+    }
+
+    @Test
+    void parallelRerates_ShouldKeepOneRatingInTheSummaries() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                int offset = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < RATES_PER_THREAD; i++) {
+                        ratingsService.submitRating(isbn, request((offset + i) % (RatingSummaryIndex.MAX_RATING + 1)));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(); // rethrows any failure from the worker
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        int stored = ratingsRepository.findById(new RatingsId(isbn, userId)).orElseThrow().getRating();
+        long[] expected = new long[RatingSummaryIndex.MAX_RATING + 1];
+        expected[stored] = 1;
+        assertArrayEquals(expected, ratingSummaryIndex.getSummary(isbn).getHistogram());
+
+        ratingAggregator.flush();
+        long[][] materialized = new long[1][];
+        bookRatingSummaryRepository.forEach((summaryIsbn, title, histogram) -> {
+            if (summaryIsbn.trim().equals(isbn)) {
+                materialized[0] = histogram;
+            }
+        });
+        assertArrayEquals(expected, materialized[0]);
+    }
+
+    private RatingRequestDTO request(int rating) {
+        RatingRequestDTO request = new RatingRequestDTO();
+        request.setUserId(userId);
+        request.setRating(rating);
+        return request;
+    }
+}
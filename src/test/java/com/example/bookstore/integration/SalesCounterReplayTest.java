@@ -0,0 +1,99 @@
+package com.example.bookstore.integration;
+
+import com.example.bookstore.dto.OrderLineDTO;
+import com.example.bookstore.model.Book;
+import com.example.bookstore.repository.BookBatchRepository;
+import com.example.bookstore.repository.BookRepository;
+import com.example.bookstore.repository.OrderJdbcRepository;
+import com.example.bookstore.repository.UserProfileRepository;
+import com.example.bookstore.service.OrderService;
+import com.example.bookstore.service.SalesCounter;
+import com.example.bookstore.service.ShoppingCartService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Sales committed to order_lines but lost from the counter's memory must reach copies_sold on replay, once.
+// Only the test flushes: a scheduled flush between replay() and unflushed() would empty the counter
+@SpringBootTest(properties = "bookstore.sales.flush-interval-ms=3600000")
+@ActiveProfiles("test")
+class SalesCounterReplayTest {
+
+    @Autowired
+    private ShoppingCartService shoppingCartService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private SalesCounter salesCounter;
+
+    @Autowired
+    private OrderJdbcRepository orderJdbcRepository;
+
+    @Autowired
+    private BookBatchRepository bookBatchRepository;
+
+    @Autowired
+    private UserProfileRepository userProfileRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long userId;
+    private String isbn;
+
+    @BeforeEach
+    void setUp() {
+        userId = TestFixtures.saveUser(userProfileRepository, "sales-replay-").getUserId();
+
+        Book book = new Book();
+        book.setIsbn(TestFixtures.uniqueIsbn());
+        book.setTitle("Replay Book");
+        book.setPrice(8.00);
+        isbn = bookRepository.save(book).getIsbn();
+    }
+
+    @Test
+    void replay_ShouldCountLostOrdersExactlyOnce() {
+        shoppingCartService.addBookToShoppingCart(userId, isbn);
+        shoppingCartService.addBookToShoppingCart(userId, isbn);
+        orderService.checkout(userId);
+        salesCounter.flush();
+        assertEquals(2, copiesSold());
+
+        // A checkout that committed but whose sales never reached the counter, as after a crash
+        long lostOrderId = orderJdbcRepository.insertOrder(userId, 2400, Instant.now());
+        orderJdbcRepository.insertLines(lostOrderId, List.of(new OrderLineDTO(isbn, "Replay Book", 3, 8.00)));
+        salesCounter.flush();
+        assertEquals(2, copiesSold());
+
+        salesCounter.replay();
+        assertEquals(3, salesCounter.unflushed(isbn));
+        salesCounter.flush();
+        assertEquals(5, copiesSold());
+        assertTrue(bookBatchRepository.findSalesWatermark() >= lostOrderId);
+
+        // Everything up to the watermark is in copies_sold already
+        salesCounter.replay();
+        salesCounter.flush();
+        assertEquals(5, copiesSold());
+        assertEquals(0, salesCounter.unflushed(isbn));
+    }
+
+    private int copiesSold() {
+        return jdbcTemplate.queryForObject("SELECT copies_sold FROM books WHERE isbn = ?", Integer.class, isbn);
+    }
+}
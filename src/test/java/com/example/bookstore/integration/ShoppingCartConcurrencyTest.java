@@ -0,0 +1,142 @@
+package com.example.bookstore.integration;
+
+import com.example.bookstore.cart.CartContents;
+import com.example.bookstore.cart.CartStore;
+import com.example.bookstore.cart.WriteBehindCartStore;
+import com.example.bookstore.model.Book;
+import com.example.bookstore.repository.BookRepository;
+import com.example.bookstore.repository.ShoppingCartJdbcRepository;
+import com.example.bookstore.repository.ShoppingCartRepository;
+import com.example.bookstore.repository.UserProfileRepository;
+import com.example.bookstore.service.ShoppingCartService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Parallel adds to one cart must neither lose increments nor create a second cart, in the database itself,
+// with either cart store
+class ShoppingCartConcurrencyTest {
+
+    private static final int THREADS = 16;
+    private static final int ADDS_PER_THREAD = 25;
+
+    @Nested
+    @SpringBootTest(properties = "bookstore.cart.store=write-through")
+    @ActiveProfiles("test")
+    class WriteThrough extends Scenarios {
+    }
+
+    // Flushes and idle evictions run throughout
+    @Nested
+    @SpringBootTest(properties = {"bookstore.cart.store=write-behind", "bookstore.cart.flush-interval-ms=5",
+            "bookstore.cart.idle-ttl-minutes=0"})
+    @ActiveProfiles("test")
+    class WriteBehind extends Scenarios {
+    }
+
+    abstract static class Scenarios {
+
+        @Autowired
+        private ShoppingCartService shoppingCartService;
+
+        @Autowired
+        private CartStore cartStore;
+
+        @Autowired
+        private UserProfileRepository userProfileRepository;
+
+        @Autowired
+        private BookRepository bookRepository;
+
+        @Autowired
+        private ShoppingCartRepository cartRepository;
+
+        @Autowired
+        private ShoppingCartJdbcRepository cartJdbcRepository;
+
+        private Long userId;
+        private String isbn;
+        private String otherIsbn;
+
+        @BeforeEach
+        void setUp() {
+            userId = TestFixtures.saveUser(userProfileRepository, "cart-concurrency-").getUserId();
+
+            isbn = saveBook(TestFixtures.uniqueIsbn(), 12.34);
+            otherIsbn = saveBook(TestFixtures.uniqueIsbn(), 5.00);
+        }
+
+        @Test
+        void parallelAdds_ShouldYieldExactQuantityAndOneCart() throws Exception {
+            ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            try {
+                for (int t = 0; t < THREADS; t++) {
+                    futures.add(executor.submit(() -> {
+                        start.await();
+                        for (int i = 0; i < ADDS_PER_THREAD; i++) {
+                            shoppingCartService.addBookToShoppingCart(userId, isbn);
+                        }
+                        return null;
+                    }));
+                }
+                start.countDown();
+                for (Future<?> future : futures) {
+                    future.get(); // rethrows any failure from the worker
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+            flush();
+
+            int expected = THREADS * ADDS_PER_THREAD;
+            CartContents stored = cartJdbcRepository.loadCart(userId).orElseThrow();
+            assertEquals(Map.of(isbn, expected), stored.getQuantities());
+            assertEquals(1, cartRepository.countByUserUserId(userId));
+            assertEquals(expected * 1234L, stored.getSubtotalCents());
+            assertEquals(expected * 12.34, shoppingCartService.getShoppingCartSubtotal(userId).getSubtotal(), 1e-9);
+        }
+
+        @Test
+        void removedBook_ShouldBeDeletedFromTheDatabase() {
+            shoppingCartService.addBookToShoppingCart(userId, isbn);
+            shoppingCartService.addBookToShoppingCart(userId, otherIsbn);
+            flush();
+
+            shoppingCartService.removeBookFromShoppingCart(userId, isbn);
+            flush();
+
+            assertEquals(Map.of(otherIsbn, 1), cartJdbcRepository.loadCart(userId).orElseThrow().getQuantities());
+            assertEquals(5.00, shoppingCartService.getShoppingCartSubtotal(userId).getSubtotal(), 1e-9);
+        }
+
+        // The write-through store is already in the database
+        private void flush() {
+            if (cartStore instanceof WriteBehindCartStore writeBehind) {
+                writeBehind.flush();
+            }
+        }
+
+        private String saveBook(String isbn, double price) {
+            Book book = new Book();
+            book.setIsbn(isbn);
+            book.setTitle("Concurrency Book " + isbn);
+            book.setPrice(price);
+            return bookRepository.save(book).getIsbn();
+        }
+    }
+}
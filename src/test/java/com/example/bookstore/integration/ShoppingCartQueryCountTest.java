@@ -0,0 +1,223 @@
+package com.example.bookstore.integration;
+
+import com.example.bookstore.model.Book;
+import com.example.bookstore.model.Publisher;
+import com.example.bookstore.model.ShoppingCart;
+import com.example.bookstore.model.ShoppingCartItem;
+import com.example.bookstore.model.ShoppingCartItemId;
+import com.example.bookstore.model.UserProfile;
+import com.example.bookstore.repository.BookRepository;
+import com.example.bookstore.repository.PublisherRepository;
+import com.example.bookstore.repository.ShoppingCartItemRepository;
+import com.example.bookstore.repository.ShoppingCartRepository;
+import com.example.bookstore.repository.UserProfileRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// Reading a cart must not cost a query per item, nor a reprice after a remove. Statements are counted on the JDBC
+// connections, so JdbcTemplate reads count as well as Hibernate ones, and the cart is not in memory yet when it
+// is first read
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ShoppingCartQueryCountTest {
+
+    private static final int CART_SIZE = 30;
+    // The cart with its lines, then the books not in the book cache
+    private static final long MAX_BOOKS_STATEMENTS = 2;
+    private static final long MAX_SUBTOTAL_STATEMENTS = 1;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserProfileRepository userProfileRepository;
+
+    @Autowired
+    private PublisherRepository publisherRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private ShoppingCartRepository cartRepository;
+
+    @Autowired
+    private ShoppingCartItemRepository cartItemRepository;
+
+    @Autowired
+    private StatementCounter statementCounter;
+
+    private Long userId;
+    private String firstIsbn;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        UserProfile user = TestFixtures.saveUser(userProfileRepository, "cart-query-count-");
+        userId = user.getUserId();
+
+        Publisher publisher = new Publisher();
+        publisher.setPublisherName("Cart Query Press");
+        publisher = publisherRepository.save(publisher);
+
+        // Stored with its running subtotal, as the cart stores keep it: 30 lines of 2 x (10.00 + i)
+        ShoppingCart cart = new ShoppingCart();
+        cart.setUser(user);
+        cart.setSubtotalCents(147_000L);
+        cart = cartRepository.save(cart);
+
+        for (int i = 0; i < CART_SIZE; i++) {
+            Book book = new Book();
+            book.setIsbn(TestFixtures.uniqueIsbn());
+            book.setTitle("Cart Book " + i);
+            book.setPrice(10.0 + i);
+            book.setPublisher(publisher);
+            book = bookRepository.save(book);
+            if (i == 0) {
+                firstIsbn = book.getIsbn();
+            }
+
+            ShoppingCartItem item = new ShoppingCartItem();
+            item.setId(new ShoppingCartItemId(cart.getCartId(), book.getIsbn()));
+            item.setShoppingCart(cart);
+            item.setBook(book);
+            item.setQuantity(2);
+            cartItemRepository.save(item);
+        }
+
+        statementCounter.start();
+    }
+
+    @Test
+    void getBooksInShoppingCart_ShouldNotQueryPerItem() throws Exception {
+        mockMvc.perform(get("/api/shopping-cart/{userId}/books", userId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(CART_SIZE)));
+
+        long statements = statementCounter.stop();
+        assertTrue(statements <= MAX_BOOKS_STATEMENTS, "Cart read issued " + statements + " statements");
+    }
+
+    @Test
+    void getShoppingCartSubtotal_ShouldNotQueryPerItem() throws Exception {
+        mockMvc.perform(get("/api/shopping-cart/{userId}/subtotal", userId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.subtotal").value(1470.0));
+
+        long statements = statementCounter.stop();
+        assertTrue(statements <= MAX_SUBTOTAL_STATEMENTS, "Subtotal issued " + statements + " statements");
+    }
+
+    // The running subtotal survives a remove: the line's price is held with it, nothing is repriced
+    @Test
+    void getShoppingCartSubtotal_AfterRemove_ShouldNotQuery() throws Exception {
+        mockMvc.perform(get("/api/shopping-cart/{userId}/subtotal", userId))
+                .andExpect(status().isOk());
+        mockMvc.perform(delete("/api/shopping-cart/{userId}/remove-book", userId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"isbn\":\"" + firstIsbn + "\"}"))
+                .andExpect(status().isOk());
+
+        statementCounter.start();
+        mockMvc.perform(get("/api/shopping-cart/{userId}/subtotal", userId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.subtotal").value(1450.0));
+
+        long statements = statementCounter.stop();
+        assertEquals(0, statements, "Subtotal after a remove issued " + statements + " statements");
+    }
+
+    // Counts the statements the measuring thread prepares, so scheduled jobs running meanwhile are left out
+    static class StatementCounter {
+        private final AtomicLong count = new AtomicLong();
+        private volatile Thread measured;
+
+        void start() {
+            count.set(0);
+            measured = Thread.currentThread();
+        }
+
+        long stop() {
+            measured = null;
+            return count.get();
+        }
+
+        void onStatement() {
+            if (Thread.currentThread() == measured) {
+                count.incrementAndGet();
+            }
+        }
+    }
+
+    @TestConfiguration
+    static class StatementCountingConfig {
+
+        @Bean
+        StatementCounter statementCounter() {
+            return new StatementCounter();
+        }
+
+        // Wraps the pool so every connection it hands out reports the statements created on it
+        @Bean
+        static BeanPostProcessor countingDataSource(StatementCounter counter) {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (!(bean instanceof DataSource dataSource)) {
+                        return bean;
+                    }
+                    return Proxy.newProxyInstance(DataSource.class.getClassLoader(), new Class<?>[]{DataSource.class},
+                            (proxy, method, args) -> {
+                                Object result = invoke(dataSource, method, args);
+                                if (result instanceof Connection connection) {
+                                    return countingConnection(connection, counter);
+                                }
+                                return result;
+                            });
+                }
+            };
+        }
+
+        private static Connection countingConnection(Connection connection, StatementCounter counter) {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        String name = method.getName();
+                        if (name.equals("prepareStatement") || name.equals("prepareCall") || name.equals("createStatement")) {
+                            counter.onStatement();
+                        }
+                        return invoke(connection, method, args);
+                    });
+        }
+
+        private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.bookstore.integration;
+
+import com.example.bookstore.model.UserProfile;
+import com.example.bookstore.repository.UserProfileRepository;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Unique test data for the integration tests, which share one in-memory database per JVM: every ISBN comes
+// from one counter, so no two tests can pick the same one, and usernames carry System.nanoTime()
+final class TestFixtures {
+
+    private static final AtomicLong NEXT_ISBN = new AtomicLong();
+
+    private TestFixtures() {
+    }
+
+    // 13 digits under the 979 prefix, which no other test data uses
+    static String uniqueIsbn() {
+        return String.format("979%010d", NEXT_ISBN.incrementAndGet());
+    }
+
+    static UserProfile saveUser(UserProfileRepository userProfileRepository, String prefix) {
+        UserProfile user = new UserProfile();
+        user.setUsername(prefix + System.nanoTime());
+        return userProfileRepository.save(user);
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.bookstore.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Ranking, typo tolerance and compaction of the search index, without Spring
+class InvertedIndexTest {
+
+    @Test
+    void search_ShouldRankByBm25() {
+        InvertedIndex index = new InvertedIndex();
+        index.index("description", "Collected Tales", "A dragon sleeps", List.of());
+        index.index("author", "Collected Poems", null, List.of("Dragon Smith"));
+        index.index("title", "Dragon Path", "Old roads", List.of());
+        index.index("short", "Dragon", null, List.of());
+
+        // Title terms count three times, author terms twice, description terms once; at the same frequency
+        // the shorter document wins
+        assertEquals(List.of("short", "title", "author", "description"), index.search("dragon", 10));
+        // Matching a second, rarer term outweighs the length advantage
+        assertEquals(List.of("title", "short", "author", "description"), index.search("dragon roads", 10));
+        assertEquals(List.of("title", "short"), index.search("dragon roads", 2));
+    }
+
+    @Test
+    void search_ShouldBreakTiesByIndexOrderAndHonorLimit() {
+        InvertedIndex index = new InvertedIndex();
+        index.index("first", "Shelf One", null, List.of());
+        index.index("second", "Shelf Two", null, List.of());
+        index.index("third", "Shelf Six", null, List.of());
+
+        assertEquals(List.of("first", "second", "third"), index.search("shelf", 10));
+        assertEquals(List.of("first", "second"), index.search("shelf", 2));
+        assertEquals(List.of(), index.search("shelf", 0));
+        assertEquals(List.of(), index.search("the of and", 10));
+    }
+
+    @Test
+    void search_ShouldExpandMisspelledTermsByTrigrams() {
+        InvertedIndex index = new InvertedIndex();
+        index.index("dragon", "Dragon Tales", null, List.of());
+        index.index("wizard", "The Wizard", null, List.of());
+        index.index("wizards", "Wizards Guild", null, List.of());
+
+        assertEquals(List.of("dragon"), index.search("dragonn", 10));
+        // "wizzard" is close to both dictionary terms, the closer one ranks first
+        assertEquals(List.of("wizard", "wizards"), index.search("wizzard", 10));
+        // A term in the dictionary is never expanded
+        assertEquals(List.of("wizard"), index.search("wizard", 10));
+        assertEquals(List.of(), index.search("qqqq", 10));
+    }
+
+    @Test
+    void reindexing_ShouldCompactAndKeepSearching() {
+        InvertedIndex index = new InvertedIndex();
+        for (int i = 1; i <= 8; i++) {
+            index.index("b" + i, "Shelf Book " + i, null, List.of());
+        }
+        index.index("b2", "Moved Book 2", null, List.of());
+        index.index("b4", "Moved Book 4", null, List.of());
+        assertEquals(10, index.documentCount());
+
+        // A third tombstone out of 11 documents crosses the 1/4 threshold
+        index.index("b6", "Moved Book 6", null, List.of());
+        assertEquals(8, index.documentCount());
+        assertEquals(8, index.size());
+
+        // Renumbered in their existing order, so ties still go to the older document
+        assertEquals(List.of("b1", "b3", "b5", "b7", "b8", "b2", "b4", "b6"), index.search("book", 10));
+        assertEquals(List.of("b1", "b3", "b5", "b7", "b8"), index.search("shelf", 10));
+        assertEquals(List.of("b2", "b4", "b6"), index.search("moved", 10));
+        assertEquals(List.of("b6"), index.search("6", 10));
+
+        // ISBN lookups were rebuilt with the new ids: re-indexing replaces the right document
+        index.index("b1", "Moved Book 1", null, List.of());
+        index.remove("b3");
+        assertEquals(7, index.size());
+        assertEquals(List.of("b5", "b7", "b8"), index.search("shelf", 10));
+        assertEquals(List.of("b2", "b4", "b6", "b1"), index.search("moved", 10));
+        assertEquals(List.of(), index.search("3", 10));
+    }
+
+    @Test
+    void compaction_ShouldDropTermsOnlyDeadDocumentsHad() {
+        InvertedIndex index = new InvertedIndex();
+        index.index("kept", "Ocean Voyage", null, List.of());
+        index.index("gone", "Mountain Climbing", null, List.of());
+        index.remove("gone");
+        assertEquals(1, index.documentCount());
+
+        // "mountain" left the dictionary with its only document, so the query now reads as a misspelling
+        index.index("new", "Mountains", null, List.of());
+        assertEquals(List.of("new"), index.search("mountain", 10));
+        assertEquals(List.of("kept"), index.search("ocean", 10));
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.bookstore.service;
+
+import com.example.bookstore.repository.OrderJdbcRepository;
+import com.example.bookstore.repository.OrderJdbcRepository.LineHandler;
+import com.example.bookstore.service.AlsoBoughtIndex.CountMap;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// Co-occurrence counting, neighbor ranking and the settled order id cut-off of AlsoBoughtIndex
+@ExtendWith(MockitoExtension.class)
+class AlsoBoughtIndexTest {
+
+    @Mock
+    private OrderJdbcRepository orderJdbcRepository;
+
+    @Mock
+    private SalesCounter salesCounter;
+
+    @InjectMocks
+    private AlsoBoughtIndex alsoBoughtIndex;
+
+    // Lines of the orders in the fake order_lines table, by order id
+    private final TreeMap<Long, List<String>> orders = new TreeMap<>();
+
+    @BeforeEach
+    void setUp() {
+        lenient().doAnswer(invocation -> {
+            long after = invocation.getArgument(0);
+            long to = invocation.getArgument(1);
+            LineHandler handler = invocation.getArgument(2);
+            orders.subMap(after, false, to, true).forEach((orderId, isbns) ->
+                    isbns.forEach(isbn -> handler.line(orderId, isbn)));
+            return null;
+        }).when(orderJdbcRepository).forEachLineBetween(anyLong(), anyLong(), any());
+    }
+
+    @Test
+    void countMap_ShouldStoreKeyZeroAndReportAbsentKeys() {
+        CountMap row = new CountMap();
+        assertEquals(0, row.get(0));
+
+        row.increment(0);
+        row.increment(0);
+        row.increment(Integer.MAX_VALUE);
+        assertEquals(2, row.get(0));
+        assertEquals(1, row.get(Integer.MAX_VALUE));
+        assertEquals(0, row.get(1));
+        assertEquals(2, row.size());
+    }
+
+    @Test
+    void countMap_ShouldKeepCountsThroughGrowth() {
+        CountMap row = new CountMap();
+        int keys = 10_000;
+        for (int key = 0; key < keys; key++) {
+            for (int i = 0; i <= key % 7; i++) {
+                row.increment(key * 31);
+            }
+        }
+
+        assertEquals(keys, row.size());
+        // Power of two capacity, at most three quarters full
+        assertEquals(0, row.capacity() & (row.capacity() - 1));
+        assertTrue(row.size() * 4 <= row.capacity() * 3);
+        for (int key = 0; key < keys; key++) {
+            assertEquals(key % 7 + 1, row.get(key * 31), "key " + key * 31);
+            assertEquals(0, row.get(key * 31 + 1), "key " + (key * 31 + 1));
+        }
+    }
+
+    @Test
+    void neighbors_ShouldRankByCountThenFirstSeen() {
+        orders.put(1L, List.of("A", "B", "C"));
+        orders.put(2L, List.of("A", "C"));
+        // A book listed twice in one order counts once
+        orders.put(3L, List.of("A", "D", "D"));
+        when(salesCounter.settledOrderId()).thenReturn(3L);
+
+        alsoBoughtIndex.refresh();
+
+        assertArrayEquals(new String[]{"C", "B", "D"}, alsoBoughtIndex.neighborsOf("A"));
+        assertArrayEquals(new String[]{"A", "B"}, alsoBoughtIndex.neighborsOf("C"));
+        assertArrayEquals(new String[]{"A"}, alsoBoughtIndex.neighborsOf(" D "));
+        assertArrayEquals(new String[0], alsoBoughtIndex.neighborsOf("E"));
+    }
+
+    @Test
+    void neighbors_ShouldKeepTheBestTwenty() {
+        List<String> big = new ArrayList<>();
+        big.add("A");
+        for (int i = 0; i < 30; i++) {
+            big.add("N" + i);
+        }
+        orders.put(1L, big);
+        orders.put(2L, List.of("A", "N29"));
+        when(salesCounter.settledOrderId()).thenReturn(2L);
+
+        alsoBoughtIndex.refresh();
+
+        String[] neighbors = alsoBoughtIndex.neighborsOf("A");
+        assertEquals(AlsoBoughtIndex.MAX_NEIGHBORS, neighbors.length);
+        // The one count of 2 first, then ties in the order the books were first seen
+        assertEquals("N29", neighbors[0]);
+        for (int i = 1; i < neighbors.length; i++) {
+            assertEquals("N" + (i - 1), neighbors[i]);
+        }
+    }
+
+    @Test
+    void refresh_ShouldWaitForOrdersThatHaveNotSettled() {
+        orders.put(1L, List.of("A", "B"));
+        // Order 2 is still open while 3 has committed: the first run stops at 1
+        orders.put(3L, List.of("A", "C"));
+        when(salesCounter.settledOrderId()).thenReturn(1L);
+        alsoBoughtIndex.refresh();
+        assertArrayEquals(new String[]{"B"}, alsoBoughtIndex.neighborsOf("A"));
+
+        // Order 2 commits late and is folded in with 3, not skipped
+        orders.put(2L, List.of("A", "D"));
+        when(salesCounter.settledOrderId()).thenReturn(3L);
+        alsoBoughtIndex.refresh();
+        assertArrayEquals(new String[]{"B", "D", "C"}, alsoBoughtIndex.neighborsOf("A"));
+
+        // Nothing new settled: no query at all
+        alsoBoughtIndex.refresh();
+        verify(orderJdbcRepository).forEachLineBetween(eq(0L), eq(1L), any());
+        verify(orderJdbcRepository).forEachLineBetween(eq(1L), eq(3L), any());
+        verify(orderJdbcRepository, times(2)).forEachLineBetween(anyLong(), anyLong(), any());
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.bookstore.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+// Chunk representations, paging and intersections of IdSet, checked against java.util.BitSet
+class IdSetTest {
+
+    // Ids per chunk up to which a chunk stays a sorted array
+    private static final int ARRAY_MAX = 4096;
+
+    @Test
+    void of_ShouldPickTheChunkRepresentationBySize() {
+        int[] ids = IntStream.range(0, ARRAY_MAX + 1).map(i -> i * 3).toArray();
+
+        IdSet array = IdSet.of(ids, ARRAY_MAX);
+        assertEquals(0, array.bitmapChunks());
+        assertEquals(ARRAY_MAX, array.cardinality());
+
+        IdSet bitmap = IdSet.of(ids, ARRAY_MAX + 1);
+        assertEquals(1, bitmap.bitmapChunks());
+        assertEquals(ARRAY_MAX + 1, bitmap.cardinality());
+        assertEquals(oracle(ids, ARRAY_MAX + 1), toBitSet(bitmap));
+    }
+
+    @Test
+    void withAndWithout_ShouldConvertAtTheThreshold() {
+        int[] ids = IntStream.range(0, ARRAY_MAX).map(i -> i * 2).toArray();
+        IdSet set = IdSet.of(ids, ids.length);
+        BitSet expected = oracle(ids, ids.length);
+        assertEquals(0, set.bitmapChunks());
+
+        // One id past the threshold turns the array into a bitmap
+        set = set.with(1);
+        expected.set(1);
+        assertEquals(1, set.bitmapChunks());
+        assertEquals(ARRAY_MAX + 1, set.cardinality());
+        assertEquals(expected, toBitSet(set));
+
+        // Present ids leave the set as it is
+        assertSame(set, set.with(1));
+        assertSame(set, set.without(3));
+
+        // Back at the threshold it is an array again
+        set = set.without(0);
+        expected.clear(0);
+        assertEquals(0, set.bitmapChunks());
+        assertEquals(ARRAY_MAX, set.cardinality());
+        assertEquals(expected, toBitSet(set));
+    }
+
+    @Test
+    void without_ShouldDropEmptiedChunks() {
+        IdSet set = IdSet.EMPTY.with(5).with(70_000).with(140_000);
+        set = set.without(70_000);
+        assertEquals(2, set.cardinality());
+        assertEquals(List.of(5, 140_000), toList(set));
+
+        set = set.without(5).without(140_000);
+        assertEquals(0, set.cardinality());
+        assertEquals(List.of(), toList(set));
+    }
+
+    @Test
+    void and_ShouldShrinkADenseResultToAnArray() {
+        IdSet evens = IdSet.of(IntStream.range(0, 1 << 16).filter(i -> i % 2 == 0).toArray(), 1 << 15);
+        IdSet multiplesOfThree = IdSet.of(IntStream.range(0, 1 << 16).filter(i -> i % 3 == 0).toArray(), 21846);
+        assertEquals(1, evens.bitmapChunks());
+        assertEquals(1, multiplesOfThree.bitmapChunks());
+
+        IdSet multiplesOfSix = evens.and(multiplesOfThree);
+        assertEquals(1, multiplesOfSix.bitmapChunks());
+        assertEquals(10923, multiplesOfSix.cardinality());
+
+        IdSet sparse = IdSet.of(IntStream.range(0, 1 << 16).filter(i -> i % 24 == 0).toArray(), 2731);
+        IdSet multiplesOf24 = multiplesOfSix.and(sparse.with(70_000));
+        assertEquals(0, multiplesOf24.bitmapChunks());
+        assertEquals(2731, multiplesOf24.cardinality());
+    }
+
+    @Test
+    void page_ShouldSkipAcrossChunks() {
+        // An array chunk, a bitmap chunk and another array chunk
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            ids.add(i * 7);
+        }
+        for (int i = 0; i < ARRAY_MAX + 500; i++) {
+            ids.add((1 << 16) + i * 3);
+        }
+        for (int i = 0; i < 50; i++) {
+            ids.add((3 << 16) + i);
+        }
+        IdSet set = IdSet.of(ids.stream().mapToInt(Integer::intValue).toArray(), ids.size());
+        assertEquals(1, set.bitmapChunks());
+
+        for (int skip : new int[]{0, 1, 99, 100, 101, 2000, ids.size() - 60, ids.size() - 50, ids.size() - 1, ids.size()}) {
+            for (int length : new int[]{1, 10, 150, ARRAY_MAX}) {
+                int[] out = new int[length];
+                int written = set.page(skip, out);
+                List<Integer> expected = ids.subList(Math.min(skip, ids.size()), Math.min(skip + length, ids.size()));
+                assertEquals(expected.size(), written, "skip " + skip + ", length " + length);
+                for (int i = 0; i < written; i++) {
+                    assertEquals(expected.get(i), out[i], "skip " + skip + ", length " + length + ", index " + i);
+                }
+            }
+        }
+    }
+
+    @Test
+    void andCardinality_ShouldMatchBitSetOnRandomSets() {
+        Random random = new Random(7);
+        // Densities that give sparse arrays (galloping and merging), bitmaps and mixed chunk pairs
+        double[] densities = {0.0005, 0.01, 0.05, 0.2, 0.6};
+        int range = 5 << 16;
+        for (double leftDensity : densities) {
+            for (double rightDensity : densities) {
+                BitSet leftIds = randomIds(random, range, leftDensity);
+                BitSet rightIds = randomIds(random, range, rightDensity);
+                IdSet left = toIdSet(leftIds);
+                IdSet right = toIdSet(rightIds);
+
+                BitSet expected = (BitSet) leftIds.clone();
+                expected.and(rightIds);
+                String densitiesLabel = leftDensity + " & " + rightDensity;
+                assertEquals(expected.cardinality(), left.andCardinality(right), densitiesLabel);
+                assertEquals(expected.cardinality(), right.andCardinality(left), densitiesLabel);
+                IdSet intersection = left.and(right);
+                assertEquals(expected.cardinality(), intersection.cardinality(), densitiesLabel);
+                assertEquals(expected, toBitSet(intersection), densitiesLabel);
+            }
+        }
+    }
+
+    private static BitSet randomIds(Random random, int range, double density) {
+        BitSet ids = new BitSet(range);
+        for (int id = 0; id < range; id++) {
+            if (random.nextDouble() < density) {
+                ids.set(id);
+            }
+        }
+        return ids;
+    }
+
+    private static IdSet toIdSet(BitSet ids) {
+        int[] array = ids.stream().toArray();
+        return IdSet.of(array, array.length);
+    }
+
+    private static BitSet oracle(int[] ids, int count) {
+        BitSet expected = new BitSet();
+        for (int i = 0; i < count; i++) {
+            expected.set(ids[i]);
+        }
+        return expected;
+    }
+
+    private static BitSet toBitSet(IdSet set) {
+        BitSet ids = new BitSet();
+        set.forEach(ids::set);
+        return ids;
+    }
+
+    private static List<Integer> toList(IdSet set) {
+        List<Integer> ids = new ArrayList<>();
+        set.forEach(ids::add);
+        return ids;
+    }
+}
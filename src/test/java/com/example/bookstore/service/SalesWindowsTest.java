@@ -0,0 +1,198 @@
+package com.example.bookstore.service;
+
+import com.example.bookstore.dto.OrderLineDTO;
+import com.example.bookstore.model.Book;
+import com.example.bookstore.repository.BookRepository;
+import com.example.bookstore.repository.OrderJdbcRepository;
+import com.example.bookstore.repository.OrderJdbcRepository.SaleHandler;
+import com.example.bookstore.service.SalesWindows.Window;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+// Window boundaries, ring reuse, open bucket trimming and startup seeding of SalesWindows, on a fake clock
+@ExtendWith(MockitoExtension.class)
+class SalesWindowsTest {
+
+    private static final long MINUTE_MS = 60_000;
+    private static final long HOUR_MS = 60 * MINUTE_MS;
+    // Start of an hour
+    private static final long START = 480_000 * HOUR_MS;
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @Mock
+    private OrderJdbcRepository orderJdbcRepository;
+
+    @InjectMocks
+    private SalesWindows salesWindows;
+
+    private long now = START;
+    private long nextOrderId = 1;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(salesWindows, "topK", 10);
+        salesWindows.clock = () -> now;
+    }
+
+    @Test
+    void windows_ShouldDropSalesAtTheirBoundaries() {
+        salesWindows.seed();
+        sell("A", 1);
+
+        now = START + 59 * MINUTE_MS;
+        assertEquals(Map.of("A", 1L), top(Window.HOUR));
+        now = START + HOUR_MS;
+        assertEquals(Map.of(), top(Window.HOUR));
+        assertEquals(Map.of("A", 1L), top(Window.DAY));
+
+        now = START + 23 * HOUR_MS + 59 * MINUTE_MS;
+        assertEquals(Map.of("A", 1L), top(Window.DAY));
+        now = START + 24 * HOUR_MS;
+        assertEquals(Map.of(), top(Window.DAY));
+        assertEquals(Map.of("A", 1L), top(Window.WEEK));
+
+        now = START + 167 * HOUR_MS + 59 * MINUTE_MS;
+        assertEquals(Map.of("A", 1L), top(Window.WEEK));
+        now = START + 168 * HOUR_MS;
+        assertEquals(Map.of(), top(Window.WEEK));
+    }
+
+    @Test
+    void rings_ShouldReuseSlotsOnceTheyWrapAround() {
+        salesWindows.seed();
+        sell("A", 1);
+
+        // Same minute slot one hour later
+        now = START + HOUR_MS;
+        sell("B", 1);
+        assertEquals(Map.of("B", 1L), top(Window.HOUR));
+        assertEquals(Map.of("A", 1L, "B", 1L), top(Window.DAY));
+
+        // Same hour slot one week later
+        now = START + 168 * HOUR_MS;
+        sell("C", 1);
+        assertEquals(Map.of("B", 1L, "C", 1L), top(Window.WEEK));
+        assertEquals(Map.of("C", 1L), top(Window.HOUR));
+    }
+
+    @Test
+    void buckets_ShouldKeepOnlyTheTopK() {
+        ReflectionTestUtils.setField(salesWindows, "topK", 2);
+        salesWindows.seed();
+        record("A", 5);
+        record("B", 4);
+        record("C", 3);
+        salesWindows.rollUp();
+
+        assertEquals(Map.of("A", 5L, "B", 4L), top(Window.HOUR));
+        assertEquals(Map.of("A", 5L, "B", 4L), top(Window.WEEK));
+    }
+
+    @Test
+    void openBucket_ShouldLetLateClimbersInWithinTheSlack() {
+        ReflectionTestUtils.setField(salesWindows, "topK", 1);
+        salesWindows.seed();
+        sell("A", 6);
+        sell("X", 2);
+
+        // Same minute: the open tally still holds X's first copies
+        sell("X", 5);
+        assertEquals(Map.of("X", 7L), top(Window.HOUR));
+        assertEquals(Map.of("X", 7L), top(Window.DAY));
+    }
+
+    @Test
+    void openBucket_ShouldTrimBeyondTheSlack() {
+        // The open tally keeps 4 * K books per ranking and is cut back once it holds more than twice that
+        ReflectionTestUtils.setField(salesWindows, "topK", 1);
+        salesWindows.seed();
+        record("A", 6);
+        record("B", 4);
+        record("C", 4);
+        record("D", 4);
+        record("X", 2);
+        for (int i = 1; i <= 4; i++) {
+            record("F" + i, 3);
+        }
+        salesWindows.rollUp();
+
+        // X fell out of the open tally with its first 2 copies, so 5 more do not overtake A
+        sell("X", 5);
+        assertEquals(Map.of("A", 6L), top(Window.HOUR));
+        assertEquals(Map.of("A", 6L), top(Window.WEEK));
+    }
+
+    @Test
+    void rankings_ShouldNarrowByGenre() {
+        Book fantasy = new Book();
+        fantasy.setIsbn("F");
+        fantasy.setGenre("Fantasy");
+        Book history = new Book();
+        history.setIsbn("H");
+        history.setGenre("History");
+        when(bookRepository.findWithPublisherByIsbns(anyList())).thenReturn(List.of(fantasy, history));
+        salesWindows.seed();
+        record("F", 1);
+        record("H", 2);
+        salesWindows.rollUp();
+
+        assertEquals(Map.of("H", 2L, "F", 1L), top(Window.HOUR));
+        assertEquals(Map.of("F", 1L), salesWindows.top(Window.HOUR, "fantasy", null, 10));
+        assertEquals(Map.of(), salesWindows.top(Window.HOUR, "Poetry", null, 10));
+    }
+
+    @Test
+    void seed_ShouldCountEarlyCheckoutsOnlyOnce() {
+        // Order 1 committed before the seed query ran, order 2 after it
+        doAnswer(invocation -> {
+            SaleHandler handler = invocation.getArgument(1);
+            handler.sale(1, "A", Instant.ofEpochMilli(now - 5 * MINUTE_MS), 2);
+            return null;
+        }).when(orderJdbcRepository).forEachSaleSince(any(), any());
+        salesWindows.record(1, List.of(line("A", 2)));
+        salesWindows.record(2, List.of(line("A", 3)));
+
+        // Nothing is rolled up before the rings are seeded
+        salesWindows.rollUp();
+        assertEquals(Map.of(), top(Window.HOUR));
+
+        salesWindows.seed();
+        salesWindows.rollUp();
+        assertEquals(Map.of("A", 5L), top(Window.HOUR));
+        assertEquals(Map.of("A", 5L), top(Window.DAY));
+    }
+
+    private void sell(String isbn, int quantity) {
+        record(isbn, quantity);
+        salesWindows.rollUp();
+    }
+
+    private void record(String isbn, int quantity) {
+        salesWindows.record(nextOrderId++, List.of(line(isbn, quantity)));
+    }
+
+    private Map<String, Long> top(Window window) {
+        return salesWindows.top(window, null, null, 10);
+    }
+
+    private static OrderLineDTO line(String isbn, int quantity) {
+        return new OrderLineDTO(isbn, "Title " + isbn, quantity, 10.0);
+    }
+}